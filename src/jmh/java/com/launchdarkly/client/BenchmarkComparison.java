@@ -0,0 +1,122 @@
+package com.launchdarkly.client;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH result files written by the {@code jmh} Gradle task, and reports every benchmark
+ * whose score is worse than the baseline by more than a threshold and by more than the two runs'
+ * combined error. Exits with status 1 if there are any such regressions, so that it can be used in a
+ * build. Usage:
+ * <pre>
+ * BenchmarkComparison baseline.json current.json [thresholdPercent]
+ * </pre>
+ */
+public final class BenchmarkComparison {
+  private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+  private static final String PACKAGE_PREFIX = BenchmarkComparison.class.getPackage().getName() + ".";
+
+  private BenchmarkComparison() {}
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2 || args.length > 3) {
+      System.err.println("usage: BenchmarkComparison baseline.json current.json [thresholdPercent]");
+      System.exit(2);
+    }
+    Map<String, Result> baseline = readResults(args[0]);
+    Map<String, Result> current = readResults(args[1]);
+    double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+
+    int regressions = 0;
+    System.out.println(String.format("%-70s %14s %14s %9s", "Benchmark", "Baseline", "Current", "Change"));
+    for (Map.Entry<String, Result> entry: current.entrySet()) {
+      Result now = entry.getValue();
+      Result before = baseline.get(entry.getKey());
+      if (before == null) {
+        System.out.println(String.format("%-70s %14s %14.3f %9s  %s", entry.getKey(), "-", now.score, "new",
+            now.unit));
+        continue;
+      }
+      // a positive change always means the current run did worse, whichever way the mode is scored
+      double change = (now.score - before.score) / before.score * 100;
+      if (!now.lowerIsBetter()) {
+        change = -change;
+      }
+      boolean regressed = change > threshold &&
+          Math.abs(now.score - before.score) > (now.error + before.error);
+      if (regressed) {
+        regressions++;
+      }
+      System.out.println(String.format("%-70s %14.3f %14.3f %+8.1f%%  %s%s", entry.getKey(), before.score,
+          now.score, change, now.unit, regressed ? "  REGRESSION" : ""));
+    }
+    for (String key: baseline.keySet()) {
+      if (!current.containsKey(key)) {
+        System.out.println(String.format("%-70s %14.3f %14s %9s", key, baseline.get(key).score, "-", "missing"));
+      }
+    }
+    System.out.println(regressions == 0 ? "No regressions beyond " + threshold + "%" :
+        regressions + " regression(s) beyond " + threshold + "%");
+    System.exit(regressions == 0 ? 0 : 1);
+  }
+
+  private static Map<String, Result> readResults(String path) throws IOException {
+    Map<String, Result> results = new LinkedHashMap<>();
+    try (Reader reader = new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8)) {
+      JsonArray runs = new JsonParser().parse(reader).getAsJsonArray();
+      for (JsonElement run: runs) {
+        JsonObject o = run.getAsJsonObject();
+        String name = o.get("benchmark").getAsString();
+        if (name.startsWith(PACKAGE_PREFIX)) {
+          name = name.substring(PACKAGE_PREFIX.length());
+        }
+        StringBuilder key = new StringBuilder(name);
+        if (o.has("params")) {
+          // sort the parameters so that the key does not depend on their order in the file
+          Map<String, String> params = new TreeMap<>();
+          for (Map.Entry<String, JsonElement> p: o.getAsJsonObject("params").entrySet()) {
+            params.put(p.getKey(), p.getValue().getAsString());
+          }
+          for (Map.Entry<String, String> p: params.entrySet()) {
+            key.append(':').append(p.getKey()).append('=').append(p.getValue());
+          }
+        }
+        JsonObject metric = o.getAsJsonObject("primaryMetric");
+        JsonElement error = metric.get("scoreError");
+        results.put(key.toString(), new Result(o.get("mode").getAsString(), metric.get("score").getAsDouble(),
+            error == null || !error.isJsonPrimitive() || !error.getAsJsonPrimitive().isNumber() ? 0 : error.getAsDouble(),
+            metric.get("scoreUnit").getAsString()));
+      }
+    }
+    return results;
+  }
+
+  private static final class Result {
+    final String mode;
+    final double score;
+    final double error;
+    final String unit;
+
+    Result(String mode, double score, double error, String unit) {
+      this.mode = mode;
+      this.score = score;
+      this.error = error;
+      this.unit = unit;
+    }
+
+    boolean lowerIsBetter() {
+      return !mode.equals("thrpt");
+    }
+  }
+}
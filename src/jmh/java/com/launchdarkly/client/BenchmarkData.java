@@ -0,0 +1,228 @@
+package com.launchdarkly.client;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.launchdarkly.client.VersionedDataKind.FEATURES;
+import static com.launchdarkly.client.VersionedDataKind.SEGMENTS;
+
+/**
+ * Flags, segments and users shared by the benchmarks. Everything is generated deterministically, so
+ * that results from different runs, and different versions of the SDK, measure the same work.
+ */
+final class BenchmarkData {
+  static final String FLAG_KEY = "benchmark-flag";
+  static final int USER_COUNT = 1024; // must be a power of two; see nextUser
+
+  /**
+   * The flag shapes that can be selected with a benchmark's {@code shape} parameter.
+   */
+  static final String TARGETS = "targets";
+  static final String RULES = "rules";
+  static final String ROLLOUT = "rollout";
+  static final String PREREQUISITES = "prerequisites";
+  static final String SEGMENTS_SHAPE = "segments";
+
+  private static final int TARGET_VALUES = 200;
+  private static final int RULE_COUNT = 20;
+  private static final int PREREQUISITE_DEPTH = 3;
+  private static final int SEGMENT_COUNT = 3;
+
+  private BenchmarkData() {}
+
+  static LDUser[] makeUsers() {
+    LDUser[] users = new LDUser[USER_COUNT];
+    for (int i = 0; i < USER_COUNT; i++) {
+      users[i] = new LDUser.Builder(userKey(i))
+          .email("user" + i + "@example.com")
+          .country("US")
+          .custom("tier", i % 10 == 0 ? "gold" : "standard")
+          .custom("appVersion", "2." + (i % 5) + ".0")
+          .custom("score", i % 100)
+          .custom("signup", "2017-0" + (i % 9 + 1) + "-15T08:30:00Z")
+          .build();
+    }
+    return users;
+  }
+
+  static String userKey(int i) {
+    return "user-" + i;
+  }
+
+  /**
+   * Returns all of the data needed to evaluate {@link #FLAG_KEY} with the given shape, in the form
+   * accepted by {@link FeatureStore#init(Map)}.
+   */
+  static Map<VersionedDataKind<?>, Map<String, ? extends VersionedData>> dataForShape(String shape) {
+    Map<String, FeatureFlag> flags = new HashMap<>();
+    Map<String, Segment> segments = new HashMap<>();
+    switch (shape) {
+    case TARGETS:
+      flags.put(FLAG_KEY, targetsFlag(FLAG_KEY));
+      break;
+    case RULES:
+      flags.put(FLAG_KEY, rulesFlag(FLAG_KEY));
+      break;
+    case ROLLOUT:
+      flags.put(FLAG_KEY, rolloutFlag(FLAG_KEY));
+      break;
+    case PREREQUISITES:
+      String key = FLAG_KEY;
+      for (int depth = 0; depth < PREREQUISITE_DEPTH; depth++) {
+        String prereqKey = "prereq-" + depth;
+        flags.put(key, new FeatureFlagBuilder(rulesFlag(key))
+            .prerequisites(Arrays.asList(new Prerequisite(prereqKey, 1)))
+            .build());
+        key = prereqKey;
+      }
+      flags.put(key, rolloutFlag(key));
+      break;
+    case SEGMENTS_SHAPE:
+      List<JsonPrimitive> segmentKeys = new ArrayList<>();
+      for (int i = 0; i < SEGMENT_COUNT; i++) {
+        Segment segment = segment("segment-" + i, i);
+        segments.put(segment.getKey(), segment);
+        segmentKeys.add(new JsonPrimitive(segment.getKey()));
+      }
+      Rule rule = new Rule("segment-rule", Arrays.asList(new Clause("", Operator.segmentMatch, segmentKeys, false)),
+          1, null);
+      flags.put(FLAG_KEY, booleanFlag(FLAG_KEY).rules(Arrays.asList(rule)).build());
+      break;
+    default:
+      throw new IllegalArgumentException("unknown flag shape: " + shape);
+    }
+    Map<VersionedDataKind<?>, Map<String, ? extends VersionedData>> allData = new HashMap<>();
+    allData.put(FEATURES, flags);
+    allData.put(SEGMENTS, segments);
+    return allData;
+  }
+
+  /**
+   * Returns a number of unrelated flags of every shape, for benchmarks that need a store of a realistic
+   * size rather than one particular flag.
+   */
+  static Map<VersionedDataKind<?>, Map<String, ? extends VersionedData>> manyFlags(int count) {
+    String[] shapes = { TARGETS, RULES, ROLLOUT };
+    Map<String, FeatureFlag> flags = new HashMap<>();
+    for (int i = 0; i < count; i++) {
+      String key = "flag-" + i;
+      switch (shapes[i % shapes.length]) {
+      case TARGETS:
+        flags.put(key, targetsFlag(key));
+        break;
+      case RULES:
+        flags.put(key, rulesFlag(key));
+        break;
+      default:
+        flags.put(key, rolloutFlag(key));
+      }
+    }
+    Map<VersionedDataKind<?>, Map<String, ? extends VersionedData>> allData = new HashMap<>();
+    allData.put(FEATURES, flags);
+    allData.put(SEGMENTS, Collections.<String, Segment>emptyMap());
+    return allData;
+  }
+
+  private static FeatureFlagBuilder booleanFlag(String key) {
+    return new FeatureFlagBuilder(key)
+        .version(1)
+        .on(true)
+        .salt(key + "-salt")
+        .offVariation(0)
+        .fallthrough(new VariationOrRollout(0, null))
+        .variations(new JsonPrimitive(false), new JsonPrimitive(true));
+  }
+
+  // About one user in six is individually targeted
+  private static FeatureFlag targetsFlag(String key) {
+    List<String> values = new ArrayList<>();
+    for (int i = 0; i < USER_COUNT; i += USER_COUNT / TARGET_VALUES + 1) {
+      values.add(userKey(i));
+    }
+    return booleanFlag(key).targets(Arrays.asList(new Target(values, 1))).build();
+  }
+
+  // Most users fall through all of the rules; the gold tier matches the last one
+  private static FeatureFlag rulesFlag(String key) {
+    List<Rule> rules = new ArrayList<>();
+    for (int i = 0; i < RULE_COUNT - 1; i++) {
+      rules.add(new Rule("rule-" + i, Arrays.asList(
+          new Clause("email", Operator.endsWith, jsonStrings("@example" + i + ".org"), false),
+          new Clause("appVersion", Operator.semVerGreaterThan, jsonStrings("3." + i + ".0"), false),
+          new Clause("country", Operator.in, jsonStrings("CA", "GB", "DE"), false)), 1, null));
+    }
+    rules.add(new Rule("gold", Arrays.asList(
+        new Clause("tier", Operator.in, jsonStrings("gold", "platinum"), false)), 1, null));
+    return booleanFlag(key).rules(rules).build();
+  }
+
+  private static FeatureFlag rolloutFlag(String key) {
+    VariationOrRollout.Rollout rollout = new VariationOrRollout.Rollout(Arrays.asList(
+        new VariationOrRollout.WeightedVariation(0, 60000),
+        new VariationOrRollout.WeightedVariation(1, 40000)), null);
+    return booleanFlag(key).fallthrough(new VariationOrRollout(null, rollout)).build();
+  }
+
+  private static Segment segment(String key, int index) {
+    List<String> included = new ArrayList<>();
+    for (int i = index; i < USER_COUNT; i += 50) {
+      included.add(userKey(i));
+    }
+    SegmentRule rule = new SegmentRule(Arrays.asList(
+        new Clause("score", Operator.greaterThan, Arrays.asList(new JsonPrimitive(90 + index)), false)),
+        50000, null);
+    return new Segment.Builder(key)
+        .version(1)
+        .salt(key + "-salt")
+        .included(included)
+        .rules(Arrays.asList(rule))
+        .build();
+  }
+
+  static List<JsonPrimitive> jsonStrings(String... values) {
+    List<JsonPrimitive> list = new ArrayList<>();
+    for (String value: values) {
+      list.add(new JsonPrimitive(value));
+    }
+    return list;
+  }
+
+  /**
+   * Returns feature events for the given users, spread across {@code flagCount} flags with two
+   * variations each, as the client would generate them.
+   */
+  static Event.FeatureRequest[] featureEvents(LDUser[] users, int flagCount, boolean trackEvents) {
+    FeatureFlag[] flags = new FeatureFlag[flagCount];
+    for (int i = 0; i < flagCount; i++) {
+      flags[i] = booleanFlag("flag-" + i).trackEvents(trackEvents).build();
+    }
+    Event.FeatureRequest[] events = new Event.FeatureRequest[users.length];
+    for (int i = 0; i < users.length; i++) {
+      boolean value = i % 3 == 0;
+      EvaluationDetail<JsonElement> result = new EvaluationDetail<JsonElement>(EvaluationReason.fallthrough(),
+          value ? 1 : 0, new JsonPrimitive(value));
+      events[i] = EventFactory.DEFAULT.newFeatureRequestEvent(flags[i % flagCount], users[i], result,
+          new JsonPrimitive(false));
+    }
+    return events;
+  }
+
+  /**
+   * Returns a factory that always provides the given store, so that a benchmark can populate the store
+   * itself before creating a client.
+   */
+  static FeatureStoreFactory specificFeatureStore(final FeatureStore store) {
+    return new FeatureStoreFactory() {
+      public FeatureStore createFeatureStore() {
+        return store;
+      }
+    };
+  }
+}
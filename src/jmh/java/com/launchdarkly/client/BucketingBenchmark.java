@@ -0,0 +1,87 @@
+package com.launchdarkly.client;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link VariationOrRollout#bucketUser} with the hex-string computation it replaced. The setup
+ * checks that both produce bit-identical buckets for every user before anything is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BucketingBenchmark {
+  private static final String FLAG_KEY = "rollout-flag";
+  private static final String SALT = "4c0b5d2a3bfa4c6e8a1e4e0a4e7a2b9d";
+  private static final int USER_COUNT = 1024;
+
+  private LDUser[] users;
+  private byte[] bucketPrefix;
+  private int next;
+
+  @Setup
+  public void setup() {
+    users = new LDUser[USER_COUNT];
+    for (int i = 0; i < USER_COUNT; i++) {
+      LDUser.Builder builder = new LDUser.Builder("user-" + i + "@example.com");
+      if (i % 4 == 0) {
+        builder.secondary("secondary-" + i);
+      }
+      users[i] = builder.build();
+    }
+    bucketPrefix = VariationOrRollout.bucketPrefix(FLAG_KEY, SALT);
+    for (LDUser user: users) {
+      float expected = hexDigestBucket(user);
+      float actual = VariationOrRollout.bucketUser(user, bucketPrefix, "key");
+      if (Float.floatToIntBits(expected) != Float.floatToIntBits(actual)) {
+        throw new IllegalStateException("Bucket mismatch for user " + user.getKeyAsString() + ": expected " +
+            expected + ", got " + actual);
+      }
+    }
+  }
+
+  private LDUser nextUser() {
+    next = (next + 1) & (USER_COUNT - 1);
+    return users[next];
+  }
+
+  @Benchmark
+  public float bucketUser() {
+    return VariationOrRollout.bucketUser(nextUser(), bucketPrefix, "key");
+  }
+
+  @Benchmark
+  public float bucketUserWithoutPrecomputedPrefix() {
+    return VariationOrRollout.bucketUser(nextUser(), FLAG_KEY, "key", SALT);
+  }
+
+  @Benchmark
+  public float hexDigestBucket() {
+    return hexDigestBucket(nextUser());
+  }
+
+  // The computation that bucketUser used before it was optimized
+  private static float hexDigestBucket(LDUser user) {
+    String idHash = user.getKeyAsString();
+    if (user.getSecondary() != null) {
+      idHash = idHash + "." + user.getSecondary().getAsString();
+    }
+    String hash = DigestUtils.sha1Hex(FLAG_KEY + "." + SALT + "." + idHash).substring(0, 15);
+    long longVal = Long.parseLong(hash, 16);
+    return (float) longVal / (float) 0xFFFFFFFFFFFFFFFL;
+  }
+}
@@ -0,0 +1,76 @@
+package com.launchdarkly.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static com.launchdarkly.client.VersionedDataKind.FEATURES;
+
+/**
+ * Measures flag evaluation for each of the flag shapes in {@link BenchmarkData}, both through the
+ * public {@link LDClient} API and by calling {@link FeatureFlag#evaluate} directly. The client uses the
+ * in-memory store and does not send events, so that only evaluation is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark {
+  @Param({ BenchmarkData.TARGETS, BenchmarkData.RULES, BenchmarkData.ROLLOUT, BenchmarkData.PREREQUISITES,
+    BenchmarkData.SEGMENTS_SHAPE })
+  public String shape;
+
+  private FeatureStore store;
+  private LDClient client;
+  private FeatureFlag flag;
+  private LDUser[] users;
+  private int next;
+
+  @Setup
+  public void setup() {
+    store = new InMemoryFeatureStore();
+    store.init(BenchmarkData.dataForShape(shape));
+    LDConfig config = new LDConfig.Builder()
+        .featureStoreFactory(BenchmarkData.specificFeatureStore(store))
+        .eventProcessorFactory(Components.nullEventProcessor())
+        .updateProcessorFactory(Components.nullUpdateProcessor())
+        .build();
+    client = new LDClient("SDK_KEY", config);
+    flag = store.get(FEATURES, BenchmarkData.FLAG_KEY);
+    users = BenchmarkData.makeUsers();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    client.close();
+  }
+
+  private LDUser nextUser() {
+    next = (next + 1) & (BenchmarkData.USER_COUNT - 1);
+    return users[next];
+  }
+
+  @Benchmark
+  public boolean boolVariation() {
+    return client.boolVariation(BenchmarkData.FLAG_KEY, nextUser(), false);
+  }
+
+  @Benchmark
+  public FeatureFlag.EvalResult evaluate() {
+    return flag.evaluate(nextUser(), store, EventFactory.DEFAULT);
+  }
+}
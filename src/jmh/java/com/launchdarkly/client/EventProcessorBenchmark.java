@@ -0,0 +1,171 @@
+package com.launchdarkly.client;
+
+import com.google.gson.JsonPrimitive;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the stages of the analytics event pipeline: adding an event to the summary counters,
+ * turning a full flush payload into JSON, and the rate at which {@link DefaultEventProcessor} accepts
+ * and processes events.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventProcessorBenchmark {
+  private static final int FLAG_COUNT = 20;
+  private static final int INGEST_BATCH_SIZE = 1000;
+
+  @State(Scope.Thread)
+  public static class SummarizerState {
+    EventSummarizer summarizer;
+    Event.FeatureRequest[] events;
+    int next;
+
+    @Setup
+    public void setup() {
+      summarizer = new EventSummarizer();
+      events = BenchmarkData.featureEvents(BenchmarkData.makeUsers(), FLAG_COUNT, false);
+    }
+  }
+
+  /**
+   * A payload like the one produced by a busy client between flushes: tracked feature events, custom
+   * and identify events, index events, and summary counters for every flag.
+   */
+  @State(Scope.Thread)
+  public static class PayloadState {
+    EventOutputFormatter formatter;
+    Event[] events;
+    EventSummarizer.EventSummary summary;
+    ByteArrayOutputStream buffer;
+    Writer writer;
+
+    @Setup
+    public void setup() {
+      formatter = new EventOutputFormatter(LDConfig.DEFAULT);
+      buffer = new ByteArrayOutputStream();
+      writer = new BufferedWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8));
+      LDUser[] users = BenchmarkData.makeUsers();
+      Event.FeatureRequest[] featureEvents = BenchmarkData.featureEvents(users, FLAG_COUNT, true);
+      EventSummarizer summarizer = new EventSummarizer();
+      List<Event> eventList = new ArrayList<>();
+      for (int i = 0; i < users.length; i++) {
+        summarizer.summarizeEvent(featureEvents[i]);
+        eventList.add(featureEvents[i]);
+        if (i % 4 == 0) {
+          eventList.add(new Event.Index(featureEvents[i].creationDate, users[i]));
+        }
+        if (i % 8 == 0) {
+          JsonPrimitive data = new JsonPrimitive("purchase-" + i);
+          eventList.add(EventFactory.DEFAULT.newCustomEvent("checkout", users[i], data));
+        }
+        if (i % 16 == 0) {
+          eventList.add(EventFactory.DEFAULT.newIdentifyEvent(users[i]));
+        }
+      }
+      events = eventList.toArray(new Event[eventList.size()]);
+      summary = summarizer.snapshot();
+    }
+  }
+
+  /**
+   * An event processor whose events are all summarized, with no HTTP traffic during the measurement:
+   * the flush intervals are longer than any benchmark run, so the events URI, where nothing is
+   * listening, is only contacted by the final flush when the processor is closed.
+   */
+  @State(Scope.Benchmark)
+  public static class ProcessorState {
+    DefaultEventProcessor processor;
+    Event.FeatureRequest[] events;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      LDConfig config = new LDConfig.Builder()
+          .eventsURI(URI.create("http://localhost:1"))
+          .capacity(INGEST_BATCH_SIZE * 10)
+          .flushInterval(3600)
+          .userKeysFlushInterval(3600)
+          .build();
+      processor = new DefaultEventProcessor("SDK_KEY", config);
+      events = BenchmarkData.featureEvents(BenchmarkData.makeUsers(), FLAG_COUNT, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+      processor.close();
+    }
+  }
+
+  @Benchmark
+  public void summarizeEvent(SummarizerState state) {
+    state.next = (state.next + 1) & (BenchmarkData.USER_COUNT - 1);
+    state.summarizer.summarizeEvent(state.events[state.next]);
+  }
+
+  /**
+   * Writes a payload into a buffer that is reused for every invocation, as the event sender does.
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public int serializePayload(PayloadState state) throws IOException {
+    state.buffer.reset();
+    state.formatter.writeOutputEvents(state.events, state.summary, state.writer);
+    return state.buffer.size();
+  }
+
+  /**
+   * Sends a batch of events and waits until the event processor's own thread has processed all of
+   * them, so this is the sustained rate rather than the cost of enqueueing alone. Results are per event.
+   */
+  @Benchmark
+  @OperationsPerInvocation(INGEST_BATCH_SIZE)
+  public void ingestEvents(ProcessorState state) throws IOException {
+    sendBatch(state);
+  }
+
+  /**
+   * The same as {@link #ingestEvents}, but with several threads sending events at once, as when many
+   * request threads are evaluating flags.
+   */
+  @Benchmark
+  @OperationsPerInvocation(INGEST_BATCH_SIZE)
+  @Threads(4)
+  public void ingestEventsConcurrently(ProcessorState state) throws IOException {
+    sendBatch(state);
+  }
+
+  private static void sendBatch(ProcessorState state) throws IOException {
+    Event.FeatureRequest[] events = state.events;
+    for (int i = 0; i < INGEST_BATCH_SIZE; i++) {
+      state.processor.sendEvent(events[i & (BenchmarkData.USER_COUNT - 1)]);
+    }
+    state.processor.waitUntilInactive();
+  }
+}
@@ -0,0 +1,88 @@
+package com.launchdarkly.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.launchdarkly.client.VersionedDataKind.FEATURES;
+
+/**
+ * Measures reads from each {@link FeatureStore} implementation holding a realistic number of flags.
+ * The Redis variants need a Redis server at {@code redis://localhost:6379}, or at the URI given by the
+ * {@code ld.benchmark.redis} system property; they use their own key prefix, so they do not disturb
+ * other data in that server. {@code redis} caches with the default TTL, so it measures cache hits;
+ * {@code redisUncached} goes to Redis for every read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeatureStoreBenchmark {
+  private static final int FLAG_COUNT = 300;
+
+  @Param({ "memory", "redis", "redisUncached" })
+  public String store;
+
+  private FeatureStore featureStore;
+  private String[] keys;
+
+  @Setup
+  public void setup() {
+    switch (store) {
+    case "memory":
+      featureStore = new InMemoryFeatureStore();
+      break;
+    case "redis":
+    case "redisUncached":
+      URI uri = URI.create(System.getProperty("ld.benchmark.redis", RedisFeatureStoreBuilder.DEFAULT_URI.toString()));
+      long cacheSeconds = store.equals("redis") ? RedisFeatureStoreBuilder.DEFAULT_CACHE_TIME_SECONDS : 0;
+      featureStore = Components.redisFeatureStore(uri)
+          .cacheTime(cacheSeconds, TimeUnit.SECONDS)
+          .prefix("launchdarkly-benchmark")
+          .build();
+      break;
+    default:
+      throw new IllegalArgumentException("unknown store: " + store);
+    }
+    featureStore.init(BenchmarkData.manyFlags(FLAG_COUNT));
+    keys = featureStore.all(FEATURES).keySet().toArray(new String[0]);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    featureStore.close();
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  @Benchmark
+  public FeatureFlag get(Cursor cursor) {
+    cursor.next = (cursor.next + 1) % keys.length;
+    return featureStore.get(FEATURES, keys[cursor.next]);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Map<String, FeatureFlag> all() {
+    return featureStore.all(FEATURES);
+  }
+}
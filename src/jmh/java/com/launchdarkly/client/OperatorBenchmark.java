@@ -0,0 +1,78 @@
+package com.launchdarkly.client;
+
+import com.google.gson.JsonPrimitive;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static com.launchdarkly.client.BenchmarkData.jsonStrings;
+
+/**
+ * Measures the cost of matching one clause against a user, for each kind of operator. Each clause has
+ * several values, none of which match, so that every value is compared.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperatorBenchmark {
+  @Param({ "in", "endsWith", "matches", "contains", "lessThan", "before", "semVerGreaterThan" })
+  public String operator;
+
+  private CompiledClause clause;
+  private LDUser[] users;
+  private int next;
+
+  @Setup
+  public void setup() {
+    Clause c;
+    switch (operator) {
+    case "in":
+      c = new Clause("key", Operator.in, jsonStrings("a", "b", "c", "d", "e"), false);
+      break;
+    case "endsWith":
+      c = new Clause("email", Operator.endsWith, jsonStrings("@a.com", "@b.com", "@c.com"), false);
+      break;
+    case "matches":
+      c = new Clause("email", Operator.matches, jsonStrings("^admin.*", ".*@internal\\.example\\.com$"), false);
+      break;
+    case "contains":
+      c = new Clause("email", Operator.contains, jsonStrings("admin", "test", "qa"), false);
+      break;
+    case "lessThan":
+      c = new Clause("score", Operator.lessThan, Arrays.asList(new JsonPrimitive(-3), new JsonPrimitive(-2),
+          new JsonPrimitive(-1)), false);
+      break;
+    case "before":
+      c = new Clause("signup", Operator.before, jsonStrings("2010-01-01T00:00:00Z", "2011-06-30T12:00:00.000Z"), false);
+      break;
+    case "semVerGreaterThan":
+      c = new Clause("appVersion", Operator.semVerGreaterThan, jsonStrings("3.0.0", "4.1.0-beta.1"), false);
+      break;
+    default:
+      throw new IllegalArgumentException("unknown operator: " + operator);
+    }
+    clause = new CompiledClause(c);
+    users = BenchmarkData.makeUsers();
+  }
+
+  @Benchmark
+  public boolean matchesUser() {
+    next = (next + 1) & (BenchmarkData.USER_COUNT - 1);
+    return clause.matchesUserNoSegments(users[next]);
+  }
+}
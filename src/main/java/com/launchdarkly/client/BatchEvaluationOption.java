@@ -0,0 +1,42 @@
+package com.launchdarkly.client;
+
+/**
+ * Optional parameters that can be passed to
+ * {@link LDClientInterface#jsonVariationForUsers(String, Iterable, com.google.gson.JsonElement, java.util.concurrent.Executor, UserVariationHandler, BatchEvaluationOption...)}.
+ * @since 4.4.0
+ */
+public final class BatchEvaluationOption {
+  private final String description;
+  
+  private BatchEvaluationOption(String description) {
+    this.description = description;
+  }
+  
+  @Override
+  public String toString() {
+    return description;
+  }
+
+  /**
+   * Specifies that no analytics events should be generated for the evaluations. By default, each
+   * evaluation generates the same events as {@link LDClientInterface#jsonVariation}.
+   */
+  public static final BatchEvaluationOption NO_EVENTS = new BatchEvaluationOption("NO_EVENTS");
+
+  /**
+   * Specifies that the evaluations should only be counted in the summary data that is sent with
+   * analytics events, without generating individual feature or user events. The counts are added
+   * to the event processor in one step when the batch is finished. This has no effect if
+   * {@link #NO_EVENTS} is also specified, or if the client is using a custom {@link EventProcessor}.
+   */
+  public static final BatchEvaluationOption SUMMARY_EVENTS_ONLY = new BatchEvaluationOption("SUMMARY_EVENTS_ONLY");
+  
+  static boolean hasOption(BatchEvaluationOption[] options, BatchEvaluationOption option) {
+    for (BatchEvaluationOption o: options) {
+      if (o == option) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -1,18 +1,14 @@
 package com.launchdarkly.client;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonPrimitive;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import static com.launchdarkly.client.VersionedDataKind.SEGMENTS;
 
 import java.util.List;
 
+/**
+ * A single condition within a {@link Rule} or {@link SegmentRule}. Clauses are not evaluated in this
+ * form; see {@link CompiledClause}.
+ */
 class Clause {
-  private final static Logger logger = LoggerFactory.getLogger(Clause.class);
-
   private String attribute;
   private Operator op;
   private List<JsonPrimitive> values; //interpreted as an OR of values
@@ -20,7 +16,7 @@ class Clause {
 
   public Clause() {
   }
-  
+
   public Clause(String attribute, Operator op, List<JsonPrimitive> values, boolean negate) {
     this.attribute = attribute;
     this.op = op;
@@ -28,69 +24,19 @@ class Clause {
     this.negate = negate;
   }
 
-  boolean matchesUserNoSegments(LDUser user) {
-    JsonElement userValue = user.getValueForEvaluation(attribute);
-    if (userValue == null) {
-      return false;
-    }
-
-    if (userValue.isJsonArray()) {
-      JsonArray array = userValue.getAsJsonArray();
-      for (JsonElement jsonElement : array) {
-        if (!jsonElement.isJsonPrimitive()) {
-          logger.error("Invalid custom attribute value in user object for user key \"{}\": {}", user.getKey(), jsonElement);
-          return false;
-        }
-        if (matchAny(jsonElement.getAsJsonPrimitive())) {
-          return maybeNegate(true);
-        }
-      }
-      return maybeNegate(false);
-    } else if (userValue.isJsonPrimitive()) {
-      return maybeNegate(matchAny(userValue.getAsJsonPrimitive()));
-    }
-    logger.warn("Got unexpected user attribute type \"{}\" for user key \"{}\" and attribute \"{}\"",
-        userValue.getClass().getName(), user.getKey(), attribute);
-    return false;
+  String getAttribute() {
+    return attribute;
   }
 
-  boolean matchesUser(FeatureStore store, LDUser user) {
-    // In the case of a segment match operator, we check if the user is in any of the segments,
-    // and possibly negate
-    if (op == Operator.segmentMatch) {
-      for (JsonPrimitive j: values) {
-        if (j.isString()) {
-          Segment segment = store.get(SEGMENTS, j.getAsString());
-          if (segment != null) {
-            if (segment.matchesUser(user)) {
-              return maybeNegate(true);
-            }
-          }
-        }
-      }
-      return maybeNegate(false);
-    }
-    
-    return matchesUserNoSegments(user);
-  }
-  
-  private boolean matchAny(JsonPrimitive userValue) {
-    if (op != null) {
-      for (JsonPrimitive v : values) {
-        if (op.apply(userValue, v)) {
-          return true;
-        }
-      }
-    }
-    return false;
+  Operator getOp() {
+    return op;
   }
 
-  private boolean maybeNegate(boolean b) {
-    if (negate)
-      return !b;
-    else
-      return b;
+  List<JsonPrimitive> getValues() {
+    return values;
   }
 
-
-}
\ No newline at end of file
+  boolean isNegate() {
+    return negate;
+  }
+}
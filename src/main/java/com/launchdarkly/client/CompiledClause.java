@@ -0,0 +1,119 @@
+package com.launchdarkly.client;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.launchdarkly.client.VersionedDataKind.SEGMENTS;
+
+/**
+ * The evaluation form of a {@link Clause}. The user attribute is resolved to an accessor, and each
+ * clause value has already been converted by the {@link Operator} into the operand it compares
+ * against, so none of that work is repeated for every user. Instances are immutable.
+ */
+final class CompiledClause {
+  private final static Logger logger = LoggerFactory.getLogger(CompiledClause.class);
+
+  private final String attribute;
+  private final UserAttribute builtInAttribute; // null for a custom attribute
+  private final Operator op;
+  private final Object[] operands; // interpreted as an OR of values
+  private final String[] segmentKeys; // used only for segmentMatch
+  private final boolean negate;
+
+  CompiledClause(Clause clause) {
+    this.attribute = clause.getAttribute();
+    this.builtInAttribute = UserAttribute.forName(attribute);
+    this.op = clause.getOp();
+    this.negate = clause.isNegate();
+
+    List<Object> operandList = new ArrayList<>();
+    List<String> segmentKeyList = new ArrayList<>();
+    if (op != null && clause.getValues() != null) {
+      for (JsonPrimitive value: clause.getValues()) {
+        if (value == null) {
+          continue;
+        }
+        if (op == Operator.segmentMatch) {
+          if (value.isString()) {
+            segmentKeyList.add(value.getAsString());
+          }
+        } else {
+          Object operand = op.compileClauseValue(value);
+          if (operand != null) {
+            operandList.add(operand);
+          }
+        }
+      }
+    }
+    this.operands = operandList.toArray();
+    this.segmentKeys = segmentKeyList.toArray(new String[segmentKeyList.size()]);
+  }
+
+  boolean matchesUser(FeatureStoreReader store, LDUser user) {
+    // In the case of a segment match operator, we check if the user is in any of the segments,
+    // and possibly negate
+    if (op == Operator.segmentMatch) {
+      for (String segmentKey: segmentKeys) {
+        Segment segment = store.get(SEGMENTS, segmentKey);
+        if (segment != null) {
+          if (segment.matchesUser(user)) {
+            return maybeNegate(true);
+          }
+        }
+      }
+      return maybeNegate(false);
+    }
+
+    return matchesUserNoSegments(user);
+  }
+
+  boolean matchesUserNoSegments(LDUser user) {
+    JsonElement userValue = getUserValue(user);
+    if (userValue == null) {
+      return false;
+    }
+
+    if (userValue.isJsonArray()) {
+      JsonArray array = userValue.getAsJsonArray();
+      for (JsonElement jsonElement : array) {
+        if (!jsonElement.isJsonPrimitive()) {
+          logger.error("Invalid custom attribute value in user object for user key \"{}\": {}", user.getKey(), jsonElement);
+          return false;
+        }
+        if (matchAny(jsonElement.getAsJsonPrimitive())) {
+          return maybeNegate(true);
+        }
+      }
+      return maybeNegate(false);
+    } else if (userValue.isJsonPrimitive()) {
+      return maybeNegate(matchAny(userValue.getAsJsonPrimitive()));
+    }
+    logger.warn("Got unexpected user attribute type \"{}\" for user key \"{}\" and attribute \"{}\"",
+        userValue.getClass().getName(), user.getKey(), attribute);
+    return false;
+  }
+
+  private JsonElement getUserValue(LDUser user) {
+    return builtInAttribute == null ? user.getCustom(attribute) : builtInAttribute.get(user);
+  }
+
+  private boolean matchAny(JsonPrimitive userValue) {
+    for (Object operand: operands) {
+      if (op.applyCompiled(userValue, operand)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean maybeNegate(boolean b) {
+    return negate ? !b : b;
+  }
+}
@@ -0,0 +1,114 @@
+package com.launchdarkly.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The evaluation form of a {@link FeatureFlag}, built once per flag version so that evaluating the
+ * flag does not have to reinterpret its targets, rules and clauses each time. Instances are immutable.
+ */
+final class CompiledFlag {
+  private final Map<String, Integer> targetVariations;
+  private final CompiledRule[] rules;
+  private final byte[] bucketPrefix;
+  private final boolean hasDependencies;
+
+  CompiledFlag(FeatureFlag flag) {
+    this.bucketPrefix = VariationOrRollout.bucketPrefix(flag.getKey(), flag.getSalt());
+    this.targetVariations = new HashMap<>();
+    if (flag.getTargets() != null) {
+      for (Target target: flag.getTargets()) {
+        if (target.getValues() == null) {
+          continue;
+        }
+        for (String v: target.getValues()) {
+          // If a key appears in more than one target, the first one wins, as it would in a linear search
+          if (!targetVariations.containsKey(v)) {
+            targetVariations.put(v, target.getVariation());
+          }
+        }
+      }
+    }
+    List<CompiledRule> ruleList = new ArrayList<>();
+    if (flag.getRules() != null) {
+      for (Rule rule: flag.getRules()) {
+        ruleList.add(new CompiledRule(rule));
+      }
+    }
+    this.rules = ruleList.toArray(new CompiledRule[ruleList.size()]);
+    this.hasDependencies = (flag.getPrerequisites() != null && !flag.getPrerequisites().isEmpty()) ||
+        hasSegmentMatch(flag);
+  }
+
+  private static boolean hasSegmentMatch(FeatureFlag flag) {
+    if (flag.getRules() != null) {
+      for (Rule rule: flag.getRules()) {
+        if (rule.getClauses() != null) {
+          for (Clause clause: rule.getClauses()) {
+            if (clause.getOp() == Operator.segmentMatch) {
+              return true;
+            }
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the variation index that the user is individually targeted for, or null if none.
+   */
+  Integer getTargetVariation(String userKey) {
+    return targetVariations.get(userKey);
+  }
+
+  /**
+   * Returns true if evaluating the flag may need to read prerequisite flags or segments from the store.
+   */
+  boolean hasDependencies() {
+    return hasDependencies;
+  }
+
+  CompiledRule[] getRules() {
+    return rules;
+  }
+
+  /**
+   * Returns the flag-specific part of the input for percentage rollouts; see {@link VariationOrRollout#bucketPrefix}.
+   */
+  byte[] getBucketPrefix() {
+    return bucketPrefix;
+  }
+
+  /**
+   * The evaluation form of a {@link Rule}.
+   */
+  static final class CompiledRule {
+    private final Rule rule;
+    private final CompiledClause[] clauses;
+
+    CompiledRule(Rule rule) {
+      this.rule = rule;
+      List<Clause> ruleClauses = rule.getClauses();
+      this.clauses = new CompiledClause[ruleClauses == null ? 0 : ruleClauses.size()];
+      for (int i = 0; i < clauses.length; i++) {
+        clauses[i] = new CompiledClause(ruleClauses.get(i));
+      }
+    }
+
+    Rule getRule() {
+      return rule;
+    }
+
+    boolean matchesUser(FeatureStoreReader store, LDUser user) {
+      for (CompiledClause clause : clauses) {
+        if (!clause.matchesUser(store, user)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
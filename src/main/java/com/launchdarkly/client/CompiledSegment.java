@@ -0,0 +1,92 @@
+package com.launchdarkly.client;
+
+import com.google.common.collect.Sets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The evaluation form of a {@link Segment}, built once per segment version. Instances are immutable.
+ */
+final class CompiledSegment {
+  private final String salt;
+  private final Set<String> included;
+  private final Set<String> excluded;
+  private final Rule[] rules;
+
+  CompiledSegment(Segment segment) {
+    this.salt = segment.getSalt();
+    this.included = copyOf(segment.getIncluded());
+    this.excluded = copyOf(segment.getExcluded());
+    List<Rule> ruleList = new ArrayList<>();
+    if (segment.getRules() != null) {
+      for (SegmentRule rule: segment.getRules()) {
+        ruleList.add(new Rule(rule));
+      }
+    }
+    this.rules = ruleList.toArray(new Rule[ruleList.size()]);
+  }
+
+  private static Set<String> copyOf(Iterable<String> keys) {
+    return keys == null ? Collections.<String>emptySet() : Sets.newHashSet(keys);
+  }
+
+  boolean matchesUser(LDUser user) {
+    String userKey = user.getKeyAsString();
+    if (userKey == null) {
+      return false;
+    }
+    if (included.contains(userKey)) {
+      return true;
+    }
+    if (excluded.contains(userKey)) {
+      return false;
+    }
+    for (Rule rule: rules) {
+      // segment rollouts have always bucketed by the user key rather than the segment key
+      if (rule.matchUser(user, userKey, salt)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The evaluation form of a {@link SegmentRule}.
+   */
+  static final class Rule {
+    private final CompiledClause[] clauses;
+    private final Integer weight;
+    private final String bucketBy;
+
+    Rule(SegmentRule rule) {
+      List<Clause> ruleClauses = rule.getClauses();
+      this.clauses = new CompiledClause[ruleClauses == null ? 0 : ruleClauses.size()];
+      for (int i = 0; i < clauses.length; i++) {
+        clauses[i] = new CompiledClause(ruleClauses.get(i));
+      }
+      this.weight = rule.getWeight();
+      this.bucketBy = (rule.getBucketBy() == null) ? "key" : rule.getBucketBy();
+    }
+
+    boolean matchUser(LDUser user, String segmentKey, String salt) {
+      for (CompiledClause c: clauses) {
+        if (!c.matchesUserNoSegments(user)) {
+          return false;
+        }
+      }
+
+      // If the Weight is absent, this rule matches
+      if (weight == null) {
+        return true;
+      }
+
+      // All of the clauses are met. See if the user buckets in
+      double bucket = VariationOrRollout.bucketUser(user, segmentKey, bucketBy, salt);
+      double weight = (double)this.weight / 100000.0;
+      return bucket < weight;
+    }
+  }
+}
@@ -1,21 +1,32 @@
 package com.launchdarkly.client;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.launchdarkly.client.EventSummarizer.EventSummary;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
@@ -23,29 +34,57 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import static com.launchdarkly.client.Util.getRequestBuilder;
 import static com.launchdarkly.client.Util.httpErrorMessage;
 import static com.launchdarkly.client.Util.isHttpErrorRecoverable;
 
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
 import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.GzipSink;
+import okio.Okio;
+import okio.Sink;
 
 final class DefaultEventProcessor implements EventProcessor {
   private static final Logger logger = LoggerFactory.getLogger(DefaultEventProcessor.class);
-  private static final int CHANNEL_BLOCK_MILLIS = 1000;
+  private static final long FULL_CHANNEL_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
   private static final String EVENT_SCHEMA_HEADER = "X-LaunchDarkly-Event-Schema";
   private static final String EVENT_SCHEMA_VERSION = "2";
+  private static final int MAX_RETAINED_PAYLOAD_BUFFER_SIZE = 1024 * 1024;
+  private static final MediaType JSON_CONTENT_TYPE = MediaType.parse("application/json; charset=utf-8");
   
-  private final BlockingQueue<EventProcessorMessage> inputChannel;
+  // Holds either Event objects, which are posted directly, or EventProcessorMessage objects for
+  // everything else
+  private final RingBuffer<Object> inputChannel;
+  // Counters for feature events that need nothing else from the dispatcher; these are accumulated on
+  // the calling threads and merged by the dispatcher when it flushes
+  private final StripedEventSummarizer summaries = new StripedEventSummarizer();
+  // The users whose details have been sent recently; the dispatcher adds to this, and any thread can read it
+  private final UserKeyCache userKeys;
   private final ScheduledExecutorService scheduler;
+  private final boolean blockWhenFull;
+  private final boolean adaptiveFlush;
+  private final EventCounters counters = new EventCounters();
+  private final EventSpool spool;
   private final AtomicBoolean closed = new AtomicBoolean(false);
   private final AtomicBoolean inputCapacityExceeded = new AtomicBoolean(false);
   
   DefaultEventProcessor(String sdkKey, LDConfig config) {
-    inputChannel = new ArrayBlockingQueue<>(config.capacity);
+    inputChannel = new RingBuffer<>(config.capacity);
+    userKeys = new UserKeyCache(config.userKeysCapacity, config.userKeysFlushInterval);
+    blockWhenFull = config.eventOverflowPolicy.kind == EventOverflowPolicy.Kind.BLOCK;
+    adaptiveFlush = config.adaptiveFlush;
+    spool = config.eventSpoolDirectory == null ? null :
+      new EventSpool(config.eventSpoolDirectory, config.eventSpoolCapacity, config.eventSpoolMaxAge * 1000L);
 
     ThreadFactory threadFactory = new ThreadFactoryBuilder()
         .setDaemon(true)
@@ -53,95 +92,176 @@ final class DefaultEventProcessor implements EventProcessor {
         .build();
     scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
 
-    new EventDispatcher(sdkKey, config, inputChannel, threadFactory);
+    new EventDispatcher(sdkKey, config, inputChannel, summaries, userKeys, counters, spool,
+        scheduler, threadFactory);
 
-    Runnable flusher = new Runnable() {
-      public void run() {
-        postMessageAsync(MessageType.FLUSH, null);
-      }
-    };
-    this.scheduler.scheduleAtFixedRate(flusher, config.flushInterval, config.flushInterval, TimeUnit.SECONDS);
-    Runnable userKeysFlusher = new Runnable() {
-      public void run() {
-        postMessageAsync(MessageType.FLUSH_USERS, null);
-      }
-    };
-    this.scheduler.scheduleAtFixedRate(userKeysFlusher, config.userKeysFlushInterval, config.userKeysFlushInterval,
-        TimeUnit.SECONDS);
+    if (!adaptiveFlush) { // otherwise the dispatcher decides for itself when to flush
+      Runnable flusher = new Runnable() {
+        public void run() {
+          flush();
+        }
+      };
+      this.scheduler.scheduleAtFixedRate(flusher, config.flushInterval, config.flushInterval, TimeUnit.SECONDS);
+    }
   }
   
   @Override
   public void sendEvent(Event e) {
     if (!closed.get()) {
-      postMessageAsync(MessageType.EVENT, e);
+      if (isSummaryOnly(e)) {
+        if (summaries.summarizeEvent((Event.FeatureRequest)e)) {
+          summaryStarted();
+        }
+      } else {
+        postEvents(e, 1);
+      }
+    }
+  }
+  
+  /**
+   * Queues several events as a single message, so that a caller producing many events at once (such as
+   * {@link LDClient#jsonVariations(LDUser, java.util.Map)}) contends for the input queue only once.
+   * The events are processed exactly as if each had been passed to {@link #sendEvent(Event)}.
+   */
+  void sendEvents(List<? extends Event> events) {
+    if (closed.get() || events.isEmpty()) {
+      return;
+    }
+    List<Event> queuedEvents = new ArrayList<>(events.size());
+    for (Event e: events) {
+      if (isSummaryOnly(e)) {
+        if (summaries.summarizeEvent((Event.FeatureRequest)e)) {
+          summaryStarted();
+        }
+      } else {
+        queuedEvents.add(e);
+      }
+    }
+    if (!queuedEvents.isEmpty()) {
+      postEvents(new EventProcessorMessage(MessageType.EVENTS, queuedEvents, false), queuedEvents.size());
+    }
+  }
+  
+  /**
+   * Adds counters that were accumulated by the caller to the summary data for the next flush, without
+   * generating any individual events.
+   */
+  void sendSummary(EventSummarizer.EventSummary summary) {
+    if (!closed.get() && !summary.isEmpty() && summaries.summarizeAll(summary)) {
+      summaryStarted();
+    }
+  }
+  
+  // With adaptive flushing, the dispatcher may be waiting with nothing to flush, so it needs to be told
+  // when summary counters start to accumulate without it. If the queue is full, the dispatcher is busy
+  // and will notice the counters anyway.
+  private void summaryStarted() {
+    if (adaptiveFlush) {
+      inputChannel.offer(new EventProcessorMessage(MessageType.SUMMARY_PENDING, null, false));
+    }
+  }
+  
+  // A feature event that is neither tracked nor debugged, for a user who has already been noticed,
+  // would only update the summary counters; that can be done without going through the dispatcher.
+  private boolean isSummaryOnly(Event e) {
+    if (!(e instanceof Event.FeatureRequest)) {
+      return false;
+    }
+    Event.FeatureRequest fe = (Event.FeatureRequest)e;
+    if (fe.trackEvents) {
+      return false;
+    }
+    // the dispatcher makes the final decision about debugging, but it can't debug an event whose
+    // debugging period has already ended
+    if (fe.debugEventsUntilDate != null && fe.debugEventsUntilDate > System.currentTimeMillis()) {
+      return false;
     }
+    return fe.user == null || fe.user.getKey() == null || userKeys.contains(fe.user.getKeyAsString());
   }
   
   @Override
   public void flush() {
     if (!closed.get()) {
-      postMessageAsync(MessageType.FLUSH, null);
+      postMessageAsync(MessageType.FLUSH);
     }
   }
 
   @Override
   public void close() throws IOException {
     if (closed.compareAndSet(false, true)) {
+      postMessageAsync(MessageType.FLUSH);
+      postMessageAndWait(MessageType.SHUTDOWN);
+      // this is only shut down now, because the final deliveries may need it to schedule retries
       scheduler.shutdown();
-      postMessageAsync(MessageType.FLUSH, null);
-      postMessageAndWait(MessageType.SHUTDOWN, null);
     }
   }
   
+  EventProcessorStatistics getStatistics() {
+    return counters.toStatistics(spool);
+  }
+  
   @VisibleForTesting
   void waitUntilInactive() throws IOException {
-    postMessageAndWait(MessageType.SYNC, null);
+    postMessageAndWait(MessageType.SYNC);
   }
   
-  private void postMessageAsync(MessageType type, Event event) {
-    postToChannel(new EventProcessorMessage(type, event, false));
+  private void postMessageAsync(MessageType type) {
+    postToChannel(new EventProcessorMessage(type, null, false));
   }
   
-  private void postMessageAndWait(MessageType type, Event event) {
-    EventProcessorMessage message = new EventProcessorMessage(type, event, true);
+  private void postMessageAndWait(MessageType type) {
+    EventProcessorMessage message = new EventProcessorMessage(type, null, true);
     postToChannel(message);
     message.waitForCompletion();
   }
   
-  private void postToChannel(EventProcessorMessage message) {
-    while (true) {
-      try {
-        if (inputChannel.offer(message, CHANNEL_BLOCK_MILLIS, TimeUnit.MILLISECONDS)) {
-          inputCapacityExceeded.set(false);
-          break;
-        } else {
-          // This doesn't mean that the output event buffer is full, but rather that the main thread is
-          // seriously backed up with not-yet-processed events. We shouldn't see this.
-          if (inputCapacityExceeded.compareAndSet(false, true)) {
-            logger.warn("Events are being produced faster than they can be processed");
-          }
-        }
-      } catch (InterruptedException ex) {
+  // Posts an Event, or an EVENTS message containing the given number of events. Unless the overflow
+  // policy says to block, this gives up immediately if the queue is full.
+  private void postEvents(Object item, int eventCount) {
+    if (blockWhenFull) {
+      postToChannel(item);
+    } else if (inputChannel.offer(item)) {
+      if (inputCapacityExceeded.get()) {
+        inputCapacityExceeded.set(false);
+      }
+    } else {
+      counters.inputQueueDrops.addAndGet(eventCount);
+      if (inputCapacityExceeded.compareAndSet(false, true)) {
+        logger.warn("Events are being produced faster than they can be processed; some events will be dropped");
+      }
+    }
+  }
+  
+  private void postToChannel(Object item) {
+    while (!inputChannel.offer(item)) {
+      // This doesn't mean that the output event buffer is full, but rather that the main thread is
+      // seriously backed up with not-yet-processed events. We shouldn't see this.
+      if (inputCapacityExceeded.compareAndSet(false, true)) {
+        logger.warn("Events are being produced faster than they can be processed");
       }
+      LockSupport.parkNanos(FULL_CHANNEL_RETRY_NANOS);
+    }
+    if (inputCapacityExceeded.get()) {
+      inputCapacityExceeded.set(false);
     }
   }
 
   private static enum MessageType {
-    EVENT,
+    EVENTS,
+    SUMMARY_PENDING,
     FLUSH,
-    FLUSH_USERS,
     SYNC,
     SHUTDOWN
   }
   
   private static final class EventProcessorMessage {
     private final MessageType type;
-    private final Event event;
+    private final List<? extends Event> events;
     private final Semaphore reply;
     
-    private EventProcessorMessage(MessageType type, Event event, boolean sync) {
+    private EventProcessorMessage(MessageType type, List<? extends Event> events, boolean sync) {
       this.type = type;
-      this.event = event;
+      this.events = events;
       reply = sync ? new Semaphore(0) : null;
     }
     
@@ -167,8 +287,7 @@ final class DefaultEventProcessor implements EventProcessor {
     
     @Override
     public String toString() { // for debugging only
-      return ((event == null) ? type.toString() : (type + ": " + event.getClass().getSimpleName())) +
-          (reply == null ? "" : " (sync)");
+      return type + (reply == null ? "" : " (sync)");
     }
   }
   
@@ -177,78 +296,114 @@ final class DefaultEventProcessor implements EventProcessor {
    * on its own thread.
    */
   static final class EventDispatcher {
-    private static final int MAX_FLUSH_THREADS = 5;
+    private static final long MAX_IDLE_FLUSH_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(5);
     static final SimpleDateFormat HTTP_DATE_FORMAT = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz");
     
     private final LDConfig config;
-    private final List<SendEventsTask> flushWorkers;
-    private final AtomicInteger busyFlushWorkersCount;
+    private final StripedEventSummarizer summaries;
+    private final UserKeyCache userKeys;
+    private final EventSpillQueue spillQueue;
+    private final EventSpool spool;
+    private final EventCounters counters;
+    private final EventSender sender;
     private final Random random = new Random();
     private final AtomicLong lastKnownPastTime = new AtomicLong(0);
     private final AtomicBoolean disabled = new AtomicBoolean(false);
+    private final AtomicBoolean deliveryFailing = new AtomicBoolean(false);
+    // The rest of these are only used for adaptive flushing, and only on the main thread
+    private final boolean adaptiveFlush;
+    private final int flushHighWaterMark;
+    private final long maxEventWaitNanos;
+    private boolean eventsWaiting;
+    private long flushDueNanos; // zero if there is no need to flush at all
+    private long idleFlushIntervalNanos;
 
     private EventDispatcher(String sdkKey, LDConfig config,
-                            final BlockingQueue<EventProcessorMessage> inputChannel,
+                            final RingBuffer<Object> inputChannel,
+                            StripedEventSummarizer summaries,
+                            UserKeyCache userKeys,
+                            EventCounters counters,
+                            EventSpool spool,
+                            ScheduledExecutorService scheduler,
                             ThreadFactory threadFactory) {
       this.config = config;
-      this.busyFlushWorkersCount = new AtomicInteger(0);
-
-      // This queue only holds one element; it represents a flush task that has not yet been
-      // picked up by any worker, so if we try to push another one and are refused, it means
-      // all the workers are busy.
-      final BlockingQueue<FlushPayload> payloadQueue = new ArrayBlockingQueue<>(1);
+      this.spool = spool;
+      this.summaries = summaries;
+      this.userKeys = userKeys;
+      this.counters = counters;
+      this.adaptiveFlush = config.adaptiveFlush;
+      this.flushHighWaterMark = config.flushHighWaterMark;
+      this.maxEventWaitNanos = TimeUnit.SECONDS.toNanos(config.flushInterval);
+      this.idleFlushIntervalNanos = maxEventWaitNanos;
+      EventOverflowPolicy policy = config.eventOverflowPolicy;
+      this.spillQueue = policy.kind == EventOverflowPolicy.Kind.SPILL_TO_DISK ?
+          new EventSpillQueue(policy.spillDirectory, policy.spillCapacityBytes) : null;
+      EventResponseListener listener = new EventResponseListener() {
+          public void handleResponse(Response response) {
+            EventDispatcher.this.handleResponse(response);
+          }
+        };
+      this.sender = new EventSender(sdkKey, config, listener, spool, deliveryFailing, scheduler, threadFactory);
       
-      final EventBuffer buffer = new EventBuffer(config.capacity);
-      final SimpleLRUCache<String, String> userKeys = new SimpleLRUCache<String, String>(config.userKeysCapacity);
+      final EventBuffer buffer = new EventBuffer(config, counters, spillQueue, random);
+      if (adaptiveFlush) {
+        scheduleNextFlush(buffer); // in case there are payloads stored by a previous run
+      }
       
       Thread mainThread = threadFactory.newThread(new Runnable() {
         public void run() {
-          runMainLoop(inputChannel, buffer, userKeys, payloadQueue);
+          runMainLoop(inputChannel, buffer);
         }
       });
       mainThread.setDaemon(true);
       mainThread.start();
-      
-      flushWorkers = new ArrayList<>();
-      EventResponseListener listener = new EventResponseListener() {
-          public void handleResponse(Response response) {
-            EventDispatcher.this.handleResponse(response);
-          }
-        };
-      for (int i = 0; i < MAX_FLUSH_THREADS; i++) {
-        SendEventsTask task = new SendEventsTask(sdkKey, config, listener, payloadQueue,
-            busyFlushWorkersCount, threadFactory);
-        flushWorkers.add(task);
-      }
     }
     
     /**
      * This task drains the input queue as quickly as possible. Everything here is done on a single
      * thread so we don't have to synchronize on our internal structures; when it's time to flush,
-     * triggerFlush will hand the events off to another task.
+     * triggerFlush will hand the events off to another task. With adaptive flushing, this thread also
+     * keeps track of when it is time to flush, and it only waits for new messages until then.
      */
-    private void runMainLoop(BlockingQueue<EventProcessorMessage> inputChannel,
-        EventBuffer buffer, SimpleLRUCache<String, String> userKeys,
-        BlockingQueue<FlushPayload> payloadQueue) {
+    private void runMainLoop(RingBuffer<Object> inputChannel,
+        EventBuffer buffer) {
       while (true) {
         try {
-          EventProcessorMessage message = inputChannel.take();
+          Object item;
+          if (adaptiveFlush) {
+            item = inputChannel.take(nanosUntilFlush());
+            if (item == null) {
+              triggerFlush(buffer);
+              continue;
+            }
+          } else {
+            item = inputChannel.take();
+          }
+          if (item instanceof Event) {
+            processEvent((Event)item, buffer);
+            checkFlushNeeded(buffer);
+            continue;
+          }
+          EventProcessorMessage message = (EventProcessorMessage)item;
           switch(message.type) {
-          case EVENT:
-            processEvent(message.event, userKeys, buffer);
+          case EVENTS:
+            for (Event e: message.events) {
+              processEvent(e, buffer);
+            }
+            checkFlushNeeded(buffer);
             break;
-          case FLUSH:
-            triggerFlush(buffer, payloadQueue);
+          case SUMMARY_PENDING:
+            checkFlushNeeded(buffer);
             break;
-          case FLUSH_USERS:
-            userKeys.clear();
+          case FLUSH:
+            triggerFlush(buffer);
             break;
           case SYNC:
-            waitUntilAllFlushWorkersInactive();
+            sender.waitUntilIdle();
             message.completed();
             break;
           case SHUTDOWN:
-            doShutdown();
+            doShutdown(buffer);
             message.completed();
             return;
           }
@@ -261,31 +416,36 @@ final class DefaultEventProcessor implements EventProcessor {
       }
     }
     
-    private void doShutdown() {
-      waitUntilAllFlushWorkersInactive();
-      disabled.set(true); // In case there are any more messages, we want to ignore them
-      for (SendEventsTask task: flushWorkers) {
-        task.stop();
+    private void doShutdown(EventBuffer buffer) {
+      sender.waitUntilIdle();
+      if (spool != null) {
+        spoolUnsentEvents(buffer);
+        spool.close();
       }
-      // Note that we don't close the HTTP client here, because it's shared by other components
-      // via the LDConfig.  The LDClient will dispose of it.
+      disabled.set(true); // In case there are any more messages, we want to ignore them
+      sender.close();
     }
 
-    private void waitUntilAllFlushWorkersInactive() {
-      while (true) {
-        try {
-          synchronized(busyFlushWorkersCount) {
-            if (busyFlushWorkersCount.get() == 0) {
-              return;
-            } else {
-              busyFlushWorkersCount.wait();
-            }
-          }
-        } catch (InterruptedException e) {}
+    // Events that could not be flushed before shutting down, because too many deliveries were already
+    // in progress, are kept for the next client that uses the spool.
+    private void spoolUnsentEvents(EventBuffer buffer) {
+      EventSummary pendingSummary = summaries.drain();
+      if (disabled.get()) {
+        return;
+      }
+      buffer.addSummary(pendingSummary);
+      if (buffer.isEmpty()) {
+        return;
+      }
+      FlushPayload payload = buffer.getPayload();
+      PayloadBuffer out = toJson(new EventOutputFormatter(config), payload);
+      if (spool.add(out.bytes(), out.size())) {
+        logger.info("Stored {} unsent event(s) to be delivered later", payload.events.length);
+        buffer.clear();
       }
     }
     
-    private void processEvent(Event e, SimpleLRUCache<String, String> userKeys, EventBuffer buffer) {
+    private void processEvent(Event e, EventBuffer buffer) {
       if (disabled.get()) {
         return;
       }
@@ -314,7 +474,7 @@ final class DefaultEventProcessor implements EventProcessor {
       // For each user we haven't seen before, we add an index event - unless this is already
       // an identify event for that user.
       if (!addFullEvent || !config.inlineUsersInEvents) {
-        if (e.user != null && e.user.getKey() != null && !noticeUser(e.user, userKeys)) {
+        if (e.user != null && e.user.getKey() != null && !noticeUser(e.user)) {
           if (!(e instanceof Event.Identify)) {
             addIndexEvent = true;
           }          
@@ -334,12 +494,11 @@ final class DefaultEventProcessor implements EventProcessor {
     }
     
     // Add to the set of users we've noticed, and return true if the user was already known to us.
-    private boolean noticeUser(LDUser user, SimpleLRUCache<String, String> userKeys) {
+    private boolean noticeUser(LDUser user) {
       if (user == null || user.getKey() == null) {
         return false;
       }
-      String key = user.getKeyAsString();
-      return userKeys.put(key, key) != null;
+      return !userKeys.add(user.getKeyAsString());
     }
     
     private boolean shouldSampleEvent() {
@@ -361,21 +520,113 @@ final class DefaultEventProcessor implements EventProcessor {
       return false;      
     }
     
-    private void triggerFlush(EventBuffer buffer, BlockingQueue<FlushPayload> payloadQueue) {
-      if (disabled.get() || buffer.isEmpty()) {
+    // Returns how long the main loop can wait for a message before it has to flush, with adaptive flushing.
+    private long nanosUntilFlush() {
+      return flushDueNanos == 0 ? Long.MAX_VALUE : Math.max(0, flushDueNanos - System.nanoTime());
+    }
+    
+    // With adaptive flushing, this is called after events have been added. It flushes right away if the
+    // buffer has reached the high-water mark, as long as another delivery can be started; otherwise,
+    // if these are the first events since the last flush, it starts the clock on how long they can wait.
+    private void checkFlushNeeded(EventBuffer buffer) {
+      if (!adaptiveFlush) {
         return;
       }
-      FlushPayload payload = buffer.getPayload();
-      busyFlushWorkersCount.incrementAndGet();
-      if (payloadQueue.offer(payload)) {
-        // These events now belong to the next available flush worker, so drop them from our state
-        buffer.clear();
-      } else {
-        logger.debug("Skipped flushing because all workers are busy");
-        // All the workers are busy so we can't flush now; keep the events in our state
-        synchronized(busyFlushWorkersCount) {
-          busyFlushWorkersCount.decrementAndGet();
-          busyFlushWorkersCount.notify();
+      if (buffer.events.size() >= flushHighWaterMark && sender.hasCapacity()) {
+        triggerFlush(buffer);
+      } else if (!eventsWaiting && (!buffer.isEmpty() || summaries.isPending())) {
+        eventsWaiting = true;
+        idleFlushIntervalNanos = maxEventWaitNanos;
+        long due = System.nanoTime() + maxEventWaitNanos;
+        if (flushDueNanos == 0 || due - flushDueNanos < 0) {
+          flushDueNanos = due;
+        }
+      }
+    }
+    
+    // With adaptive flushing, this decides when to flush next, after a flush. If events are still waiting,
+    // because too many deliveries were in progress, that is after the usual maximum wait. If only stored payloads
+    // are waiting, it is after an interval that doubles each time, so that an idle client that cannot
+    // deliver them wakes up less and less often. If nothing at all is waiting, there is no need to wake up.
+    private void scheduleNextFlush(EventBuffer buffer) {
+      eventsWaiting = false;
+      flushDueNanos = 0;
+      if (disabled.get()) {
+        return;
+      }
+      if (!buffer.isEmpty()) {
+        eventsWaiting = true;
+        flushDueNanos = System.nanoTime() + maxEventWaitNanos;
+      } else if ((spillQueue != null && !spillQueue.isEmpty()) || (spool != null && !spool.isEmpty())) {
+        flushDueNanos = System.nanoTime() + idleFlushIntervalNanos;
+        idleFlushIntervalNanos = Math.min(idleFlushIntervalNanos * 2, MAX_IDLE_FLUSH_INTERVAL_NANOS);
+      }
+    }
+    
+    private void triggerFlush(EventBuffer buffer) {
+      userKeys.removeExpired();
+      flushBuffered(buffer);
+      if (adaptiveFlush) {
+        scheduleNextFlush(buffer);
+      }
+    }
+    
+    private void flushBuffered(EventBuffer buffer) {
+      EventSummary pendingSummary = summaries.drain();
+      if (disabled.get()) {
+        return;
+      }
+      buffer.addSummary(pendingSummary);
+      if (!buffer.isEmpty()) {
+        if (sender.send(buffer.getPayload())) {
+          // These events now belong to the sender, so drop them from our state
+          buffer.clear();
+          counters.flushed();
+        } else {
+          logger.debug("Skipped flushing because too many deliveries are in progress");
+          // We can't flush now; keep the events in our state
+          return;
+        }
+      }
+      // Any events that were spilled to disk are delivered after the current ones, as long as more
+      // deliveries can be started
+      if (spillQueue != null) {
+        File file;
+        while (sender.hasCapacity() && (file = spillQueue.poll()) != null) {
+          byte[] json = readSpillFile(file);
+          if (json != null) {
+            logger.debug("Posting events spilled to {}", file);
+            sender.send(new FlushPayload(json, null));
+          }
+        }
+      }
+      // Payloads that previously failed are retried after that. While deliveries are still failing, only
+      // one is tried per flush, to find out when the service can be reached again.
+      if (spool != null) {
+        EventSpool.Record record;
+        while (sender.hasCapacity() && (record = spool.poll()) != null) {
+          byte[] json = spool.read(record);
+          if (json != null) {
+            logger.debug("Posting stored events");
+            sender.send(new FlushPayload(json, record));
+          }
+          if (deliveryFailing.get()) {
+            break;
+          }
+        }
+      }
+    }
+    
+    private static byte[] readSpillFile(File file) {
+      try {
+        return Files.readAllBytes(file.toPath());
+      } catch (IOException e) {
+        logger.warn("Unable to read spilled events file {}: {}", file, e.toString());
+        return null;
+      } finally {
+        // The file is deleted even if it can't be read, since it would probably fail again
+        if (!file.delete()) {
+          logger.warn("Unable to delete spilled events file {}", file);
         }
       }
     }
@@ -399,41 +650,121 @@ final class DefaultEventProcessor implements EventProcessor {
   }
   
   private static final class EventBuffer {
-    final List<Event> events = new ArrayList<>();
+    final Deque<Event> events = new ArrayDeque<>();
     final EventSummarizer summarizer = new EventSummarizer();
     private final int capacity;
+    private final EventOverflowPolicy policy;
+    private final EventCounters counters;
+    private final EventSpillQueue spillQueue;
+    private final EventOutputFormatter spillFormatter;
+    private final Random random;
+    private PayloadBuffer spillBuffer;
     private boolean capacityExceeded = false;
     
-    EventBuffer(int capacity) {
-      this.capacity = capacity;
+    EventBuffer(LDConfig config, EventCounters counters, EventSpillQueue spillQueue, Random random) {
+      this.capacity = config.capacity;
+      this.policy = config.eventOverflowPolicy;
+      this.counters = counters;
+      this.spillQueue = spillQueue;
+      this.spillFormatter = spillQueue == null ? null : new EventOutputFormatter(config);
+      this.random = random;
     }
     
     void add(Event e) {
-      if (events.size() >= capacity) {
+      if (events.size() >= capacity && !makeRoom()) {
         if (!capacityExceeded) { // don't need AtomicBoolean, this is only checked on one thread
           capacityExceeded = true;
-          logger.warn("Exceeded event queue capacity. Increase capacity to avoid dropping events.");
+          if (spillQueue != null) {
+            logger.warn("Exceeded event queue capacity and the event spill directory is full; events will be dropped.");
+          } else {
+            logger.warn("Exceeded event queue capacity. Increase capacity to avoid dropping events.");
+          }
         }
-      } else {
-        capacityExceeded = false;
-        events.add(e);
+        if (spillQueue != null) {
+          counters.spillFullDrops.incrementAndGet();
+        } else {
+          counters.bufferFullDrops.incrementAndGet();
+        }
+        return;
+      }
+      // Index events are never sampled out, since the user has already been marked as known, and the user
+      // details would not be sent again until the user key cache forgot about them
+      if (policy.kind == EventOverflowPolicy.Kind.SAMPLE && events.size() >= capacity / 2 &&
+          !(e instanceof Event.Index) && random.nextInt(policy.samplingInterval) != 0) {
+        counters.sampledOutEvents.incrementAndGet();
+        return;
       }
+      capacityExceeded = false;
+      events.add(e);
+    }
+    
+    // Returns true if the overflow policy was able to make room for another event.
+    private boolean makeRoom() {
+      switch (policy.kind) {
+      case DROP_OLDEST:
+        // the oldest event other than an index event, for the same reason as in add
+        for (Iterator<Event> it = events.iterator(); it.hasNext(); ) {
+          if (!(it.next() instanceof Event.Index)) {
+            it.remove();
+            counters.oldestEventDrops.incrementAndGet();
+            return true;
+          }
+        }
+        return false;
+      case SPILL_TO_DISK:
+        return spill();
+      default:
+        return false;
+      }
+    }
+    
+    private boolean spill() {
+      if (events.isEmpty()) {
+        return false;
+      }
+      if (spillBuffer == null) {
+        spillBuffer = new PayloadBuffer();
+      }
+      spillBuffer.reset();
+      try {
+        Writer writer = newPayloadWriter(spillBuffer);
+        spillFormatter.writeOutputEvents(events.toArray(new Event[events.size()]), new EventSummary(), writer);
+        writer.flush();
+      } catch (IOException e) { // not really possible when writing to memory
+        return false;
+      }
+      boolean stored = spillQueue.add(spillBuffer.bytes(), spillBuffer.size());
+      if (spillBuffer.capacity() > MAX_RETAINED_PAYLOAD_BUFFER_SIZE) {
+        spillBuffer = null;
+      }
+      if (!stored) {
+        return false;
+      }
+      logger.debug("Spilled {} events to disk", events.size());
+      counters.spilledEvents.addAndGet(events.size());
+      events.clear();
+      return true;
     }
     
     void addToSummary(Event e) {
       summarizer.summarizeEvent(e);
     }
     
+    void addSummary(EventSummarizer.EventSummary summary) {
+      summarizer.summarizeAll(summary);
+    }
+    
     boolean isEmpty() {
-      return events.isEmpty() && summarizer.snapshot().isEmpty();
+      return events.isEmpty() && summarizer.getSummary().isEmpty();
     }
     
     FlushPayload getPayload() {
       Event[] eventsOut = events.toArray(new Event[events.size()]);
-      EventSummarizer.EventSummary summary = summarizer.snapshot();
+      EventSummarizer.EventSummary summary = summarizer.getSummary();
       return new FlushPayload(eventsOut, summary);
     }
     
+    // This leaves the summary of the last payload unchanged, because it is now owned by a flush worker
     void clear() {
       events.clear();
       summarizer.clear();
@@ -443,10 +774,64 @@ final class DefaultEventProcessor implements EventProcessor {
   private static final class FlushPayload {
     final Event[] events;
     final EventSummary summary;
+    // If this is not null, the payload has already been serialized; it may also be stored in the spool
+    final byte[] json;
+    final EventSpool.Record spoolRecord;
     
     FlushPayload(Event[] events, EventSummary summary) {
       this.events = events;
       this.summary = summary;
+      this.json = null;
+      this.spoolRecord = null;
+    }
+    
+    FlushPayload(byte[] json, EventSpool.Record spoolRecord) {
+      this.events = null;
+      this.summary = null;
+      this.json = json;
+      this.spoolRecord = spoolRecord;
+    }
+  }
+  
+  private static final class EventCounters {
+    final AtomicLong inputQueueDrops = new AtomicLong();
+    final AtomicLong bufferFullDrops = new AtomicLong();
+    final AtomicLong oldestEventDrops = new AtomicLong();
+    final AtomicLong sampledOutEvents = new AtomicLong();
+    final AtomicLong spilledEvents = new AtomicLong();
+    final AtomicLong spillFullDrops = new AtomicLong();
+    final AtomicLong flushes = new AtomicLong();
+    // These are only written by the dispatcher thread
+    private volatile long lastFlushNanos;
+    private volatile double averageFlushIntervalNanos;
+    
+    // Called whenever buffered events are handed to a worker. The rate is based on a moving average of
+    // the interval between flushes, weighted towards the most recent ones.
+    void flushed() {
+      long now = System.nanoTime();
+      if (flushes.get() > 0) {
+        long interval = now - lastFlushNanos;
+        averageFlushIntervalNanos = flushes.get() == 1 ? interval :
+          averageFlushIntervalNanos + (interval - averageFlushIntervalNanos) / 8;
+      }
+      lastFlushNanos = now;
+      flushes.incrementAndGet();
+    }
+    
+    double flushesPerMinute() {
+      if (flushes.get() < 2) {
+        return 0;
+      }
+      // if there have been no flushes for a while, the rate has dropped even though the average hasn't changed
+      double interval = Math.max(averageFlushIntervalNanos, System.nanoTime() - lastFlushNanos);
+      return interval <= 0 ? 0 : TimeUnit.MINUTES.toNanos(1) / interval;
+    }
+    
+    EventProcessorStatistics toStatistics(EventSpool spool) {
+      return new EventProcessorStatistics(inputQueueDrops.get(), bufferFullDrops.get(), oldestEventDrops.get(),
+          sampledOutEvents.get(), spilledEvents.get(), spillFullDrops.get(),
+          spool == null ? 0 : spool.getStoredPayloads(), spool == null ? 0 : spool.getDroppedPayloads(),
+          flushes.get(), flushesPerMinute());
     }
   }
   
@@ -454,98 +839,291 @@ final class DefaultEventProcessor implements EventProcessor {
     void handleResponse(Response response);
   }
   
-  private static final class SendEventsTask implements Runnable {
+  /**
+   * Delivers payloads with OkHttp's asynchronous calls, so that none of our own threads waits for a
+   * delivery to finish. Up to {@link #MAX_IN_FLIGHT} payloads can be in progress at once, so several
+   * can overlap when the events service is slow; beyond that, the dispatcher keeps its events until
+   * the next flush. A request that fails is tried once more after a randomized delay of up to a second,
+   * which is scheduled rather than slept through.
+   */
+  private static final class EventSender {
+    private static final int MAX_IN_FLIGHT = 5;
+    private static final int MAX_ATTEMPTS = 2;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    
     private final String sdkKey;
     private final LDConfig config;
+    private final String uriStr;
+    private final OkHttpClient httpClient;
+    private final ExecutorService callExecutor;
     private final EventResponseListener responseListener;
-    private final BlockingQueue<FlushPayload> payloadQueue;
-    private final AtomicInteger activeFlushWorkersCount;
-    private final AtomicBoolean stopping;
-    private final EventOutput.Formatter formatter;
-    private final Thread thread;
-    
-    SendEventsTask(String sdkKey, LDConfig config, EventResponseListener responseListener,
-                   BlockingQueue<FlushPayload> payloadQueue, AtomicInteger activeFlushWorkersCount,
-                   ThreadFactory threadFactory) {
+    private final EventSpool spool;
+    private final AtomicBoolean deliveryFailing;
+    private final ScheduledExecutorService retryScheduler;
+    private final EventOutputFormatter formatter;
+    private final AtomicInteger inFlightCount = new AtomicInteger(0);
+    private final Random random = new Random();
+    
+    EventSender(String sdkKey, LDConfig config, EventResponseListener responseListener, EventSpool spool,
+                AtomicBoolean deliveryFailing, ScheduledExecutorService retryScheduler, ThreadFactory threadFactory) {
       this.sdkKey = sdkKey;
       this.config = config;
-      this.formatter = new EventOutput.Formatter(config.inlineUsersInEvents);
+      this.uriStr = config.eventsURI.toString() + "/bulk";
       this.responseListener = responseListener;
-      this.payloadQueue = payloadQueue;
-      this.activeFlushWorkersCount = activeFlushWorkersCount;
-      this.stopping = new AtomicBoolean(false);
-      thread = threadFactory.newThread(this);
-      thread.setDaemon(true);
-      thread.start();
+      this.spool = spool;
+      this.deliveryFailing = deliveryFailing;
+      this.retryScheduler = retryScheduler;
+      this.formatter = new EventOutputFormatter(config);
+      // The calls are run by a dispatcher of our own, rather than the shared client's, so that its
+      // threads are daemon threads like our other ones. They only exist while there are calls to run.
+      callExecutor = Executors.newCachedThreadPool(threadFactory);
+      Dispatcher dispatcher = new Dispatcher(callExecutor);
+      dispatcher.setMaxRequests(MAX_IN_FLIGHT);
+      dispatcher.setMaxRequestsPerHost(MAX_IN_FLIGHT);
+      httpClient = config.httpClient.newBuilder().dispatcher(dispatcher).build();
     }
     
-    public void run() {
-      while (!stopping.get()) {
-        FlushPayload payload = null;
-        try {
-          payload = payloadQueue.take();
-        } catch (InterruptedException e) {
-          continue;
-        }
-        try {
-          List<EventOutput> eventsOut = formatter.makeOutputEvents(payload.events, payload.summary);
-          if (!eventsOut.isEmpty()) {
-            postEvents(eventsOut);
-          }
-        } catch (Exception e) {
-          logger.error("Unexpected error in event processor: {}", e.toString());
-          logger.debug(e.toString(), e);
-        }
-        synchronized (activeFlushWorkersCount) {
-          activeFlushWorkersCount.decrementAndGet();
-          activeFlushWorkersCount.notifyAll();
-        }
-      }
+    boolean hasCapacity() {
+      return inFlightCount.get() < MAX_IN_FLIGHT;
     }
     
-    void stop() {
-      stopping.set(true);
-      thread.interrupt();
+    /**
+     * Starts delivering a payload, unless too many deliveries are already in progress. This is only
+     * called from the dispatcher thread, so nothing else can start a delivery between the check and
+     * the increment.
+     */
+    boolean send(FlushPayload payload) {
+      if (!hasCapacity()) {
+        return false;
+      }
+      inFlightCount.incrementAndGet();
+      new Delivery(payload).run();
+      return true;
     }
     
-    private void postEvents(List<EventOutput> eventsOut) {
-      String json = config.gson.toJson(eventsOut);
-      String uriStr = config.eventsURI.toString() + "/bulk";
-      
-      logger.debug("Posting {} event(s) to {} with payload: {}",
-          eventsOut.size(), uriStr, json);
-
-      for (int attempt = 0; attempt < 2; attempt++) {
-        if (attempt > 0) {
-          logger.warn("Will retry posting events after 1 second");
+    void waitUntilIdle() {
+      synchronized (inFlightCount) {
+        while (inFlightCount.get() > 0) {
           try {
-            Thread.sleep(1000);
+            inFlightCount.wait();
           } catch (InterruptedException e) {}
         }
-        Request request = getRequestBuilder(sdkKey)
+      }
+    }
+    
+    // Note that we don't close the HTTP client here, because its connection pool is shared with other
+    // components via the LDConfig. The LDClient will dispose of it.
+    void close() {
+      callExecutor.shutdown();
+    }
+    
+    // The delay is between half of RETRY_DELAY_MILLIS and all of it, so that clients that failed at the
+    // same time don't all retry at the same time
+    private long retryDelayMillis() {
+      return RETRY_DELAY_MILLIS / 2 + (long)(random.nextDouble() * (RETRY_DELAY_MILLIS / 2));
+    }
+    
+    /**
+     * The state of one payload's delivery. Each attempt is a new asynchronous call, and this is its
+     * callback; running this starts the next attempt.
+     */
+    private final class Delivery implements Callback, Runnable {
+      private final FlushPayload payload;
+      private final Request request;
+      private int attempts;
+      private long startTime;
+      
+      Delivery(FlushPayload payload) {
+        this.payload = payload;
+        Request.Builder requestBuilder = getRequestBuilder(sdkKey)
             .url(uriStr)
-            .post(RequestBody.create(MediaType.parse("application/json; charset=utf-8"), json))
+            .post(new EventsRequestBody(formatter, payload, config.compressEvents))
             .addHeader("Content-Type", "application/json")
-            .addHeader(EVENT_SCHEMA_HEADER, EVENT_SCHEMA_VERSION)
-            .build();
-  
-        long startTime = System.currentTimeMillis();
-        try (Response response = config.httpClient.newCall(request).execute()) {
-          long endTime = System.currentTimeMillis();
-          logger.debug("Event delivery took {} ms, response status {}", endTime - startTime, response.code());
+            .addHeader(EVENT_SCHEMA_HEADER, EVENT_SCHEMA_VERSION);
+        if (config.compressEvents) {
+          requestBuilder.addHeader("Content-Encoding", "gzip");
+        }
+        request = requestBuilder.build();
+        if (payload.events != null && logger.isDebugEnabled()) {
+          int eventCount = payload.events.length + (payload.summary.isEmpty() ? 0 : 1);
+          if (config.compressEvents) {
+            logger.debug("Posting {} event(s) to {} with gzip-compressed payload", eventCount, uriStr);
+          } else {
+            PayloadBuffer json = toJson(formatter, payload);
+            logger.debug("Posting {} event(s) to {} with payload: {}",
+                eventCount, uriStr, new String(json.bytes(), 0, json.size(), Charsets.UTF_8));
+          }
+        }
+      }
+      
+      public void run() {
+        attempts++;
+        startTime = System.currentTimeMillis();
+        try {
+          httpClient.newCall(request).enqueue(this);
+        } catch (RejectedExecutionException e) { // the client is being closed
+          failed();
+        }
+      }
+      
+      public void onResponse(Call call, Response response) {
+        try {
+          logger.debug("Event delivery took {} ms, response status {}",
+              System.currentTimeMillis() - startTime, response.code());
           if (!response.isSuccessful()) {
             logger.warn("Unexpected response status when posting events: {}", response.code());
             if (isHttpErrorRecoverable(response.code())) {
-              continue;
+              retryOrFail();
+              return;
             }
           }
           responseListener.handleResponse(response);
-          break;
-        } catch (IOException e) {
-          logger.warn("Unhandled exception in LaunchDarkly client when posting events to URL: " + request.url(), e);
-          continue;
+          deliveryFailing.set(false);
+          if (payload.spoolRecord != null) {
+            spool.markDone(payload.spoolRecord);
+          }
+          finished();
+        } catch (Exception e) {
+          logger.error("Unexpected error in event processor: {}", e.toString());
+          logger.debug(e.toString(), e);
+          finished();
+        } finally {
+          response.close();
+        }
+      }
+      
+      public void onFailure(Call call, IOException e) {
+        logger.warn("Unhandled exception in LaunchDarkly client when posting events to URL: " + request.url(), e);
+        retryOrFail();
+      }
+      
+      private void retryOrFail() {
+        if (attempts < MAX_ATTEMPTS) {
+          long delay = retryDelayMillis();
+          logger.warn("Will retry posting events after {} ms", delay);
+          try {
+            retryScheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
+            return;
+          } catch (RejectedExecutionException e) { // the event processor has been closed
+          }
+        }
+        failed();
+      }
+      
+      // The events could not be delivered, but might be if they were tried again later
+      private void failed() {
+        deliveryFailing.set(true);
+        try {
+          if (spool != null) {
+            if (payload.spoolRecord != null) {
+              spool.retryLater(payload.spoolRecord, payload.json);
+            } else if (payload.json != null) {
+              if (spool.add(payload.json, payload.json.length)) {
+                logger.warn("Stored events to be delivered later");
+              }
+            } else {
+              PayloadBuffer json = toJson(formatter, payload);
+              if (spool.add(json.bytes(), json.size())) {
+                logger.warn("Stored {} event(s) to be delivered later",
+                    payload.events.length + (payload.summary.isEmpty() ? 0 : 1));
+              }
+            }
+          }
+        } finally {
+          finished();
         }
       }
+      
+      private void finished() {
+        synchronized (inFlightCount) {
+          inFlightCount.decrementAndGet();
+          inFlightCount.notifyAll();
+        }
+      }
+    }
+  }
+  
+  // OutputStreamWriter copies every string it is given into a new array, so JsonWriter's many small
+  // writes are buffered first
+  private static Writer newPayloadWriter(OutputStream out) {
+    return new BufferedWriter(new OutputStreamWriter(out, Charsets.UTF_8));
+  }
+  
+  /**
+   * A byte array output stream whose contents can be used without copying them.
+   */
+  private static final class PayloadBuffer extends ByteArrayOutputStream {
+    byte[] bytes() {
+      return buf;
+    }
+    
+    int capacity() {
+      return buf.length;
+    }
+  }
+  
+  private static PayloadBuffer toJson(EventOutputFormatter formatter, FlushPayload payload) {
+    PayloadBuffer out = new PayloadBuffer();
+    try {
+      Writer writer = newPayloadWriter(out);
+      formatter.writeOutputEvents(payload.events, payload.summary, writer);
+      writer.flush();
+    } catch (IOException e) { // not really possible when writing to memory
+      throw new RuntimeException(e);
+    }
+    return out;
+  }
+  
+  /**
+   * The body of a request to deliver a payload. Events that have not been serialized yet are written
+   * to the request as JSON on one of OkHttp's threads, so the dispatcher never has to do it, and the
+   * JSON is never held in memory; it is written again from the same events if the request is retried.
+   * If compression is enabled, the JSON goes through a gzip stream on the way.
+   */
+  private static final class EventsRequestBody extends RequestBody {
+    private final EventOutputFormatter formatter;
+    private final FlushPayload payload;
+    private final boolean gzip;
+    
+    EventsRequestBody(EventOutputFormatter formatter, FlushPayload payload, boolean gzip) {
+      this.formatter = formatter;
+      this.payload = payload;
+      this.gzip = gzip;
+    }
+    
+    @Override
+    public MediaType contentType() {
+      return JSON_CONTENT_TYPE;
+    }
+    
+    @Override
+    public long contentLength() {
+      return gzip || payload.json == null ? -1 : payload.json.length;
+    }
+    
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+      BufferedSink out = sink;
+      if (gzip) {
+        // OkHttp closes the request sink itself, so closing the gzip stream must only finish it
+        Sink unclosable = new ForwardingSink(sink) {
+          @Override
+          public void close() throws IOException {
+            flush();
+          }
+        };
+        out = Okio.buffer(new GzipSink(unclosable));
+      }
+      if (payload.json != null) {
+        out.write(payload.json);
+      } else {
+        Writer writer = newPayloadWriter(out.outputStream());
+        formatter.writeOutputEvents(payload.events, payload.summary, writer);
+        writer.flush();
+      }
+      if (gzip) {
+        out.close();
+      }
     }
   }
 }
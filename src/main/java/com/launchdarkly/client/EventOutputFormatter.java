@@ -0,0 +1,167 @@
+package com.launchdarkly.client;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+import com.launchdarkly.client.EventSummarizer.FlagCounters;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes events and summary counters in the JSON format of an analytics event payload, which is
+ * somewhat different in shape from the originating events. Each property is written directly to a
+ * {@link JsonWriter}, without building any intermediate objects or using reflection. This is an
+ * implementation detail used only by DefaultEventProcessor and related classes.
+ */
+final class EventOutputFormatter {
+  private final Gson gson;
+  private final LDUser.UserAdapter userAdapter;
+  private final boolean inlineUsers;
+
+  EventOutputFormatter(LDConfig config) {
+    this.gson = config.gson;
+    this.userAdapter = new LDUser.UserAdapter(config);
+    this.inlineUsers = config.inlineUsersInEvents;
+  }
+
+  /**
+   * Writes a JSON array of the output events for a payload.
+   * @param events the events to send
+   * @param summary the summary counters; a summary event is written only if it is not empty
+   * @param writer the destination; it is flushed but not closed
+   * @return the number of events written, including the summary event
+   * @throws IOException if the writer throws an exception
+   */
+  int writeOutputEvents(Event[] events, EventSummarizer.EventSummary summary, Writer writer) throws IOException {
+    // Gson configures the writer the same way as for its own output, e.g. omitting null properties
+    JsonWriter jw = gson.newJsonWriter(writer);
+    int count = 0;
+    jw.beginArray();
+    for (Event event: events) {
+      if (writeOutputEvent(event, jw)) {
+        count++;
+      }
+    }
+    if (!summary.isEmpty()) {
+      writeSummaryEvent(summary, jw);
+      count++;
+    }
+    jw.endArray();
+    jw.flush();
+    return count;
+  }
+
+  private boolean writeOutputEvent(Event e, JsonWriter jw) throws IOException {
+    String userKey = e.user == null ? null : e.user.getKeyAsString();
+    if (e instanceof Event.FeatureRequest) {
+      Event.FeatureRequest fe = (Event.FeatureRequest)e;
+      boolean inlineThisUser = inlineUsers || fe.debug;
+      startEvent(fe.debug ? "debug" : "feature", fe.creationDate, jw);
+      jw.name("key").value(fe.key);
+      writeUserOrKey(fe.user, userKey, inlineThisUser, jw);
+      jw.name("version").value(fe.version);
+      jw.name("variation").value(fe.variation);
+      writeJsonElement("value", fe.value, jw);
+      writeJsonElement("default", fe.defaultVal, jw);
+      jw.name("prereqOf").value(fe.prereqOf);
+      writeReason(fe.reason, jw);
+    } else if (e instanceof Event.Identify) {
+      startEvent("identify", e.creationDate, jw);
+      jw.name("key").value(userKey);
+      writeUser(e.user, jw);
+    } else if (e instanceof Event.Custom) {
+      Event.Custom ce = (Event.Custom)e;
+      startEvent("custom", ce.creationDate, jw);
+      jw.name("key").value(ce.key);
+      writeUserOrKey(ce.user, userKey, inlineUsers, jw);
+      writeJsonElement("data", ce.data, jw);
+    } else if (e instanceof Event.Index) {
+      startEvent("index", e.creationDate, jw);
+      writeUser(e.user, jw);
+    } else {
+      return false;
+    }
+    jw.endObject();
+    return true;
+  }
+
+  private void writeSummaryEvent(EventSummarizer.EventSummary summary, JsonWriter jw) throws IOException {
+    jw.beginObject();
+    jw.name("kind").value("summary");
+    jw.name("startDate").value(summary.startDate);
+    jw.name("endDate").value(summary.endDate);
+    jw.name("features");
+    jw.beginObject();
+    for (FlagCounters flag: summary.flags()) {
+      jw.name(flag.key);
+      jw.beginObject();
+      writeJsonElement("default", flag.defaultVal, jw);
+      jw.name("counters");
+      jw.beginArray();
+      for (int i = 0; i < flag.size(); i++) {
+        Integer version = flag.getVersion(i);
+        jw.beginObject();
+        jw.name("variation").value(flag.getVariation(i));
+        writeJsonElement("value", flag.getValue(i), jw);
+        jw.name("version").value(version);
+        jw.name("count").value(flag.getCount(i));
+        if (version == null) {
+          jw.name("unknown").value(true);
+        }
+        jw.endObject();
+      }
+      jw.endArray();
+      jw.endObject();
+    }
+    jw.endObject();
+    jw.endObject();
+  }
+
+  private static void startEvent(String kind, long creationDate, JsonWriter jw) throws IOException {
+    jw.beginObject();
+    jw.name("kind").value(kind);
+    jw.name("creationDate").value(creationDate);
+  }
+
+  private void writeUserOrKey(LDUser user, String userKey, boolean inlineUser, JsonWriter jw) throws IOException {
+    if (inlineUser) {
+      writeUser(user, jw);
+    } else {
+      jw.name("userKey").value(userKey);
+    }
+  }
+
+  private void writeUser(LDUser user, JsonWriter jw) throws IOException {
+    if (user != null) {
+      jw.name("user");
+      userAdapter.write(jw, user);
+    }
+  }
+
+  private void writeJsonElement(String name, JsonElement value, JsonWriter jw) throws IOException {
+    if (value != null && !value.isJsonNull()) {
+      jw.name(name);
+      gson.toJson(value, jw);
+    }
+  }
+
+  private static void writeReason(EvaluationReason reason, JsonWriter jw) throws IOException {
+    if (reason == null) {
+      return;
+    }
+    jw.name("reason");
+    jw.beginObject();
+    jw.name("kind").value(reason.getKind().name());
+    if (reason instanceof EvaluationReason.RuleMatch) {
+      EvaluationReason.RuleMatch r = (EvaluationReason.RuleMatch)reason;
+      jw.name("ruleIndex").value(r.getRuleIndex());
+      jw.name("ruleId").value(r.getRuleId());
+    } else if (reason instanceof EvaluationReason.PrerequisiteFailed) {
+      jw.name("prerequisiteKey").value(((EvaluationReason.PrerequisiteFailed)reason).getPrerequisiteKey());
+    } else if (reason instanceof EvaluationReason.Error) {
+      jw.name("errorKind").value(((EvaluationReason.Error)reason).getErrorKind().name());
+    }
+    jw.endObject();
+  }
+}
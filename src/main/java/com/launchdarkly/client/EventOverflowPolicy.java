@@ -0,0 +1,113 @@
+package com.launchdarkly.client;
+
+import java.io.File;
+
+/**
+ * Determines what the client does with analytics events when it cannot keep up with them: either
+ * because the queue of events waiting to be processed is full, or because the buffer of events waiting
+ * to be delivered has reached {@link LDConfig.Builder#capacity(int)}. Pass one of these to
+ * {@link LDConfig.Builder#eventOverflowPolicy(EventOverflowPolicy)}.
+ * <p>
+ * Summary counters are not affected by any of these policies, since they do not take up any more
+ * space as more events are counted. The number of events discarded for each reason can be found with
+ * {@link LDClientInterface#getEventProcessorStatistics()}.
+ * @since 4.4.0
+ */
+public final class EventOverflowPolicy {
+  static enum Kind {
+    BLOCK,
+    DROP_NEWEST,
+    DROP_OLDEST,
+    SAMPLE,
+    SPILL_TO_DISK
+  }
+
+  final Kind kind;
+  final int samplingInterval;
+  final File spillDirectory;
+  final long spillCapacityBytes;
+
+  private EventOverflowPolicy(Kind kind, int samplingInterval, File spillDirectory, long spillCapacityBytes) {
+    this.kind = kind;
+    this.samplingInterval = samplingInterval;
+    this.spillDirectory = spillDirectory;
+    this.spillCapacityBytes = spillCapacityBytes;
+  }
+
+  /**
+   * The default policy: a thread that generates an event waits for room in the event queue, and events
+   * that arrive when the event buffer is full are discarded.
+   * @return a policy
+   */
+  public static EventOverflowPolicy block() {
+    return new EventOverflowPolicy(Kind.BLOCK, 0, null, 0);
+  }
+
+  /**
+   * Never makes a thread wait: an event that arrives when the event queue or the event buffer is full
+   * is discarded.
+   * @return a policy
+   */
+  public static EventOverflowPolicy dropNewest() {
+    return new EventOverflowPolicy(Kind.DROP_NEWEST, 0, null, 0);
+  }
+
+  /**
+   * Never makes a thread wait, and keeps the most recent events: when the event buffer is full, the
+   * oldest event in it is discarded to make room for a new one. Events that only carry user details are
+   * never discarded this way, since other events refer to them. An event that arrives when the event
+   * queue is full is still discarded, since only the event processor's own thread can remove events
+   * from the queue.
+   * @return a policy
+   */
+  public static EventOverflowPolicy dropOldest() {
+    return new EventOverflowPolicy(Kind.DROP_OLDEST, 0, null, 0);
+  }
+
+  /**
+   * Never makes a thread wait, and thins out events under load: once the event buffer is half full, only
+   * one in every {@code samplingInterval} events is added to it, chosen at random, apart from events that
+   * only carry user details, which are always added. Events that arrive
+   * when the event queue or the event buffer is full are discarded.
+   * @param samplingInterval the sampling interval to use under load; must be greater than 1
+   * @return a policy
+   */
+  public static EventOverflowPolicy sampleUnderPressure(int samplingInterval) {
+    if (samplingInterval <= 1) {
+      throw new IllegalArgumentException("samplingInterval must be greater than 1");
+    }
+    return new EventOverflowPolicy(Kind.SAMPLE, samplingInterval, null, 0);
+  }
+
+  /**
+   * Never makes a thread wait, and avoids losing events when the event buffer fills up between flushes:
+   * the buffered events are written to a file in the given directory, and delivered from there at the
+   * next flush. If the files in the directory already add up to {@code capacityBytes}, events are
+   * discarded instead. Events that arrive when the event queue is full are also discarded.
+   * @param directory the directory for the files; it is created if necessary, and should not be used
+   * by anything else
+   * @param capacityBytes the maximum total size of the files
+   * @return a policy
+   */
+  public static EventOverflowPolicy spillToDisk(File directory, long capacityBytes) {
+    if (directory == null) {
+      throw new NullPointerException("directory");
+    }
+    if (capacityBytes <= 0) {
+      throw new IllegalArgumentException("capacityBytes must be positive");
+    }
+    return new EventOverflowPolicy(Kind.SPILL_TO_DISK, 0, directory, capacityBytes);
+  }
+
+  @Override
+  public String toString() {
+    switch (kind) {
+    case SAMPLE:
+      return kind + "(" + samplingInterval + ")";
+    case SPILL_TO_DISK:
+      return kind + "(" + spillDirectory + "," + spillCapacityBytes + ")";
+    default:
+      return kind.toString();
+    }
+  }
+}
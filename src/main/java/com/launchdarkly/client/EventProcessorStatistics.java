@@ -0,0 +1,137 @@
+package com.launchdarkly.client;
+
+/**
+ * A snapshot of counters that describe how many analytics events the client has had to discard, or
+ * treat specially, because of the {@link EventOverflowPolicy} or because they could not be delivered,
+ * and how often it is flushing events. All of the counts are cumulative since the client was started. Use
+ * {@link LDClientInterface#getEventProcessorStatistics()} to get one.
+ * @since 4.4.0
+ */
+public final class EventProcessorStatistics {
+  // for event processors that don't keep statistics
+  static final EventProcessorStatistics EMPTY = new EventProcessorStatistics(0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+  private final long inputQueueDrops;
+  private final long bufferFullDrops;
+  private final long oldestEventDrops;
+  private final long sampledOutEvents;
+  private final long spilledEvents;
+  private final long spillFullDrops;
+  private final long spooledPayloads;
+  private final long spoolDroppedPayloads;
+  private final long flushCount;
+  private final double flushesPerMinute;
+
+  EventProcessorStatistics(long inputQueueDrops, long bufferFullDrops, long oldestEventDrops,
+      long sampledOutEvents, long spilledEvents, long spillFullDrops, long spooledPayloads,
+      long spoolDroppedPayloads, long flushCount, double flushesPerMinute) {
+    this.inputQueueDrops = inputQueueDrops;
+    this.bufferFullDrops = bufferFullDrops;
+    this.oldestEventDrops = oldestEventDrops;
+    this.sampledOutEvents = sampledOutEvents;
+    this.spilledEvents = spilledEvents;
+    this.spillFullDrops = spillFullDrops;
+    this.spooledPayloads = spooledPayloads;
+    this.spoolDroppedPayloads = spoolDroppedPayloads;
+    this.flushCount = flushCount;
+    this.flushesPerMinute = flushesPerMinute;
+  }
+
+  /**
+   * The number of events discarded without waiting because the event queue was full.
+   * @return a count of events
+   */
+  public long getInputQueueDrops() {
+    return inputQueueDrops;
+  }
+
+  /**
+   * The number of events discarded because the event buffer was full when they arrived.
+   * @return a count of events
+   */
+  public long getBufferFullDrops() {
+    return bufferFullDrops;
+  }
+
+  /**
+   * The number of buffered events discarded to make room for newer ones, with
+   * {@link EventOverflowPolicy#dropOldest()}.
+   * @return a count of events
+   */
+  public long getOldestEventDrops() {
+    return oldestEventDrops;
+  }
+
+  /**
+   * The number of events discarded by sampling, with {@link EventOverflowPolicy#sampleUnderPressure(int)}.
+   * @return a count of events
+   */
+  public long getSampledOutEvents() {
+    return sampledOutEvents;
+  }
+
+  /**
+   * The number of events written to disk, with {@link EventOverflowPolicy#spillToDisk(java.io.File, long)}.
+   * These are not lost, unless the files cannot be read back.
+   * @return a count of events
+   */
+  public long getSpilledEvents() {
+    return spilledEvents;
+  }
+
+  /**
+   * The number of events discarded because the spill files had reached their maximum size, with
+   * {@link EventOverflowPolicy#spillToDisk(java.io.File, long)}.
+   * @return a count of events
+   */
+  public long getSpillFullDrops() {
+    return spillFullDrops;
+  }
+
+  /**
+   * The number of payloads stored in the {@link LDConfig.Builder#eventSpoolDirectory(java.io.File)}
+   * because they could not be delivered, including ones stored again after failing a second time.
+   * @return a count of payloads
+   */
+  public long getSpooledPayloads() {
+    return spooledPayloads;
+  }
+
+  /**
+   * The number of payloads discarded from the {@link LDConfig.Builder#eventSpoolDirectory(java.io.File)}
+   * undelivered, because they were too old or there was no room for them.
+   * @return a count of payloads
+   */
+  public long getSpoolDroppedPayloads() {
+    return spoolDroppedPayloads;
+  }
+
+  /**
+   * The number of times that buffered events have been flushed, that is, handed off to be delivered.
+   * Flushes that found nothing to deliver are not counted.
+   * @return a count of flushes
+   */
+  public long getFlushCount() {
+    return flushCount;
+  }
+
+  /**
+   * The recent rate of flushes, as a number of flushes per minute. This is a moving average that is
+   * weighted towards the most recent flushes, so it shows the effect of
+   * {@link LDConfig.Builder#adaptiveFlush(boolean)} as the load changes. It is zero until there have been
+   * at least two flushes.
+   * @return flushes per minute
+   */
+  public double getFlushesPerMinute() {
+    return flushesPerMinute;
+  }
+
+  @Override
+  public String toString() {
+    return "EventProcessorStatistics(inputQueueDrops=" + inputQueueDrops + ",bufferFullDrops=" + bufferFullDrops +
+        ",oldestEventDrops=" + oldestEventDrops + ",sampledOutEvents=" + sampledOutEvents +
+        ",spilledEvents=" + spilledEvents + ",spillFullDrops=" + spillFullDrops +
+        ",spooledPayloads=" + spooledPayloads + ",spoolDroppedPayloads=" + spoolDroppedPayloads +
+        ",flushCount=" + flushCount + ",flushesPerMinute=" + flushesPerMinute + ")";
+  }
+}
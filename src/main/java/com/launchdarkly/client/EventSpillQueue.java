@@ -0,0 +1,115 @@
+package com.launchdarkly.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * A bounded first-in-first-out queue of event payloads stored as files in a directory, used by
+ * {@link EventOverflowPolicy#spillToDisk(File, long)}. Each file holds the JSON array of output events
+ * for one payload. Files left by a previous run are picked up again, so spilled events survive a
+ * restart. This is only used from the event processor's own thread.
+ */
+final class EventSpillQueue {
+  private static final Logger logger = LoggerFactory.getLogger(EventSpillQueue.class);
+  private static final String FILE_PREFIX = "events-";
+  private static final String FILE_SUFFIX = ".json";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private final File directory;
+  private final long capacityBytes;
+  private final Deque<File> files = new ArrayDeque<>();
+  private long totalBytes;
+  private long nextSequence;
+
+  EventSpillQueue(File directory, long capacityBytes) {
+    this.directory = directory;
+    this.capacityBytes = capacityBytes;
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      logger.warn("Unable to create event spill directory {}", directory);
+    }
+    // File names sort in the order the files were written, since the sequence number is zero-padded
+    File[] existing = directory.listFiles(new FilenameFilter() {
+      public boolean accept(File dir, String name) {
+        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+      }
+    });
+    if (existing != null) {
+      Arrays.sort(existing);
+      for (File f: existing) {
+        files.add(f);
+        totalBytes += f.length();
+      }
+      if (!files.isEmpty()) {
+        nextSequence = sequenceOf(files.getLast()) + 1;
+        logger.info("Found {} event payload(s) spilled to disk by a previous run", files.size());
+      }
+    }
+  }
+
+  boolean isEmpty() {
+    return files.isEmpty();
+  }
+
+  /**
+   * Stores a payload, if there is room.
+   * @param data a buffer containing the payload
+   * @param length the number of bytes of the buffer to store
+   * @return true if the payload was stored, false if the queue is full or the file could not be written
+   */
+  boolean add(byte[] data, int length) {
+    if (totalBytes + length > capacityBytes) {
+      return false;
+    }
+    String name = String.format("%s%019d%s", FILE_PREFIX, nextSequence, FILE_SUFFIX);
+    File temp = new File(directory, name + TEMP_SUFFIX);
+    File file = new File(directory, name);
+    // The file is written under a temporary name first, so that a partly written file is never read
+    try (OutputStream out = new FileOutputStream(temp)) {
+      out.write(data, 0, length);
+    } catch (IOException e) {
+      logger.warn("Unable to write events to {}: {}", temp, e.toString());
+      temp.delete();
+      return false;
+    }
+    if (!temp.renameTo(file)) {
+      logger.warn("Unable to rename {} to {}", temp, file);
+      temp.delete();
+      return false;
+    }
+    nextSequence++;
+    files.add(file);
+    totalBytes += length;
+    return true;
+  }
+
+  /**
+   * Removes the oldest payload file from the queue. The file itself is not deleted; that is up to
+   * whoever delivers it.
+   * @return a file, or null if the queue is empty
+   */
+  File poll() {
+    File f = files.pollFirst();
+    if (f != null) {
+      totalBytes -= f.length();
+    }
+    return f;
+  }
+
+  private static long sequenceOf(File f) {
+    String name = f.getName();
+    try {
+      return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,341 @@
+package com.launchdarkly.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A durable store for event payloads that could not be delivered, so that they can be delivered
+ * later, possibly by another process. Payloads are appended as records to memory-mapped segment
+ * files in a directory. Each record is a header followed by the payload's JSON:
+ * <pre>
+ *   int   length of the payload
+ *   long  time the payload was first stored, in epoch milliseconds
+ *   byte  state: pending or done
+ *   byte[length] payload
+ * </pre>
+ * A record's length is written last, so a record that was only partly written when the process
+ * stopped is ignored. The only change ever made to an existing record is to mark it done, once it
+ * has been delivered or evicted; a segment is deleted once all of its records are done.
+ * <p>
+ * The total size of the segments is limited by deleting the oldest segment, and records older than
+ * the maximum age are evicted rather than delivered. All methods are synchronized, since records are
+ * added and delivered by several threads, but this is never used on a hot path.
+ */
+final class EventSpool {
+  private static final Logger logger = LoggerFactory.getLogger(EventSpool.class);
+  private static final String FILE_PREFIX = "spool-";
+  private static final String FILE_SUFFIX = ".seg";
+  private static final int HEADER_SIZE = 4 + 8 + 1;
+  private static final int STATE_OFFSET = 12;
+  private static final byte STATE_PENDING = 0;
+  private static final byte STATE_DONE = 1;
+  private static final int MIN_SEGMENT_SIZE = 64 * 1024;
+  private static final int MAX_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+  private final File directory;
+  private final long capacityBytes;
+  private final long maxAgeMillis;
+  private final int segmentSize;
+  private final List<Segment> segments = new ArrayList<>();
+  private final Deque<Record> pending = new ArrayDeque<>();
+  private Segment activeSegment;
+  private long totalBytes;
+  private long nextSequence;
+  private long storedPayloads;
+  private long droppedPayloads;
+
+  /**
+   * Opens a spool, picking up any undelivered payloads that are already in the directory.
+   * @param directory the directory; it is created if necessary
+   * @param capacityBytes the maximum total size of the segment files
+   * @param maxAgeMillis the maximum time that a payload is kept
+   */
+  EventSpool(File directory, long capacityBytes, long maxAgeMillis) {
+    this.directory = directory;
+    this.capacityBytes = capacityBytes;
+    this.maxAgeMillis = maxAgeMillis;
+    this.segmentSize = (int)Math.max(MIN_SEGMENT_SIZE, Math.min(MAX_SEGMENT_SIZE, capacityBytes / 8));
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      logger.warn("Unable to create event spool directory {}", directory);
+    }
+    File[] files = directory.listFiles(new FilenameFilter() {
+      public boolean accept(File dir, String name) {
+        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+      }
+    });
+    if (files != null) {
+      Arrays.sort(files); // the sequence numbers are zero-padded, so this is the order they were created
+      for (File f: files) {
+        try {
+          Segment segment = Segment.open(f, f.length());
+          nextSequence = Math.max(nextSequence, sequenceOf(f) + 1);
+          recover(segment);
+        } catch (IOException e) {
+          logger.warn("Unable to read event spool file {}: {}", f, e.toString());
+        }
+      }
+    }
+    if (!pending.isEmpty()) {
+      logger.info("Found {} undelivered event payload(s) in {}", pending.size(), directory);
+    }
+  }
+
+  synchronized boolean isEmpty() {
+    return pending.isEmpty();
+  }
+
+  synchronized long getStoredPayloads() {
+    return storedPayloads;
+  }
+
+  synchronized long getDroppedPayloads() {
+    return droppedPayloads;
+  }
+
+  /**
+   * Stores a new payload.
+   * @param data a buffer containing the payload
+   * @param length the number of bytes of the buffer to store
+   * @return true if the payload was stored
+   */
+  synchronized boolean add(byte[] data, int length) {
+    return add(data, length, System.currentTimeMillis());
+  }
+
+  /**
+   * Stores the payload again, as a new record, because it could not be delivered. The existing record
+   * is marked as done. Its original time is kept, so that it is eventually evicted if it can never be
+   * delivered.
+   * @param record the existing record
+   * @param data the payload
+   * @return true if the payload was stored
+   */
+  synchronized boolean retryLater(Record record, byte[] data) {
+    markDone(record);
+    return add(data, data.length, record.createdMillis);
+  }
+
+  /**
+   * Removes the oldest pending record from the queue of records to be delivered. Records that have
+   * passed the maximum age are evicted instead of being returned.
+   * @return a record, or null if there are none
+   */
+  synchronized Record poll() {
+    long oldestAllowed = System.currentTimeMillis() - maxAgeMillis;
+    Record r;
+    while ((r = pending.pollFirst()) != null) {
+      if (r.createdMillis >= oldestAllowed) {
+        return r;
+      }
+      logger.warn("Discarding event payload from {} because it is too old", new Date(r.createdMillis));
+      droppedPayloads++;
+      markDone(r);
+    }
+    return null;
+  }
+
+  /**
+   * Reads the payload of a record.
+   * @param r the record
+   * @return the payload, or null if the record has been evicted since it was returned by {@link #poll()}
+   */
+  synchronized byte[] read(Record r) {
+    MappedByteBuffer buf = r.segment.buffer;
+    if (buf == null) {
+      return null;
+    }
+    byte[] data = new byte[r.length];
+    buf.position(r.offset + HEADER_SIZE);
+    buf.get(data);
+    return data;
+  }
+
+  /**
+   * Marks a record as delivered.
+   * @param r the record
+   */
+  synchronized void markDone(Record r) {
+    Segment segment = r.segment;
+    if (segment.buffer == null) {
+      return; // the whole segment was already evicted
+    }
+    segment.buffer.put(r.offset + STATE_OFFSET, STATE_DONE);
+    segment.pendingCount--;
+    if (segment.pendingCount == 0 && segment != activeSegment) {
+      deleteSegment(segment);
+    }
+  }
+
+  /**
+   * Releases the segment files, without deleting any that still have pending records.
+   */
+  synchronized void close() {
+    for (Segment s: new ArrayList<>(segments)) {
+      if (s.pendingCount == 0) {
+        deleteSegment(s);
+      } else {
+        s.buffer.force();
+      }
+    }
+    activeSegment = null;
+  }
+
+  private boolean add(byte[] data, int length, long createdMillis) {
+    int recordSize = HEADER_SIZE + length;
+    if (activeSegment == null || activeSegment.writePosition + recordSize + 4 > activeSegment.size) {
+      if (!startSegment(Math.max(segmentSize, recordSize + 4))) {
+        droppedPayloads++;
+        return false;
+      }
+    }
+    Segment s = activeSegment;
+    int offset = s.writePosition;
+    MappedByteBuffer buf = s.buffer;
+    buf.putLong(offset + 4, createdMillis);
+    buf.put(offset + STATE_OFFSET, STATE_PENDING);
+    buf.position(offset + HEADER_SIZE);
+    buf.put(data, 0, length);
+    buf.putInt(offset, length); // this makes the record valid
+    buf.force();
+    s.writePosition += recordSize;
+    s.pendingCount++;
+    pending.addLast(new Record(s, offset, length, createdMillis));
+    storedPayloads++;
+    return true;
+  }
+
+  private boolean startSegment(int size) {
+    Segment previous = activeSegment;
+    activeSegment = null;
+    if (previous != null && previous.pendingCount == 0) {
+      deleteSegment(previous);
+    }
+    // The new segment's size is reserved up front, because the file is mapped at its full size
+    while (totalBytes + size > capacityBytes && !segments.isEmpty()) {
+      evictSegment(segments.get(0));
+    }
+    if (totalBytes + size > capacityBytes) {
+      logger.warn("Event payload is too large for the event spool, and will be discarded");
+      return false;
+    }
+    File f = new File(directory, String.format("%s%019d%s", FILE_PREFIX, nextSequence++, FILE_SUFFIX));
+    try {
+      activeSegment = Segment.open(f, size);
+    } catch (IOException e) {
+      logger.warn("Unable to create event spool file {}: {}", f, e.toString());
+      return false;
+    }
+    segments.add(activeSegment);
+    totalBytes += size;
+    return true;
+  }
+
+  private void evictSegment(Segment segment) {
+    if (segment.pendingCount > 0) {
+      logger.warn("Event spool is full; discarding {} of the oldest event payloads", segment.pendingCount);
+      droppedPayloads += segment.pendingCount;
+      for (Iterator<Record> it = pending.iterator(); it.hasNext(); ) {
+        if (it.next().segment == segment) {
+          it.remove();
+        }
+      }
+    }
+    deleteSegment(segment);
+  }
+
+  private void deleteSegment(Segment segment) {
+    segments.remove(segment);
+    totalBytes -= segment.size;
+    segment.close();
+    // This can fail on some platforms while the file is still mapped; any records in it are all done,
+    // so if it is left behind it will just be deleted the next time the spool is opened
+    if (!segment.file.delete()) {
+      logger.debug("Unable to delete event spool file {}", segment.file);
+    }
+  }
+
+  private void recover(Segment segment) {
+    MappedByteBuffer buf = segment.buffer;
+    int pos = 0;
+    while (pos + HEADER_SIZE <= segment.size) {
+      int length = buf.getInt(pos);
+      if (length <= 0 || pos + HEADER_SIZE + length > segment.size) {
+        break;
+      }
+      if (buf.get(pos + STATE_OFFSET) == STATE_PENDING) {
+        segment.pendingCount++;
+        pending.addLast(new Record(segment, pos, length, buf.getLong(pos + 4)));
+      }
+      pos += HEADER_SIZE + length;
+    }
+    segment.writePosition = pos;
+    segments.add(segment);
+    totalBytes += segment.size;
+    if (segment.pendingCount == 0) {
+      deleteSegment(segment);
+    }
+  }
+
+  private static long sequenceOf(File f) {
+    String name = f.getName();
+    try {
+      return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  static final class Record {
+    private final Segment segment;
+    private final int offset;
+    private final int length;
+    private final long createdMillis;
+
+    private Record(Segment segment, int offset, int length, long createdMillis) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+      this.createdMillis = createdMillis;
+    }
+  }
+
+  private static final class Segment {
+    final File file;
+    final int size;
+    MappedByteBuffer buffer;
+    int writePosition;
+    int pendingCount;
+
+    private Segment(File file, int size, MappedByteBuffer buffer) {
+      this.file = file;
+      this.size = size;
+      this.buffer = buffer;
+    }
+
+    static Segment open(File file, long size) throws IOException {
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        // the mapping stays valid after the channel is closed
+        MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return new Segment(file, (int)size, buffer);
+      }
+    }
+
+    void close() {
+      buffer = null; // there is no supported way to unmap it; that happens when it is garbage-collected
+    }
+  }
+}
@@ -2,6 +2,7 @@ package com.launchdarkly.client;
 
 import com.google.gson.JsonElement;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -30,6 +31,14 @@ final class EventSummarizer {
     }
   }
   
+  /**
+   * Adds counters that were accumulated elsewhere to our counters.
+   * @param summary the summary to add; it is not modified
+   */
+  void summarizeAll(EventSummary summary) {
+    eventsState.add(summary);
+  }
+  
   /**
    * Returns a snapshot of the current summarized event data.
    * @return the summary state
@@ -39,39 +48,76 @@ final class EventSummarizer {
   }
   
   /**
-   * Resets the summary counters.
+   * Returns the current summarized event data without copying it. The returned object will change
+   * if more events are summarized, unless {@link #clear()} is called first.
+   * @return the summary state
+   */
+  EventSummary getSummary() {
+    return eventsState;
+  }
+  
+  /**
+   * Resets the summary counters. This swaps in a new summary, rather than emptying the current one,
+   * so that a summary previously returned by {@link #getSummary()} can be handed off to another thread.
    */
   void clear() {
-    eventsState = new EventSummary();
+    eventsState = new EventSummary(eventsState.flagCount);
   }
   
+  /**
+   * Summary counters for any number of flags. The flags are held in an open-addressing hash table,
+   * and each flag's counters in parallel arrays of primitives, so that counting an evaluation for
+   * an existing counter allocates nothing.
+   */
   static final class EventSummary {
-    final Map<CounterKey, CounterValue> counters;
+    private static final int MIN_TABLE_SIZE = 16;
+    
+    private FlagCounters[] table;
+    private int flagCount;
     long startDate;
     long endDate;
     
     EventSummary() {
-      counters = new HashMap<>();
+      this(0);
     }
-
+    
+    EventSummary(int expectedFlagCount) {
+      table = new FlagCounters[tableSizeFor(expectedFlagCount)];
+    }
+    
     EventSummary(EventSummary from) {
-      counters = new HashMap<>(from.counters);
+      table = new FlagCounters[from.table.length];
+      for (int i = 0; i < table.length; i++) {
+        if (from.table[i] != null) {
+          table[i] = new FlagCounters(from.table[i]);
+        }
+      }
+      flagCount = from.flagCount;
       startDate = from.startDate;
       endDate = from.endDate;
     }
     
     boolean isEmpty() {
-      return counters.isEmpty();
+      return flagCount == 0;
     }
     
     void incrementCounter(String flagKey, Integer variation, Integer version, JsonElement flagValue, JsonElement defaultVal) {
-      CounterKey key = new CounterKey(flagKey, variation, version);
-
-      CounterValue value = counters.get(key);
-      if (value != null) {
-        value.increment();
-      } else {
-        counters.put(key, new CounterValue(1, flagValue, defaultVal));
+      flagCountersFor(flagKey, defaultVal).add(FlagCounters.toPrimitive(variation), FlagCounters.toPrimitive(version),
+          1, flagValue);
+    }
+    
+    void add(EventSummary other) {
+      for (FlagCounters from: other.table) {
+        if (from != null) {
+          FlagCounters to = flagCountersFor(from.key, from.defaultVal);
+          for (int i = 0; i < from.size; i++) {
+            to.add(from.variations[i], from.versions[i], from.counts[i], from.values[i]);
+          }
+        }
+      }
+      if (!other.isEmpty()) {
+        noteTimestamp(other.startDate);
+        noteTimestamp(other.endDate);
       }
     }
     
@@ -84,21 +130,185 @@ final class EventSummarizer {
       }
     }
     
+    /**
+     * Returns the counters for each flag that has any, in no particular order.
+     * @return an array of flag counters
+     */
+    FlagCounters[] flags() {
+      FlagCounters[] result = new FlagCounters[flagCount];
+      int n = 0;
+      for (FlagCounters fc: table) {
+        if (fc != null) {
+          result[n++] = fc;
+        }
+      }
+      return result;
+    }
+    
+    /**
+     * Returns all of the counters as a map. This is only meant for testing and debugging.
+     * @return a map of counter keys to values
+     */
+    Map<CounterKey, CounterValue> counters() {
+      Map<CounterKey, CounterValue> result = new HashMap<>();
+      for (FlagCounters fc: flags()) {
+        for (int i = 0; i < fc.size; i++) {
+          result.put(new CounterKey(fc.key, fc.getVariation(i), fc.getVersion(i)),
+              new CounterValue(fc.counts[i], fc.values[i], fc.defaultVal));
+        }
+      }
+      return result;
+    }
+    
+    private FlagCounters flagCountersFor(String flagKey, JsonElement defaultVal) {
+      int mask = table.length - 1;
+      for (int i = spread(flagKey.hashCode()) & mask; ; i = (i + 1) & mask) {
+        FlagCounters fc = table[i];
+        if (fc == null) {
+          fc = new FlagCounters(flagKey, defaultVal);
+          table[i] = fc;
+          if (++flagCount > table.length / 2) {
+            resize();
+          }
+          return fc;
+        }
+        // Flag keys are normally the same string instance each time, because they come from the same
+        // FeatureFlag, so the equals() call is rarely needed
+        if (fc.key == flagKey || fc.key.equals(flagKey)) {
+          return fc;
+        }
+      }
+    }
+    
+    private void resize() {
+      FlagCounters[] oldTable = table;
+      table = new FlagCounters[oldTable.length * 2];
+      int mask = table.length - 1;
+      for (FlagCounters fc: oldTable) {
+        if (fc != null) {
+          int i = spread(fc.key.hashCode()) & mask;
+          while (table[i] != null) {
+            i = (i + 1) & mask;
+          }
+          table[i] = fc;
+        }
+      }
+    }
+    
+    private static int tableSizeFor(int expectedFlagCount) {
+      int size = MIN_TABLE_SIZE;
+      while (size / 2 < expectedFlagCount) {
+        size *= 2;
+      }
+      return size;
+    }
+    
+    private static int spread(int hash) {
+      return hash ^ (hash >>> 16);
+    }
+    
     @Override
     public boolean equals(Object other) {
       if (other instanceof EventSummary) {
         EventSummary o = (EventSummary)other;
-        return o.counters.equals(counters) && startDate == o.startDate && endDate == o.endDate;
+        return o.counters().equals(counters()) && startDate == o.startDate && endDate == o.endDate;
       }
       return true;
     }
     
     @Override
     public int hashCode() {
-      return counters.hashCode() + 31 * ((int)startDate + 31 * (int)endDate);
+      return counters().hashCode() + 31 * ((int)startDate + 31 * (int)endDate);
     }
   }
-
+  
+  /**
+   * The counters for one flag, one for each combination of variation and version. There are rarely
+   * more than a few, so they are found by a linear search.
+   */
+  static final class FlagCounters {
+    // stands for a null variation or version, neither of which can really be negative
+    private static final int NO_VALUE = Integer.MIN_VALUE;
+    
+    final String key;
+    // every evaluation of a flag has the same default value, unless the application is inconsistent;
+    // the first one is used
+    final JsonElement defaultVal;
+    private int size;
+    private int[] variations;
+    private int[] versions;
+    private long[] counts;
+    private JsonElement[] values;
+    
+    FlagCounters(String key, JsonElement defaultVal) {
+      this.key = key;
+      this.defaultVal = defaultVal;
+      variations = new int[2];
+      versions = new int[2];
+      counts = new long[2];
+      values = new JsonElement[2];
+    }
+    
+    FlagCounters(FlagCounters from) {
+      key = from.key;
+      defaultVal = from.defaultVal;
+      size = from.size;
+      variations = from.variations.clone();
+      versions = from.versions.clone();
+      counts = from.counts.clone();
+      values = from.values.clone();
+    }
+    
+    int size() {
+      return size;
+    }
+    
+    Integer getVariation(int index) {
+      return fromPrimitive(variations[index]);
+    }
+    
+    Integer getVersion(int index) {
+      return fromPrimitive(versions[index]);
+    }
+    
+    long getCount(int index) {
+      return counts[index];
+    }
+    
+    JsonElement getValue(int index) {
+      return values[index];
+    }
+    
+    private void add(int variation, int version, long count, JsonElement value) {
+      for (int i = 0; i < size; i++) {
+        if (variations[i] == variation && versions[i] == version) {
+          counts[i] += count;
+          return;
+        }
+      }
+      if (size == counts.length) {
+        int newLength = size * 2;
+        variations = Arrays.copyOf(variations, newLength);
+        versions = Arrays.copyOf(versions, newLength);
+        counts = Arrays.copyOf(counts, newLength);
+        values = Arrays.copyOf(values, newLength);
+      }
+      variations[size] = variation;
+      versions[size] = version;
+      counts[size] = count;
+      values[size] = value;
+      size++;
+    }
+    
+    private static int toPrimitive(Integer n) {
+      return n == null ? NO_VALUE : n.intValue();
+    }
+    
+    private static Integer fromPrimitive(int n) {
+      return n == NO_VALUE ? null : Integer.valueOf(n);
+    }
+  }
+  
   static final class CounterKey {
     final String key;
     final Integer variation;
@@ -132,20 +342,16 @@ final class EventSummarizer {
   }
   
   static final class CounterValue {
-    int count;
+    final long count;
     final JsonElement flagValue;
     final JsonElement defaultVal;
     
-    CounterValue(int count, JsonElement flagValue, JsonElement defaultVal) {
+    CounterValue(long count, JsonElement flagValue, JsonElement defaultVal) {
       this.count = count;
       this.flagValue = flagValue;
       this.defaultVal = defaultVal;
     }
     
-    void increment() {
-      count = count + 1;
-    }
-    
     @Override
     public boolean equals(Object other)
     {
@@ -156,6 +362,12 @@ final class EventSummarizer {
       }
       return false;
     }
+    
+    @Override
+    public int hashCode() {
+      return (int)count + 31 * (Objects.hashCode(flagValue) + 31 * Objects.hashCode(defaultVal));
+    }
+    
     @Override
     public String toString() {
       return "(" + count + "," + flagValue + "," + defaultVal + ")";
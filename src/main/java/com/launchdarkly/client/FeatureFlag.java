@@ -34,6 +34,7 @@ class FeatureFlag implements VersionedData {
   private boolean trackEvents;
   private Long debugEventsUntilDate;
   private boolean deleted;
+  private transient volatile CompiledFlag compiled;
 
   static FeatureFlag fromJson(LDConfig config, String json) {
     return config.gson.fromJson(json, FeatureFlag.class);
@@ -65,7 +66,7 @@ class FeatureFlag implements VersionedData {
     this.deleted = deleted;
   }
 
-  EvalResult evaluate(LDUser user, FeatureStore featureStore, EventFactory eventFactory) {
+  EvalResult evaluate(LDUser user, FeatureStoreReader featureStore, EventFactory eventFactory) {
     List<Event.FeatureRequest> prereqEvents = new ArrayList<>();
 
     if (user == null || user.getKey() == null) {
@@ -82,30 +83,25 @@ class FeatureFlag implements VersionedData {
     return new EvalResult(getOffValue(EvaluationReason.off()), prereqEvents);
   }
 
-  private EvaluationDetail<JsonElement> evaluate(LDUser user, FeatureStore featureStore, List<Event.FeatureRequest> events,
+  private EvaluationDetail<JsonElement> evaluate(LDUser user, FeatureStoreReader featureStore, List<Event.FeatureRequest> events,
       EventFactory eventFactory) {
     EvaluationReason prereqFailureReason = checkPrerequisites(user, featureStore, events, eventFactory);
     if (prereqFailureReason != null) {
       return getOffValue(prereqFailureReason);
     }
     
+    CompiledFlag compiledFlag = getCompiled();
     // Check to see if targets match
-    if (targets != null) {
-      for (Target target: targets) {
-        for (String v : target.getValues()) {
-          if (v.equals(user.getKey().getAsString())) {
-            return getVariation(target.getVariation(), EvaluationReason.targetMatch());
-          }
-        }
-      }
+    Integer targetVariation = compiledFlag.getTargetVariation(user.getKey().getAsString());
+    if (targetVariation != null) {
+      return getVariation(targetVariation, EvaluationReason.targetMatch());
     }
     // Now walk through the rules and see if any match
-    if (rules != null) {
-      for (int i = 0; i < rules.size(); i++) {
-        Rule rule = rules.get(i);
-        if (rule.matchesUser(featureStore, user)) {
-          return getValueForVariationOrRollout(rule, user, EvaluationReason.ruleMatch(i, rule.getId()));
-        }
+    CompiledFlag.CompiledRule[] compiledRules = compiledFlag.getRules();
+    for (int i = 0; i < compiledRules.length; i++) {
+      if (compiledRules[i].matchesUser(featureStore, user)) {
+        Rule rule = compiledRules[i].getRule();
+        return getValueForVariationOrRollout(rule, user, EvaluationReason.ruleMatch(i, rule.getId()));
       }
     }
     // Walk through the fallthrough and see if it matches
@@ -114,7 +110,7 @@ class FeatureFlag implements VersionedData {
 
   // Checks prerequisites if any; returns null if successful, or an EvaluationReason if we have to
   // short-circuit due to a prerequisite failure.
-  private EvaluationReason checkPrerequisites(LDUser user, FeatureStore featureStore, List<Event.FeatureRequest> events,
+  private EvaluationReason checkPrerequisites(LDUser user, FeatureStoreReader featureStore, List<Event.FeatureRequest> events,
       EventFactory eventFactory) {
     if (prerequisites == null) {
       return null;
@@ -162,7 +158,7 @@ class FeatureFlag implements VersionedData {
   }
   
   private EvaluationDetail<JsonElement> getValueForVariationOrRollout(VariationOrRollout vr, LDUser user, EvaluationReason reason) {
-    Integer index = vr.variationIndexForUser(user, key, salt);
+    Integer index = vr.variationIndexForUser(user, getCompiled().getBucketPrefix());
     if (index == null) {
       logger.error("Data inconsistency in feature flag \"{}\": variation/rollout object with no variation or rollout", key);
       return EvaluationDetail.<JsonElement>error(EvaluationReason.ErrorKind.MALFORMED_FLAG, null); 
@@ -170,6 +166,21 @@ class FeatureFlag implements VersionedData {
     return getVariation(index, reason);
   }
   
+  /**
+   * Returns the evaluation form of this flag, building it on first use. Feature stores call this
+   * when they receive a flag, so that it is normally already built by the time it is evaluated.
+   * @return the compiled flag
+   */
+  CompiledFlag getCompiled() {
+    CompiledFlag c = compiled;
+    if (c == null) {
+      // If two threads race to do this, they will build equivalent objects, so it doesn't matter which one wins
+      c = new CompiledFlag(this);
+      compiled = c;
+    }
+    return c;
+  }
+  
   public int getVersion() {
     return version;
   }
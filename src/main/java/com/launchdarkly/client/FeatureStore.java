@@ -14,7 +14,7 @@ import java.util.Map;
  * of objects based on update messages that may be received out-of-order.
  * @since 3.0.0
  */
-public interface FeatureStore extends Closeable {
+public interface FeatureStore extends Closeable, FeatureStoreReader {
   /**
    * Returns the object to which the specified key is mapped, or
    * null if the key is not associated or the associated object has
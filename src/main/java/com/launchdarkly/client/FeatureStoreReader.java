@@ -0,0 +1,19 @@
+package com.launchdarkly.client;
+
+/**
+ * The part of a {@link FeatureStore} that is needed to evaluate a flag: looking up individual
+ * prerequisite flags and user segments. Every feature store provides this, but so does
+ * {@link FlagDependencySnapshot}, which cannot be updated.
+ */
+interface FeatureStoreReader {
+  /**
+   * Returns the object to which the specified key is mapped, or null if the key is not associated
+   * or the associated object has been deleted.
+   *
+   * @param <T> class of the object that will be returned
+   * @param kind the kind of object to get
+   * @param key the key whose associated object is to be returned
+   * @return the object, or null
+   */
+  <T extends VersionedData> T get(VersionedDataKind<T> kind, String key);
+}
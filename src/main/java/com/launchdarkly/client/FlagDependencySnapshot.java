@@ -0,0 +1,120 @@
+package com.launchdarkly.client;
+
+import com.google.gson.JsonPrimitive;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.launchdarkly.client.VersionedDataKind.FEATURES;
+import static com.launchdarkly.client.VersionedDataKind.SEGMENTS;
+
+/**
+ * A read-only set of flags and segments containing one feature flag together with every prerequisite flag
+ * and user segment that it depends on, directly or indirectly, as they were in another store at the
+ * time the snapshot was taken. Evaluating the flag against the snapshot, rather than the original
+ * store, means that evaluating it for many users does not look up the same dependencies every time.
+ */
+final class FlagDependencySnapshot implements FeatureStoreReader {
+  private final Map<String, FeatureFlag> flags;
+  private final Map<String, Segment> segments;
+
+  private FlagDependencySnapshot(Map<String, FeatureFlag> flags, Map<String, Segment> segments) {
+    this.flags = flags;
+    this.segments = segments;
+  }
+
+  /**
+   * Retrieves the dependencies of a flag that has already been read from a store. Each level of
+   * prerequisites is requested as one batch, using {@link MultiGetFeatureStore} if the store supports
+   * it, and then all of the segments are requested as one more batch.
+   * @param store the store to read from
+   * @param flag the flag
+   * @return a snapshot containing the flag and its dependencies
+   */
+  static FlagDependencySnapshot forFlag(FeatureStore store, FeatureFlag flag) {
+    Map<String, FeatureFlag> flags = new HashMap<>();
+    flags.put(flag.getKey(), flag);
+    Collection<FeatureFlag> found = Collections.singletonList(flag);
+    Set<String> visited = new HashSet<>(flags.keySet());
+    Set<String> visitedSegments = new HashSet<>();
+    List<String> segmentKeys = new ArrayList<>();
+    while (!found.isEmpty()) {
+      List<String> nextFlagKeys = new ArrayList<>();
+      for (FeatureFlag f: found) {
+        if (f.getPrerequisites() != null) {
+          for (Prerequisite prereq: f.getPrerequisites()) {
+            if (visited.add(prereq.getKey())) {
+              nextFlagKeys.add(prereq.getKey());
+            }
+          }
+        }
+        addSegmentKeys(f, visitedSegments, segmentKeys);
+      }
+      if (nextFlagKeys.isEmpty()) {
+        break;
+      }
+      Map<String, FeatureFlag> nextFlags = Util.getMany(store, FEATURES, nextFlagKeys);
+      flags.putAll(nextFlags);
+      found = nextFlags.values();
+    }
+    // Segments never depend on anything else, so they can all be left until the end
+    Map<String, Segment> segments = segmentKeys.isEmpty() ? Collections.<String, Segment>emptyMap() :
+      Util.getMany(store, SEGMENTS, segmentKeys);
+    return new FlagDependencySnapshot(flags, segments);
+  }
+
+  private static void addSegmentKeys(FeatureFlag flag, Set<String> visitedSegments, List<String> segmentKeys) {
+    if (flag.getRules() == null) {
+      return;
+    }
+    for (Rule rule: flag.getRules()) {
+      if (rule.getClauses() == null) {
+        continue;
+      }
+      for (Clause clause: rule.getClauses()) {
+        if (clause.getOp() != Operator.segmentMatch || clause.getValues() == null) {
+          continue;
+        }
+        for (JsonPrimitive value: clause.getValues()) {
+          if (value != null && value.isString()) {
+            if (visitedSegments.add(value.getAsString())) {
+              segmentKeys.add(value.getAsString());
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public <T extends VersionedData> T get(VersionedDataKind<T> kind, String key) {
+    VersionedData item = itemsOfKind(kind).get(key);
+    return item == null ? null : kind.getItemClass().cast(item);
+  }
+
+  /**
+   * Returns every item of one kind in the snapshot.
+   * @param <T> class of the objects that will be returned in the map
+   * @param kind the kind of objects to get
+   * @return an unmodifiable map of keys to objects
+   */
+  @SuppressWarnings("unchecked")
+  <T extends VersionedData> Map<String, T> all(VersionedDataKind<T> kind) {
+    return Collections.unmodifiableMap((Map<String, T>)itemsOfKind(kind));
+  }
+
+  private Map<String, ? extends VersionedData> itemsOfKind(VersionedDataKind<?> kind) {
+    if (kind == FEATURES) {
+      return flags;
+    } else if (kind == SEGMENTS) {
+      return segments;
+    }
+    return Collections.emptyMap();
+  }
+}
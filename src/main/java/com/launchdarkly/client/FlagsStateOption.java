@@ -27,6 +27,15 @@ public final class FlagsStateOption {
    */
   public static final FlagsStateOption WITH_REASONS = new FlagsStateOption("WITH_REASONS");
   
+  /**
+   * Specifies that flags should be evaluated in parallel, using a pool of threads owned by the client
+   * that is no larger than the number of processors and is not shared with any other method. The calling
+   * thread still blocks until all flags have been evaluated, but will typically wait less if there are many
+   * flags. If there are only a few flags, or the pool is already busy with other calls, this has no effect.
+   * @since 4.4.0
+   */
+  public static final FlagsStateOption EVALUATE_IN_PARALLEL = new FlagsStateOption("EVALUATE_IN_PARALLEL");
+  
   static boolean hasOption(FlagsStateOption[] options, FlagsStateOption option) {
     for (FlagsStateOption o: options) {
       if (o == option) {
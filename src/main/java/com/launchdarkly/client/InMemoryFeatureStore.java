@@ -4,123 +4,130 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * A thread-safe, versioned store for {@link FeatureFlag} objects and related data based on a
  * {@link HashMap}. This is the default implementation of {@link FeatureStore}.
+ * <p>
+ * The data is held in immutable maps that are replaced, rather than modified, on every update, so
+ * reads never take a lock. This makes updates more expensive in proportion to the number of items,
+ * on the assumption that they are far less frequent than reads.
  */
-public class InMemoryFeatureStore implements FeatureStore {
+public class InMemoryFeatureStore implements MultiGetFeatureStore {
   private static final Logger logger = LoggerFactory.getLogger(InMemoryFeatureStore.class);
 
-  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-  private final Map<VersionedDataKind<?>, Map<String, VersionedData>> allData = new HashMap<>();
+  private final Object writeLock = new Object();
+  private volatile Map<VersionedDataKind<?>, KindItems> allData = Collections.emptyMap();
   private volatile boolean initialized = false;
 
   @Override
   public <T extends VersionedData> T get(VersionedDataKind<T> kind, String key) {
-    try {
-      lock.readLock().lock();
-      Map<String, VersionedData> items = allData.get(kind);
-      if (items == null) {
-        logger.debug("[get] no objects exist for \"{}\". Returning null", kind.getNamespace());
-        return null;
-      }
-      Object o = items.get(key);
-      if (o == null) {
-        logger.debug("[get] Key: {} not found in \"{}\". Returning null", key, kind.getNamespace());
-        return null;
-      }
-      if (!kind.getItemClass().isInstance(o)) {
-        logger.warn("[get] Unexpected object class {} found for key: {} in \"{}\". Returning null",
-            o.getClass().getName(), key, kind.getNamespace());
-        return null;
-      }
-      T item = kind.getItemClass().cast(o);
-      if (item.isDeleted()) {
-        logger.debug("[get] Key: {} has been deleted. Returning null", key);
-        return null;
-      }
-      logger.debug("[get] Key: {} with version: {} found in \"{}\".", key, item.getVersion(), kind.getNamespace());
-      return item;
-    } finally {
-      lock.readLock().unlock();
+    KindItems items = allData.get(kind);
+    if (items == null) {
+      return null;
     }
+    return getItem(kind, items, key);
   }
 
   @Override
-  public <T extends VersionedData> Map<String, T> all(VersionedDataKind<T> kind) {
-    try {
-      lock.readLock().lock();
-      Map<String, T> fs = new HashMap<>();
-      Map<String, VersionedData> items = allData.get(kind);
-      if (items != null) {
-        for (Map.Entry<String, ? extends VersionedData> entry : items.entrySet()) {
-          if (!entry.getValue().isDeleted()) {
-            fs.put(entry.getKey(), kind.getItemClass().cast(entry.getValue()));
-          }
+  public <T extends VersionedData> Map<String, T> getMany(VersionedDataKind<T> kind, Collection<String> keys) {
+    Map<String, T> fs = new HashMap<>();
+    KindItems items = allData.get(kind);
+    if (items != null) {
+      for (String key: keys) {
+        T item = getItem(kind, items, key);
+        if (item != null) {
+          fs.put(key, item);
         }
       }
-      return fs;
-    } finally {
-      lock.readLock().unlock();
     }
+    return fs;
   }
 
+  @Override
+  public boolean isInMemory(VersionedDataKind<?> kind) {
+    return true;
+  }
+
+  private static <T extends VersionedData> T getItem(VersionedDataKind<T> kind, KindItems items, String key) {
+    VersionedData o = items.liveItems.get(key);
+    if (o == null) {
+      return null;
+    }
+    if (!kind.getItemClass().isInstance(o)) {
+      logger.warn("[get] Unexpected object class {} found for key: {} in \"{}\". Returning null",
+          o.getClass().getName(), key, kind.getNamespace());
+      return null;
+    }
+    return kind.getItemClass().cast(o);
+  }
+
+  /**
+   * Returns an immutable map of all non-deleted objects of a given kind. The same map instance is
+   * returned by every call until the next change to objects of that kind.
+   */
   @SuppressWarnings("unchecked")
+  @Override
+  public <T extends VersionedData> Map<String, T> all(VersionedDataKind<T> kind) {
+    KindItems items = allData.get(kind);
+    if (items == null) {
+      return Collections.emptyMap();
+    }
+    return (Map<String, T>)items.liveItems;
+  }
+
   @Override
   public void init(Map<VersionedDataKind<?>, Map<String, ? extends VersionedData>> allData) {
-    try {
-      lock.writeLock().lock();
-      this.allData.clear();
-      for (Map.Entry<VersionedDataKind<?>, Map<String, ? extends VersionedData>> entry: allData.entrySet()) {
-        this.allData.put(entry.getKey(), (Map<String, VersionedData>)entry.getValue());
+    Map<VersionedDataKind<?>, KindItems> newData = new HashMap<>();
+    for (Map.Entry<VersionedDataKind<?>, Map<String, ? extends VersionedData>> entry: allData.entrySet()) {
+      for (VersionedData item: entry.getValue().values()) {
+        entry.getKey().compile(item);
       }
+      newData.put(entry.getKey(), new KindItems(new HashMap<String, VersionedData>(entry.getValue())));
+    }
+    synchronized (writeLock) {
+      this.allData = Collections.unmodifiableMap(newData);
       initialized = true;
-    } finally {
-      lock.writeLock().unlock();
     }
   }
 
   @Override
   public <T extends VersionedData> void delete(VersionedDataKind<T> kind, String key, int version) {
-    try {
-      lock.writeLock().lock();
-      Map<String, VersionedData> items = allData.get(kind);
-      if (items == null) {
-        items = new HashMap<>();
-        allData.put(kind, items);
-      }
-      VersionedData item = items.get(key);
+    synchronized (writeLock) {
+      KindItems items = allData.get(kind);
+      VersionedData item = items == null ? null : items.allItems.get(key);
       if (item == null || item.getVersion() < version) {
-        items.put(key, kind.makeDeletedItem(key, version));
+        putItem(kind, items, key, kind.makeDeletedItem(key, version));
       }
-    } finally {
-      lock.writeLock().unlock();
     }
   }
 
   @Override
   public <T extends VersionedData> void upsert(VersionedDataKind<T> kind, T item) {
-    try {
-      lock.writeLock().lock();
-      Map<String, VersionedData> items = (Map<String, VersionedData>) allData.get(kind);
-      if (items == null) {
-        items = new HashMap<>();
-        allData.put(kind, items);
-      }
-      VersionedData old = items.get(item.getKey());
-
+    kind.compile(item);
+    synchronized (writeLock) {
+      KindItems items = allData.get(kind);
+      VersionedData old = items == null ? null : items.allItems.get(item.getKey());
       if (old == null || old.getVersion() < item.getVersion()) {
-        items.put(item.getKey(), item);
+        putItem(kind, items, item.getKey(), item);
       }
-    } finally {
-      lock.writeLock().unlock();
     }
   }
 
+  // Must be called while holding writeLock
+  private void putItem(VersionedDataKind<?> kind, KindItems oldItems, String key, VersionedData item) {
+    Map<String, VersionedData> newItems = oldItems == null ? new HashMap<String, VersionedData>() :
+      new HashMap<>(oldItems.allItems);
+    newItems.put(key, item);
+    Map<VersionedDataKind<?>, KindItems> newData = new HashMap<>(allData);
+    newData.put(kind, new KindItems(newItems));
+    allData = Collections.unmodifiableMap(newData);
+  }
+
   @Override
   public boolean initialized() {
     return initialized;
@@ -135,4 +142,23 @@ public class InMemoryFeatureStore implements FeatureStore {
   public void close() throws IOException {
     return;
   }
+
+  /**
+   * The items of one kind. Instances are never modified after construction.
+   */
+  private static final class KindItems {
+    final Map<String, VersionedData> allItems; // including placeholders for deleted items
+    final Map<String, VersionedData> liveItems;
+
+    KindItems(Map<String, VersionedData> items) {
+      Map<String, VersionedData> live = new HashMap<>();
+      for (Map.Entry<String, VersionedData> entry: items.entrySet()) {
+        if (!entry.getValue().isDeleted()) {
+          live.put(entry.getKey(), entry.getValue());
+        }
+      }
+      this.allItems = Collections.unmodifiableMap(items);
+      this.liveItems = Collections.unmodifiableMap(live);
+    }
+  }
 }
@@ -12,8 +12,18 @@ import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.jar.Attributes;
@@ -23,6 +33,7 @@ import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 
 import static com.launchdarkly.client.VersionedDataKind.FEATURES;
+import static com.launchdarkly.client.VersionedDataKind.SEGMENTS;
 
 /**
  * A client for the LaunchDarkly API. Client instances are thread-safe. Applications should instantiate
@@ -31,6 +42,9 @@ import static com.launchdarkly.client.VersionedDataKind.FEATURES;
 public final class LDClient implements LDClientInterface {
   private static final Logger logger = LoggerFactory.getLogger(LDClient.class);
   private static final String HMAC_ALGORITHM = "HmacSHA256";
+  private static final int USER_BATCH_CHUNK_SIZE = 500;
+  private static final int USER_BATCH_MAX_PENDING_CHUNKS = 32;
+  private static final int ALL_FLAGS_MIN_PARTITION_SIZE = 100;
   static final String CLIENT_VERSION = getClientVersion();
 
   private final LDConfig config;
@@ -39,6 +53,11 @@ public final class LDClient implements LDClientInterface {
   final UpdateProcessor updateProcessor;
   final FeatureStore featureStore;
   final boolean shouldCloseFeatureStore;
+  // A store that can fetch several items at once, and isn't just reading from memory, should be given
+  // all of a flag's dependencies as one batch rather than being asked for them one at a time
+  private volatile ForkJoinPool evaluationPool; // created on first use by jsonVariationForUsers
+  // allFlagsState has a pool of its own, so that it never waits behind a batch of users
+  private volatile ForkJoinPool allFlagsStatePool; // created on first use by allFlagsState
   
   /**
    * Creates a new client instance that connects to LaunchDarkly with the default configuration. In most
@@ -134,9 +153,23 @@ public final class LDClient implements LDClientInterface {
     eventProcessor.sendEvent(EventFactory.DEFAULT.newIdentifyEvent(user));
   }
 
-  private void sendFlagRequestEvent(Event.FeatureRequest event) {
-    eventProcessor.sendEvent(event);
-    NewRelicReflector.annotateTransaction(event.key, String.valueOf(event.value));
+  private void sendFlagRequestEvents(List<Event.FeatureRequest> events) {
+    sendEvents(events);
+    for (Event.FeatureRequest event: events) {
+      if (event.prereqOf == null) {
+        NewRelicReflector.annotateTransaction(event.key, String.valueOf(event.value));
+      }
+    }
+  }
+
+  private void sendEvents(List<? extends Event> events) {
+    if (eventProcessor instanceof DefaultEventProcessor) {
+      ((DefaultEventProcessor)eventProcessor).sendEvents(events);
+    } else {
+      for (Event event: events) {
+        eventProcessor.sendEvent(event);
+      }
+    }
   }
 
   @Override
@@ -149,7 +182,7 @@ public final class LDClient implements LDClientInterface {
   }
 
   @Override
-  public FeatureFlagsState allFlagsState(LDUser user, FlagsStateOption... options) {
+  public FeatureFlagsState allFlagsState(final LDUser user, FlagsStateOption... options) {
     FeatureFlagsState.Builder builder = new FeatureFlagsState.Builder(options);
     
     if (isOffline()) {
@@ -172,21 +205,65 @@ public final class LDClient implements LDClientInterface {
 
     boolean clientSideOnly = FlagsStateOption.hasOption(options, FlagsStateOption.CLIENT_SIDE_ONLY);
     Map<String, FeatureFlag> flags = featureStore.all(FEATURES);
-    for (Map.Entry<String, FeatureFlag> entry : flags.entrySet()) {
-      FeatureFlag flag = entry.getValue();
-      if (clientSideOnly && !flag.isClientSide()) {
-        continue;
+    final List<FeatureFlag> selectedFlags = new ArrayList<>(flags.size());
+    for (FeatureFlag flag: flags.values()) {
+      if (!clientSideOnly || flag.isClientSide()) {
+        selectedFlags.add(flag);
+      }
+    }
+    // each partition sets its own range of elements
+    final List<EvaluationDetail<JsonElement>> results =
+        new ArrayList<>(Collections.<EvaluationDetail<JsonElement>>nCopies(selectedFlags.size(), null));
+    int partitions = 1;
+    ForkJoinPool pool = null;
+    if (FlagsStateOption.hasOption(options, FlagsStateOption.EVALUATE_IN_PARALLEL)) {
+      pool = getAllFlagsStatePool();
+      // If other calls have already filled the pool, waiting for it would be slower than not using it
+      if (!pool.hasQueuedSubmissions()) {
+        partitions = Math.min(pool.getParallelism(), selectedFlags.size() / ALL_FLAGS_MIN_PARTITION_SIZE);
       }
+    }
+    if (partitions > 1) {
+      // The calling thread evaluates the first partition itself while the pool does the rest
+      List<ForkJoinTask<?>> tasks = new ArrayList<>(partitions - 1);
+      for (int i = 1; i < partitions; i++) {
+        final int from = i * selectedFlags.size() / partitions, to = (i + 1) * selectedFlags.size() / partitions;
+        Runnable task = new Runnable() {
+          public void run() {
+            evaluateForState(selectedFlags, from, to, user, results);
+          }
+        };
+        try {
+          tasks.add(pool.submit(task));
+        } catch (RejectedExecutionException e) {
+          task.run();
+        }
+      }
+      evaluateForState(selectedFlags, 0, selectedFlags.size() / partitions, user, results);
+      for (ForkJoinTask<?> task: tasks) {
+        task.join();
+      }
+    } else {
+      evaluateForState(selectedFlags, 0, selectedFlags.size(), user, results);
+    }
+    for (int i = 0; i < results.size(); i++) {
+      builder.addFlag(selectedFlags.get(i), results.get(i));
+    }
+    return builder.build();
+  }
+
+  private void evaluateForState(List<FeatureFlag> flags, int from, int to, LDUser user,
+      List<EvaluationDetail<JsonElement>> results) {
+    for (int i = from; i < to; i++) {
+      FeatureFlag flag = flags.get(i);
       try {
-        EvaluationDetail<JsonElement> result = flag.evaluate(user, featureStore, EventFactory.DEFAULT).getDetails();
-        builder.addFlag(flag, result);
+        results.set(i, flag.evaluate(user, featureStore, EventFactory.DEFAULT).getDetails());
       } catch (Exception e) {
-        logger.error("Exception caught for feature flag \"{}\" when evaluating all flags: {}", entry.getKey(), e.toString());
+        logger.error("Exception caught for feature flag \"{}\" when evaluating all flags: {}", flag.getKey(), e.toString());
         logger.debug(e.toString(), e);
-        builder.addFlag(entry.getValue(), EvaluationDetail.<JsonElement>error(EvaluationReason.ErrorKind.EXCEPTION, null));
+        results.set(i, EvaluationDetail.<JsonElement>error(EvaluationReason.ErrorKind.EXCEPTION, null));
       }
     }
-    return builder.build();
   }
   
   @Override
@@ -214,6 +291,197 @@ public final class LDClient implements LDClientInterface {
     return evaluate(featureKey, user, defaultValue, defaultValue, VariationType.Json);
   }
 
+  @Override
+  public Map<String, JsonElement> jsonVariations(LDUser user, Map<String, JsonElement> defaultValues) {
+    Map<String, JsonElement> results = new HashMap<>();
+    if (defaultValues.isEmpty()) {
+      return results;
+    }
+    EvaluationReason.ErrorKind failure = null;
+    if (!initialized()) {
+      if (featureStore.initialized()) {
+        logger.warn("Evaluation called before client initialized for feature flags {}; using last known values from feature store", defaultValues.keySet());
+      } else {
+        logger.warn("Evaluation called before client initialized for feature flags {}; feature store unavailable, returning default values", defaultValues.keySet());
+        failure = EvaluationReason.ErrorKind.CLIENT_NOT_READY;
+      }
+    }
+
+    Map<String, FeatureFlag> flags = Collections.emptyMap();
+    if (failure == null) {
+      try {
+        flags = Util.getMany(featureStore, FEATURES, defaultValues.keySet());
+      } catch (Exception e) {
+        logger.error("Encountered exception while evaluating feature flags {}: {}", defaultValues.keySet(), e.toString());
+        logger.debug(e.toString(), e);
+        failure = EvaluationReason.ErrorKind.EXCEPTION;
+      }
+      warnIfUserKeyIsBlank(user);
+    }
+
+    List<Event.FeatureRequest> events = new ArrayList<>(defaultValues.size());
+    for (Map.Entry<String, JsonElement> entry: defaultValues.entrySet()) {
+      String featureKey = entry.getKey();
+      JsonElement defaultValue = entry.getValue();
+      EvaluationDetail<JsonElement> details;
+      if (failure == null) {
+        details = evaluateFlag(featureKey, flags.get(featureKey), user, defaultValue, featureStore,
+            EventFactory.DEFAULT, events);
+      } else {
+        events.add(EventFactory.DEFAULT.newUnknownFeatureRequestEvent(featureKey, user, defaultValue, failure));
+        details = EvaluationDetail.error(failure, defaultValue);
+      }
+      boolean isError = details.getReason().getKind() == EvaluationReason.Kind.ERROR;
+      results.put(featureKey, isError ? defaultValue : details.getValue());
+    }
+    sendFlagRequestEvents(events);
+    return results;
+  }
+
+  @Override
+  public void jsonVariationForUsers(final String featureKey, Iterable<LDUser> users, final JsonElement defaultValue,
+      Executor executor, final UserVariationHandler handler, BatchEvaluationOption... options) {
+    final boolean sendEvents = !BatchEvaluationOption.hasOption(options, BatchEvaluationOption.NO_EVENTS);
+    final EventSummarizer.EventSummary summary =
+        (sendEvents && BatchEvaluationOption.hasOption(options, BatchEvaluationOption.SUMMARY_EVENTS_ONLY) &&
+        eventProcessor instanceof DefaultEventProcessor) ? new EventSummarizer.EventSummary() : null;
+
+    EvaluationReason.ErrorKind failure = null;
+    if (!initialized()) {
+      if (featureStore.initialized()) {
+        logger.warn("Evaluation called before client initialized for feature flag \"{}\"; using last known values from feature store", featureKey);
+      } else {
+        logger.warn("Evaluation called before client initialized for feature flag \"{}\"; feature store unavailable, returning default value", featureKey);
+        failure = EvaluationReason.ErrorKind.CLIENT_NOT_READY;
+      }
+    }
+    FeatureFlag flag = null;
+    FeatureStoreReader reader = featureStore;
+    if (failure == null) {
+      try {
+        flag = featureStore.get(FEATURES, featureKey);
+        // Reading the dependencies once means that every user is evaluated against the same ones. A flag
+        // that is off doesn't use them, so they aren't read, and failing to read them can't stop it from
+        // returning its off variation.
+        if (flag != null && flag.isOn() && flag.getCompiled().hasDependencies()) {
+          reader = FlagDependencySnapshot.forFlag(featureStore, flag);
+        }
+      } catch (Exception e) {
+        logger.error("Encountered exception while evaluating feature flag \"{}\": {}", featureKey, e.toString());
+        logger.debug(e.toString(), e);
+        failure = EvaluationReason.ErrorKind.EXCEPTION;
+      }
+    }
+    final FeatureStoreReader store = reader;
+    final FeatureFlag featureFlag = flag;
+    if (failure == null && featureFlag == null) {
+      // logged here rather than by evaluateFlag, which would log it again for every user
+      logger.info("Unknown feature flag \"{}\"; returning default value", featureKey);
+      failure = EvaluationReason.ErrorKind.FLAG_NOT_FOUND;
+    }
+    final EvaluationReason.ErrorKind storeFailure = failure;
+
+    // Users are handed to the executor in chunks, and we stop reading from the Iterable while too many
+    // chunks are pending, so that a very large or lazily generated set of users is never held in memory
+    // all at once.
+    final Semaphore pendingChunks = new Semaphore(USER_BATCH_MAX_PENDING_CHUNKS);
+    Executor chunkExecutor = executor == null ? getEvaluationPool() : executor;
+    List<LDUser> chunk = new ArrayList<>(USER_BATCH_CHUNK_SIZE);
+    Iterator<LDUser> userIterator = users.iterator();
+    while (userIterator.hasNext()) {
+      chunk.add(userIterator.next());
+      if (chunk.size() < USER_BATCH_CHUNK_SIZE && userIterator.hasNext()) {
+        continue;
+      }
+      final List<LDUser> chunkUsers = chunk;
+      chunk = new ArrayList<>(USER_BATCH_CHUNK_SIZE);
+      Runnable task = new Runnable() {
+        public void run() {
+          try {
+            evaluateForUsers(featureKey, featureFlag, chunkUsers, defaultValue, store, storeFailure, handler,
+                sendEvents, summary);
+          } finally {
+            pendingChunks.release();
+          }
+        }
+      };
+      pendingChunks.acquireUninterruptibly();
+      try {
+        chunkExecutor.execute(task);
+      } catch (RejectedExecutionException e) {
+        task.run();
+      } catch (RuntimeException | Error e) {
+        pendingChunks.release();
+        throw e;
+      }
+    }
+    pendingChunks.acquireUninterruptibly(USER_BATCH_MAX_PENDING_CHUNKS); // wait for the last chunks to finish
+    if (summary != null) {
+      ((DefaultEventProcessor)eventProcessor).sendSummary(summary);
+    }
+  }
+
+  private void evaluateForUsers(String featureKey, FeatureFlag featureFlag, List<LDUser> users, JsonElement defaultValue,
+      FeatureStoreReader store, EvaluationReason.ErrorKind storeFailure, UserVariationHandler handler,
+      boolean sendEvents, EventSummarizer.EventSummary summary) {
+    List<Event.FeatureRequest> events = new ArrayList<>(users.size());
+    for (LDUser user: users) {
+      EvaluationDetail<JsonElement> details;
+      if (storeFailure == null) {
+        details = evaluateFlag(featureKey, featureFlag, user, defaultValue, store, EventFactory.DEFAULT, events);
+      } else {
+        events.add(EventFactory.DEFAULT.newUnknownFeatureRequestEvent(featureKey, user, defaultValue, storeFailure));
+        details = EvaluationDetail.error(storeFailure, defaultValue);
+      }
+      try {
+        handler.handleVariation(user, details);
+      } catch (Exception e) {
+        logger.error("Unexpected exception from handler while evaluating feature flag \"{}\" for users: {}", featureKey, e.toString());
+        logger.debug(e.toString(), e);
+      }
+    }
+    if (!sendEvents) {
+      return;
+    }
+    if (summary == null) {
+      sendEvents(events);
+      return;
+    }
+    EventSummarizer chunkSummarizer = new EventSummarizer();
+    for (Event event: events) {
+      chunkSummarizer.summarizeEvent(event);
+    }
+    synchronized (summary) {
+      summary.add(chunkSummarizer.getSummary());
+    }
+  }
+
+  private ForkJoinPool getEvaluationPool() {
+    ForkJoinPool pool = evaluationPool;
+    if (pool == null) {
+      synchronized (this) {
+        pool = evaluationPool;
+        if (pool == null) {
+          pool = evaluationPool = new ForkJoinPool();
+        }
+      }
+    }
+    return pool;
+  }
+
+  private ForkJoinPool getAllFlagsStatePool() {
+    ForkJoinPool pool = allFlagsStatePool;
+    if (pool == null) {
+      synchronized (this) {
+        pool = allFlagsStatePool;
+        if (pool == null) {
+          pool = allFlagsStatePool = new ForkJoinPool();
+        }
+      }
+    }
+    return pool;
+  }
+
   @Override
   public EvaluationDetail<Boolean> boolVariationDetail(String featureKey, LDUser user, boolean defaultValue) {
      return evaluateDetail(featureKey, user, defaultValue, new JsonPrimitive(defaultValue), VariationType.Boolean,
@@ -289,55 +557,96 @@ public final class LDClient implements LDClientInterface {
   }
   
   private EvaluationDetail<JsonElement> evaluateInternal(String featureKey, LDUser user, JsonElement defaultValue, EventFactory eventFactory) {
+    List<Event.FeatureRequest> events = new ArrayList<>(1);
+    EvaluationDetail<JsonElement> details = evaluateInternal(featureKey, user, defaultValue, eventFactory, events);
+    sendFlagRequestEvents(events);
+    return details;
+  }
+
+  private EvaluationDetail<JsonElement> evaluateInternal(String featureKey, LDUser user, JsonElement defaultValue,
+      EventFactory eventFactory, List<Event.FeatureRequest> events) {
     if (!initialized()) {
       if (featureStore.initialized()) {
         logger.warn("Evaluation called before client initialized for feature flag \"{}\"; using last known values from feature store", featureKey);
       } else {
         logger.warn("Evaluation called before client initialized for feature flag \"{}\"; feature store unavailable, returning default value", featureKey);
-        sendFlagRequestEvent(eventFactory.newUnknownFeatureRequestEvent(featureKey, user, defaultValue,
+        events.add(eventFactory.newUnknownFeatureRequestEvent(featureKey, user, defaultValue,
             EvaluationReason.ErrorKind.CLIENT_NOT_READY));
         return EvaluationDetail.error(EvaluationReason.ErrorKind.CLIENT_NOT_READY, defaultValue);
       }
     }
 
-    FeatureFlag featureFlag = null;
+    FeatureFlag featureFlag;
+    FeatureStoreReader store = featureStore;
     try {
       featureFlag = featureStore.get(FEATURES, featureKey);
-      if (featureFlag == null) {
-        logger.info("Unknown feature flag \"{}\"; returning default value", featureKey);
-        sendFlagRequestEvent(eventFactory.newUnknownFeatureRequestEvent(featureKey, user, defaultValue,
-            EvaluationReason.ErrorKind.FLAG_NOT_FOUND));
-        return EvaluationDetail.error(EvaluationReason.ErrorKind.FLAG_NOT_FOUND, defaultValue);
-      }
-      if (user == null || user.getKey() == null) {
-        logger.warn("Null user or null user key when evaluating flag \"{}\"; returning default value", featureKey);
-        sendFlagRequestEvent(eventFactory.newDefaultFeatureRequestEvent(featureFlag, user, defaultValue,
-            EvaluationReason.ErrorKind.USER_NOT_SPECIFIED));
-        return EvaluationDetail.error(EvaluationReason.ErrorKind.USER_NOT_SPECIFIED, defaultValue);
-      }
-      if (user.getKeyAsString().isEmpty()) {
-        logger.warn("User key is blank. Flag evaluation will proceed, but the user will not be stored in LaunchDarkly");
-      }
-      FeatureFlag.EvalResult evalResult = featureFlag.evaluate(user, featureStore, eventFactory);
-      for (Event.FeatureRequest event : evalResult.getPrerequisiteEvents()) {
-        eventProcessor.sendEvent(event);
+      if (featureFlag != null && shouldPrefetchDependencies(featureFlag)) {
+        store = FlagDependencySnapshot.forFlag(featureStore, featureFlag);
       }
+    } catch (Exception e) {
+      logger.error("Encountered exception while evaluating feature flag \"{}\": {}", featureKey, e.toString());
+      logger.debug(e.toString(), e);
+      events.add(eventFactory.newUnknownFeatureRequestEvent(featureKey, user, defaultValue,
+          EvaluationReason.ErrorKind.EXCEPTION));
+      return EvaluationDetail.error(EvaluationReason.ErrorKind.EXCEPTION, defaultValue);
+    }
+    warnIfUserKeyIsBlank(user);
+    return evaluateFlag(featureKey, featureFlag, user, defaultValue, store, eventFactory, events);
+  }
+
+  // Reading a flag's dependencies as a batch only helps if the store would otherwise make a request for
+  // each of them. A flag that is off doesn't use them, so they aren't read, and failing to read them
+  // can't stop it from returning its off variation.
+  private boolean shouldPrefetchDependencies(FeatureFlag featureFlag) {
+    if (!(featureStore instanceof MultiGetFeatureStore) || !featureFlag.isOn() ||
+        !featureFlag.getCompiled().hasDependencies()) {
+      return false;
+    }
+    MultiGetFeatureStore store = (MultiGetFeatureStore)featureStore;
+    return !store.isInMemory(FEATURES) || !store.isInMemory(SEGMENTS);
+  }
+
+  private void warnIfUserKeyIsBlank(LDUser user) {
+    if (user != null && user.getKey() != null && user.getKeyAsString().isEmpty()) {
+      logger.warn("User key is blank. Flag evaluation will proceed, but the user will not be stored in LaunchDarkly");
+    }
+  }
+
+  /**
+   * Evaluates a flag that has already been retrieved from the feature store (or found to be missing),
+   * adding the resulting analytics events to {@code events} rather than sending them, so that callers
+   * evaluating several flags can send all of the events together. Prerequisites and segments are read
+   * from {@code store}.
+   */
+  private EvaluationDetail<JsonElement> evaluateFlag(String featureKey, FeatureFlag featureFlag, LDUser user,
+      JsonElement defaultValue, FeatureStoreReader store, EventFactory eventFactory, List<Event.FeatureRequest> events) {
+    if (featureFlag == null) {
+      logger.info("Unknown feature flag \"{}\"; returning default value", featureKey);
+      events.add(eventFactory.newUnknownFeatureRequestEvent(featureKey, user, defaultValue,
+          EvaluationReason.ErrorKind.FLAG_NOT_FOUND));
+      return EvaluationDetail.error(EvaluationReason.ErrorKind.FLAG_NOT_FOUND, defaultValue);
+    }
+    if (user == null || user.getKey() == null) {
+      logger.warn("Null user or null user key when evaluating flag \"{}\"; returning default value", featureKey);
+      events.add(eventFactory.newDefaultFeatureRequestEvent(featureFlag, user, defaultValue,
+          EvaluationReason.ErrorKind.USER_NOT_SPECIFIED));
+      return EvaluationDetail.error(EvaluationReason.ErrorKind.USER_NOT_SPECIFIED, defaultValue);
+    }
+    try {
+      FeatureFlag.EvalResult evalResult = featureFlag.evaluate(user, store, eventFactory);
       EvaluationDetail<JsonElement> details = evalResult.getDetails();
       if (details.isDefaultValue()) {
         details = new EvaluationDetail<JsonElement>(details.getReason(), null, defaultValue);
       }
-      sendFlagRequestEvent(eventFactory.newFeatureRequestEvent(featureFlag, user, details, defaultValue));
+      Event.FeatureRequest event = eventFactory.newFeatureRequestEvent(featureFlag, user, details, defaultValue);
+      events.addAll(evalResult.getPrerequisiteEvents());
+      events.add(event);
       return details;
     } catch (Exception e) {
       logger.error("Encountered exception while evaluating feature flag \"{}\": {}", featureKey, e.toString());
       logger.debug(e.toString(), e);
-      if (featureFlag == null) {
-        sendFlagRequestEvent(eventFactory.newUnknownFeatureRequestEvent(featureKey, user, defaultValue,
-            EvaluationReason.ErrorKind.EXCEPTION));
-      } else {
-        sendFlagRequestEvent(eventFactory.newDefaultFeatureRequestEvent(featureFlag, user, defaultValue,
-            EvaluationReason.ErrorKind.EXCEPTION));
-      }
+      events.add(eventFactory.newDefaultFeatureRequestEvent(featureFlag, user, defaultValue,
+          EvaluationReason.ErrorKind.EXCEPTION));
       return EvaluationDetail.error(EvaluationReason.ErrorKind.EXCEPTION, defaultValue);
     }
   }
@@ -350,6 +659,14 @@ public final class LDClient implements LDClientInterface {
     }
     this.eventProcessor.close();
     this.updateProcessor.close();
+    synchronized (this) {
+      if (evaluationPool != null) {
+        evaluationPool.shutdown();
+      }
+      if (allFlagsStatePool != null) {
+        allFlagsStatePool.shutdown();
+      }
+    }
     if (this.config.httpClient != null) {
       if (this.config.httpClient.dispatcher() != null && this.config.httpClient.dispatcher().executorService() != null) {
         this.config.httpClient.dispatcher().cancelAll();
@@ -369,6 +686,14 @@ public final class LDClient implements LDClientInterface {
     this.eventProcessor.flush();
   }
 
+  @Override
+  public EventProcessorStatistics getEventProcessorStatistics() {
+    if (eventProcessor instanceof DefaultEventProcessor) {
+      return ((DefaultEventProcessor)eventProcessor).getStatistics();
+    }
+    return EventProcessorStatistics.EMPTY;
+  }
+
   @Override
   public boolean isOffline() {
     return config.offline;
@@ -5,6 +5,7 @@ import com.google.gson.JsonElement;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * This interface defines the public methods of {@link LDClient}.
@@ -118,6 +119,44 @@ public interface LDClientInterface extends Closeable {
    */
   JsonElement jsonVariation(String featureKey, LDUser user, JsonElement defaultValue);
 
+  /**
+   * Calculates the values of several feature flags for the same user. The result for each flag, and the
+   * analytics events that are generated, are the same as if {@link #jsonVariation(String, LDUser, JsonElement)}
+   * had been called for each one; but the flags are retrieved from the feature store together, and the
+   * overhead of checking the client state and the user and of queueing events is paid only once.
+   * <p>
+   * This is intended for applications that evaluate many flags while handling a single request.
+   *
+   * @param user          the end user requesting the flags
+   * @param defaultValues a map of feature flag keys to the default value of each flag
+   * @return a map of feature flag keys to the variation for the given user, or to the default value if
+   * the flag could not be evaluated; it contains every key in {@code defaultValues}
+   * @since 4.4.0
+   */
+  Map<String, JsonElement> jsonVariations(LDUser user, Map<String, JsonElement> defaultValues);
+
+  /**
+   * Calculates the value of one feature flag for each of a series of users, such as in an offline job
+   * that processes a large user population. The flag and all of the prerequisite flags and segments it
+   * depends on are retrieved from the feature store once at the start, and users are then evaluated in
+   * parallel, in chunks, on the given executor. Each result is passed to {@code handler} as soon as it
+   * is available. This method returns when every user has been evaluated.
+   * <p>
+   * By default, the same analytics events are generated as by {@link #jsonVariation(String, LDUser, JsonElement)};
+   * use {@link BatchEvaluationOption} to turn them off or to record only summary counts.
+   *
+   * @param featureKey   the unique key for the feature flag
+   * @param users        the users to evaluate the flag for; they are read one chunk at a time
+   * @param defaultValue the default value of the flag
+   * @param executor     the executor to evaluate users on, or null to use a {@link java.util.concurrent.ForkJoinPool}
+   *                     owned by the client
+   * @param handler      receives the result for each user; it may be called from several threads at once
+   * @param options      optional {@link BatchEvaluationOption} values
+   * @since 4.4.0
+   */
+  void jsonVariationForUsers(String featureKey, Iterable<LDUser> users, JsonElement defaultValue,
+      Executor executor, UserVariationHandler handler, BatchEvaluationOption... options);
+
   /**
    * Calculates the value of a feature flag for a given user, and returns an object that describes the
    * way the value was determined. The {@code reason} property in the result will also be included in
@@ -199,6 +238,15 @@ public interface LDClientInterface extends Closeable {
    */
   void flush();
 
+  /**
+   * Returns counters that show how many analytics events have been discarded, or spilled to disk,
+   * because of the configured {@link EventOverflowPolicy}. If events are disabled, all of the counts
+   * are zero.
+   * @return a snapshot of the counters
+   * @since 4.4.0
+   */
+  EventProcessorStatistics getEventProcessorStatistics();
+
   /**
    * Returns true if the client is in offline mode.
    * @return whether the client is in offline mode
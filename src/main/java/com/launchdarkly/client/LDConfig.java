@@ -45,6 +45,8 @@ public final class LDConfig {
   private static final int DEFAULT_USER_KEYS_FLUSH_INTERVAL_SECONDS = 60 * 5;
   private static final long DEFAULT_RECONNECT_TIME_MILLIS = 1000;
   private static final long MAX_HTTP_CACHE_SIZE_BYTES = 10 * 1024 * 1024; // 10 MB
+  private static final long DEFAULT_EVENT_SPOOL_CAPACITY_BYTES = 64 * 1024 * 1024;
+  private static final int DEFAULT_EVENT_SPOOL_MAX_AGE_SECONDS = 60 * 60 * 24;
 
   protected static final LDConfig DEFAULT = new Builder().build();
 
@@ -55,6 +57,8 @@ public final class LDConfig {
   final int connectTimeoutMillis;
   final int socketTimeoutMillis;
   final int flushInterval;
+  final boolean adaptiveFlush;
+  final int flushHighWaterMark;
   final Proxy proxy;
   final Authenticator proxyAuthenticator;
   final OkHttpClient httpClient;
@@ -75,6 +79,11 @@ public final class LDConfig {
   final int userKeysCapacity;
   final int userKeysFlushInterval;
   final boolean inlineUsersInEvents;
+  final boolean compressEvents;
+  final EventOverflowPolicy eventOverflowPolicy;
+  final File eventSpoolDirectory;
+  final long eventSpoolCapacity;
+  final int eventSpoolMaxAge;
   
   protected LDConfig(Builder builder) {
     this.baseURI = builder.baseURI;
@@ -83,6 +92,9 @@ public final class LDConfig {
     this.connectTimeoutMillis = builder.connectTimeoutMillis;
     this.socketTimeoutMillis = builder.socketTimeoutMillis;
     this.flushInterval = builder.flushIntervalSeconds;
+    this.adaptiveFlush = builder.adaptiveFlush;
+    this.flushHighWaterMark = builder.flushHighWaterMark > 0 ? builder.flushHighWaterMark :
+      Math.max(1, builder.capacity / 2);
     this.proxy = builder.proxy();
     this.proxyAuthenticator = builder.proxyAuthenticator();
     this.streamURI = builder.streamURI;
@@ -107,6 +119,11 @@ public final class LDConfig {
     this.userKeysCapacity = builder.userKeysCapacity;
     this.userKeysFlushInterval = builder.userKeysFlushInterval;
     this.inlineUsersInEvents = builder.inlineUsersInEvents;
+    this.compressEvents = builder.compressEvents;
+    this.eventOverflowPolicy = builder.eventOverflowPolicy;
+    this.eventSpoolDirectory = builder.eventSpoolDirectory;
+    this.eventSpoolCapacity = builder.eventSpoolCapacity;
+    this.eventSpoolMaxAge = builder.eventSpoolMaxAge;
     
     OkHttpClient.Builder httpClientBuilder = new OkHttpClient.Builder()
         .connectionPool(new ConnectionPool(5, 5, TimeUnit.SECONDS))
@@ -156,6 +173,8 @@ public final class LDConfig {
     private int socketTimeoutMillis = DEFAULT_SOCKET_TIMEOUT_MILLIS;
     private int capacity = DEFAULT_CAPACITY;
     private int flushIntervalSeconds = DEFAULT_FLUSH_INTERVAL_SECONDS;
+    private boolean adaptiveFlush = false;
+    private int flushHighWaterMark = 0;
     private String proxyHost = "localhost";
     private int proxyPort = -1;
     private String proxyUsername = null;
@@ -177,6 +196,11 @@ public final class LDConfig {
     private int userKeysCapacity = DEFAULT_USER_KEYS_CAPACITY;
     private int userKeysFlushInterval = DEFAULT_USER_KEYS_FLUSH_INTERVAL_SECONDS;
     private boolean inlineUsersInEvents = false;
+    private boolean compressEvents = false;
+    private EventOverflowPolicy eventOverflowPolicy = EventOverflowPolicy.block();
+    private File eventSpoolDirectory = null;
+    private long eventSpoolCapacity = DEFAULT_EVENT_SPOOL_CAPACITY_BYTES;
+    private int eventSpoolMaxAge = DEFAULT_EVENT_SPOOL_MAX_AGE_SECONDS;
     
     /**
      * Creates a builder with all configuration parameters set to the default
@@ -346,6 +370,37 @@ public final class LDConfig {
       return this;
     }
 
+    /**
+     * Set whether the event buffer should be flushed according to how full it is and how long events
+     * have been waiting, rather than at a fixed interval. When this is enabled, the buffer is flushed as
+     * soon as it holds {@link #flushHighWaterMark(int)} events, or when the oldest event in it has been
+     * waiting for the {@link #flushInterval(int)}; while there are no events, the client does not wake up
+     * to flush at all. This delivers bursts of events before the buffer reaches its capacity, without
+     * making idle clients do any work. By default, this is disabled and the buffer is flushed at every
+     * flush interval.
+     *
+     * @param adaptiveFlush true to flush according to the state of the buffer
+     * @return the builder
+     * @since 4.4.0
+     */
+    public Builder adaptiveFlush(boolean adaptiveFlush) {
+      this.adaptiveFlush = adaptiveFlush;
+      return this;
+    }
+
+    /**
+     * Set the number of buffered events that causes an immediate flush, if {@link #adaptiveFlush(boolean)}
+     * is enabled. The default is half of the {@link #capacity(int)}.
+     *
+     * @param events the number of events
+     * @return the builder
+     * @since 4.4.0
+     */
+    public Builder flushHighWaterMark(int events) {
+      this.flushHighWaterMark = events;
+      return this;
+    }
+
     /**
      * Set the capacity of the events buffer. The client buffers up to this many events in memory before flushing. If the capacity is exceeded before the buffer is flushed, events will be discarded.
      * Increasing the capacity means that events are less likely to be discarded, at the cost of consuming more memory. The default value is 10000 elements. The default flush interval (set by flushInterval) is 5 seconds.
@@ -523,7 +578,8 @@ public final class LDConfig {
 
     /**
      * Sets the number of user keys that the event processor can remember at any one time, so that
-     * duplicate user details will not be sent in analytics events.
+     * duplicate user details will not be sent in analytics events. This uses between 16 and 32 bytes of
+     * memory for each key of capacity, however long the keys are.
      * 
      * @param capacity the maximum number of user keys to remember
      * @return the builder
@@ -534,14 +590,15 @@ public final class LDConfig {
     }
 
     /**
-     * Sets the interval in seconds at which the event processor will reset its set of known user keys. The
-     * default value is five minutes.
+     * Sets how long, in seconds, the event processor remembers each user key, after which the user's
+     * details will be sent again the next time there is an event for that user. The default value is
+     * five minutes.
      *
      * @param flushInterval the flush interval in seconds
      * @return the builder
      */
     public Builder userKeysFlushInterval(int flushInterval) {
-      this.flushIntervalSeconds = flushInterval;
+      this.userKeysFlushInterval = flushInterval;
       return this;
     }
 
@@ -556,6 +613,79 @@ public final class LDConfig {
       this.inlineUsersInEvents = inlineUsersInEvents;
       return this;
     }
+
+    /**
+     * Sets whether to gzip-compress analytics event payloads. When this is enabled, the events are
+     * serialized directly into the compressed request body as it is sent, rather than into a string
+     * first, which reduces both network traffic and memory usage for large payloads. The default
+     * is false.
+     *
+     * @param compressEvents true if event payloads should be compressed
+     * @return the builder
+     * @since 4.4.0
+     */
+    public Builder compressEvents(boolean compressEvents) {
+      this.compressEvents = compressEvents;
+      return this;
+    }
+
+    /**
+     * Sets what to do with analytics events when they are produced faster than they can be processed,
+     * or when the event buffer reaches its {@link #capacity(int)} before it is flushed. By default,
+     * {@link EventOverflowPolicy#block()} is used, which means that a thread generating an event may have
+     * to wait; the other policies never wait, but discard some events instead.
+     *
+     * @param policy the overflow policy
+     * @return the builder
+     * @since 4.4.0
+     */
+    public Builder eventOverflowPolicy(EventOverflowPolicy policy) {
+      this.eventOverflowPolicy = policy == null ? EventOverflowPolicy.block() : policy;
+      return this;
+    }
+
+    /**
+     * Sets a directory where analytics event payloads are kept if they cannot be delivered, so that they
+     * are not lost. This includes payloads that still fail after being retried, and events that have not
+     * been delivered when the client is closed. The stored payloads are delivered in the background at
+     * each flush, by this client or by the next one to use the same directory, such as after a restart.
+     * No other process should use the directory at the same time. By default, there is no directory, and
+     * such events are discarded.
+     *
+     * @param directory the directory, which is created if necessary; or null to disable this
+     * @return the builder
+     * @since 4.4.0
+     */
+    public Builder eventSpoolDirectory(File directory) {
+      this.eventSpoolDirectory = directory;
+      return this;
+    }
+
+    /**
+     * Sets the maximum total size of the files in the {@link #eventSpoolDirectory(File)}. When it is reached,
+     * the oldest payloads are discarded. The default is 64 MB.
+     *
+     * @param bytes the maximum size in bytes
+     * @return the builder
+     * @since 4.4.0
+     */
+    public Builder eventSpoolCapacity(long bytes) {
+      this.eventSpoolCapacity = bytes;
+      return this;
+    }
+
+    /**
+     * Sets the maximum time, in seconds, that payloads are kept in the {@link #eventSpoolDirectory(File)}
+     * before they are discarded undelivered. The default is one day.
+     *
+     * @param seconds the maximum age in seconds
+     * @return the builder
+     * @since 4.4.0
+     */
+    public Builder eventSpoolMaxAge(int seconds) {
+      this.eventSpoolMaxAge = seconds;
+      return this;
+    }
     
     // returns null if none of the proxy bits were configured. Minimum required part: port.
     Proxy proxy() {
@@ -83,11 +83,9 @@ public class LDUser {
   }
 
   protected JsonElement getValueForEvaluation(String attribute) {
-    // Don't use Enum.valueOf because we don't want to trigger unnecessary exceptions
-    for (UserAttribute builtIn: UserAttribute.values()) {
-      if (builtIn.name().equals(attribute)) {
-        return builtIn.get(this);
-      }
+    UserAttribute builtIn = UserAttribute.forName(attribute);
+    if (builtIn != null) {
+      return builtIn.get(this);
     }
     return getCustom(attribute);
   }
@@ -0,0 +1,37 @@
+package com.launchdarkly.client;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Optional extension of {@link FeatureStore} for implementations that can retrieve several objects
+ * more efficiently than by calling {@link FeatureStore#get} once for each of them, for instance by
+ * taking a lock only once or by making a single request to a database.
+ * <p>
+ * The client uses this interface, if the store implements it, when it already knows the full set of
+ * keys it needs, as in {@link LDClientInterface#jsonVariations(LDUser, Map)}. Otherwise it falls back
+ * to individual {@code get} calls, so implementing this is never required.
+ * @since 4.4.0
+ */
+public interface MultiGetFeatureStore extends FeatureStore {
+  /**
+   * Returns the objects to which the specified keys are mapped. Keys that are not associated with any
+   * object, or whose associated object has been deleted, are left out of the result.
+   *
+   * @param <T> class of the objects that will be returned in the map
+   * @param kind the kind of objects to get
+   * @param keys the keys whose associated objects are to be returned
+   * @return a map of keys to objects; never null
+   */
+  <T extends VersionedData> Map<String, T> getMany(VersionedDataKind<T> kind, Collection<String> keys);
+
+  /**
+   * Returns true if {@link FeatureStore#get} can currently return objects of the given kind without a
+   * request to a database, for instance because they are all held or cached in memory. The client then
+   * reads them one at a time, since batching would gain nothing.
+   *
+   * @param kind the kind of objects
+   * @return true if the objects of that kind are in memory
+   */
+  boolean isInMemory(VersionedDataKind<?> kind);
+}
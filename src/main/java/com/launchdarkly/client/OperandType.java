@@ -2,6 +2,8 @@ package com.launchdarkly.client;
 
 import com.google.gson.JsonPrimitive;
 
+import org.joda.time.DateTime;
+
 /**
  * Operator value that can be applied to {@link JsonPrimitive} objects. Incompatible types or other errors
  * will always yield false. This enum can be directly deserialized from JSON, avoiding the need for a mapping
@@ -30,7 +32,9 @@ enum OperandType {
       }
       return null;
     case date:
-      return Util.jsonPrimitiveToDateTime(value);
+      // Compared as epoch milliseconds, so a parsed date doesn't have to be kept as a DateTime
+      DateTime dateTime = Util.jsonPrimitiveToDateTime(value);
+      return dateTime == null ? null : dateTime.getMillis();
     case semVer:
       try {
         return SemanticVersion.parse(value.getAsString(), true);
@@ -1,6 +1,10 @@
 package com.launchdarkly.client;
 
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.gson.JsonPrimitive;
 
@@ -12,99 +16,209 @@ import com.google.gson.JsonPrimitive;
 enum Operator {
   in {
     @Override
-    public boolean apply(JsonPrimitive uValue, JsonPrimitive cValue) {
-      if (uValue.equals(cValue)) {
+    boolean applyCompiled(JsonPrimitive uValue, Object cValue) {
+      JsonPrimitive cPrimitive = (JsonPrimitive)cValue;
+      if (uValue.equals(cPrimitive)) {
           return true;
       }
       OperandType type = OperandType.bestGuess(uValue);
-      if (type == OperandType.bestGuess(cValue)) {
-        return compareValues(ComparisonOp.EQ, uValue, cValue, type);
+      if (type == OperandType.bestGuess(cPrimitive)) {
+        Object cValueObj = type.getValueAsType(cPrimitive);
+        return cValueObj != null && compareValues(ComparisonOp.EQ, uValue, cValueObj, type);
       }
       return false;
     }
   },
   endsWith {
     @Override
-    public boolean apply(JsonPrimitive uValue, JsonPrimitive cValue) {
-      return uValue.isString() && cValue.isString() && uValue.getAsString().endsWith(cValue.getAsString());
+    Object compileClauseValue(JsonPrimitive cValue) {
+      return cValue.isString() ? cValue.getAsString() : null;
+    }
+    
+    @Override
+    boolean applyCompiled(JsonPrimitive uValue, Object cValue) {
+      return uValue.isString() && uValue.getAsString().endsWith((String)cValue);
     }
   },
   startsWith {
     @Override
-    public boolean apply(JsonPrimitive uValue, JsonPrimitive cValue) {
-      return uValue.isString() && cValue.isString() && uValue.getAsString().startsWith(cValue.getAsString());
+    Object compileClauseValue(JsonPrimitive cValue) {
+      return cValue.isString() ? cValue.getAsString() : null;
+    }
+    
+    @Override
+    boolean applyCompiled(JsonPrimitive uValue, Object cValue) {
+      return uValue.isString() && uValue.getAsString().startsWith((String)cValue);
     }
   },
   matches {
-    public boolean apply(JsonPrimitive uValue, JsonPrimitive cValue) {
-      return uValue.isString() && cValue.isString() &&
-              Pattern.compile(cValue.getAsString()).matcher(uValue.getAsString()).find();
+    @Override
+    Object compileClauseValue(JsonPrimitive cValue) {
+      if (!cValue.isString()) {
+        return null;
+      }
+      try {
+        return Pattern.compile(cValue.getAsString());
+      } catch (PatternSyntaxException e) {
+        logger.warn("Invalid regular expression \"{}\" in \"matches\" clause will never match", cValue.getAsString());
+        return null;
+      }
+    }
+    
+    @Override
+    boolean applyCompiled(JsonPrimitive uValue, Object cValue) {
+      return uValue.isString() && ((Pattern)cValue).matcher(uValue.getAsString()).find();
     }
   },
   contains {
-    public boolean apply(JsonPrimitive uValue, JsonPrimitive cValue) {
-      return uValue.isString() && cValue.isString() && uValue.getAsString().contains(cValue.getAsString());
+    @Override
+    Object compileClauseValue(JsonPrimitive cValue) {
+      return cValue.isString() ? cValue.getAsString() : null;
+    }
+    
+    @Override
+    boolean applyCompiled(JsonPrimitive uValue, Object cValue) {
+      return uValue.isString() && uValue.getAsString().contains((String)cValue);
     }
   },
   lessThan {
-    public boolean apply(JsonPrimitive uValue, JsonPrimitive cValue) {
+    @Override
+    Object compileClauseValue(JsonPrimitive cValue) {
+      return OperandType.number.getValueAsType(cValue);
+    }
+    
+    @Override
+    boolean applyCompiled(JsonPrimitive uValue, Object cValue) {
       return compareValues(ComparisonOp.LT, uValue, cValue, OperandType.number);
     }
   },
   lessThanOrEqual {
-    public boolean apply(JsonPrimitive uValue, JsonPrimitive cValue) {
+    @Override
+    Object compileClauseValue(JsonPrimitive cValue) {
+      return OperandType.number.getValueAsType(cValue);
+    }
+    
+    @Override
+    boolean applyCompiled(JsonPrimitive uValue, Object cValue) {
       return compareValues(ComparisonOp.LTE, uValue, cValue, OperandType.number);
     }
   },
   greaterThan {
-    public boolean apply(JsonPrimitive uValue, JsonPrimitive cValue) {
+    @Override
+    Object compileClauseValue(JsonPrimitive cValue) {
+      return OperandType.number.getValueAsType(cValue);
+    }
+    
+    @Override
+    boolean applyCompiled(JsonPrimitive uValue, Object cValue) {
       return compareValues(ComparisonOp.GT, uValue, cValue, OperandType.number);
     }
   },
   greaterThanOrEqual {
-    public boolean apply(JsonPrimitive uValue, JsonPrimitive cValue) {
+    @Override
+    Object compileClauseValue(JsonPrimitive cValue) {
+      return OperandType.number.getValueAsType(cValue);
+    }
+    
+    @Override
+    boolean applyCompiled(JsonPrimitive uValue, Object cValue) {
       return compareValues(ComparisonOp.GTE, uValue, cValue, OperandType.number);
     }
   },
   before {
-    public boolean apply(JsonPrimitive uValue, JsonPrimitive cValue) {
+    @Override
+    Object compileClauseValue(JsonPrimitive cValue) {
+      return OperandType.date.getValueAsType(cValue);
+    }
+    
+    @Override
+    boolean applyCompiled(JsonPrimitive uValue, Object cValue) {
       return compareValues(ComparisonOp.LT, uValue, cValue, OperandType.date);
     }
   },
   after {
-    public boolean apply(JsonPrimitive uValue, JsonPrimitive cValue) {
+    @Override
+    Object compileClauseValue(JsonPrimitive cValue) {
+      return OperandType.date.getValueAsType(cValue);
+    }
+    
+    @Override
+    boolean applyCompiled(JsonPrimitive uValue, Object cValue) {
       return compareValues(ComparisonOp.GT, uValue, cValue, OperandType.date);
     }
   },
   semVerEqual {
-    public boolean apply(JsonPrimitive uValue, JsonPrimitive cValue) {
+    @Override
+    Object compileClauseValue(JsonPrimitive cValue) {
+      return OperandType.semVer.getValueAsType(cValue);
+    }
+    
+    @Override
+    boolean applyCompiled(JsonPrimitive uValue, Object cValue) {
       return compareValues(ComparisonOp.EQ, uValue, cValue, OperandType.semVer);
     }
   },
   semVerLessThan {
-    public boolean apply(JsonPrimitive uValue, JsonPrimitive cValue) {
+    @Override
+    Object compileClauseValue(JsonPrimitive cValue) {
+      return OperandType.semVer.getValueAsType(cValue);
+    }
+    
+    @Override
+    boolean applyCompiled(JsonPrimitive uValue, Object cValue) {
       return compareValues(ComparisonOp.LT, uValue, cValue, OperandType.semVer);
     }
   },
   semVerGreaterThan {
-    public boolean apply(JsonPrimitive uValue, JsonPrimitive cValue) {
+    @Override
+    Object compileClauseValue(JsonPrimitive cValue) {
+      return OperandType.semVer.getValueAsType(cValue);
+    }
+    
+    @Override
+    boolean applyCompiled(JsonPrimitive uValue, Object cValue) {
       return compareValues(ComparisonOp.GT, uValue, cValue, OperandType.semVer);
     }
   },
   segmentMatch {
-    public boolean apply(JsonPrimitive uValue, JsonPrimitive cValue) {
+    @Override
+    boolean applyCompiled(JsonPrimitive uValue, Object cValue) {
       // We shouldn't call apply() for this operator, because it is really implemented in
-      // Clause.matchesUser().
+      // CompiledClause.matchesUser().
       return false;
     }
   };
 
-  abstract boolean apply(JsonPrimitive uValue, JsonPrimitive cValue);
+  private static final Logger logger = LoggerFactory.getLogger(Operator.class);
+  
+  /**
+   * Applies the operator to a user value and an uncompiled clause value. This compiles the clause
+   * value every time, so flag evaluation uses {@link #applyCompiled(JsonPrimitive, Object)} instead.
+   */
+  boolean apply(JsonPrimitive uValue, JsonPrimitive cValue) {
+    Object compiled = compileClauseValue(cValue);
+    return compiled != null && applyCompiled(uValue, compiled);
+  }
+  
+  /**
+   * Converts a clause value into the operand form that {@link #applyCompiled(JsonPrimitive, Object)}
+   * expects for this operator. This is done once when a flag or segment is compiled. Returns null if
+   * the clause value can never match anything, in which case it is dropped from the compiled clause.
+   */
+  Object compileClauseValue(JsonPrimitive cValue) {
+    return cValue;
+  }
+  
+  /**
+   * Applies the operator to a user value and a clause value that was produced by
+   * {@link #compileClauseValue(JsonPrimitive)}.
+   */
+  abstract boolean applyCompiled(JsonPrimitive uValue, Object cValue);
   
-  private static boolean compareValues(ComparisonOp op, JsonPrimitive uValue, JsonPrimitive cValue, OperandType asType) {
+  // The clause value has already been converted to the operand type; only the user value needs converting
+  private static boolean compareValues(ComparisonOp op, JsonPrimitive uValue, Object cValue, OperandType asType) {
     Object uValueObj = asType.getValueAsType(uValue);
-    Object cValueObj = asType.getValueAsType(cValue);
-    return uValueObj != null && cValueObj != null && op.apply(uValueObj, cValueObj);
+    return uValueObj != null && op.apply(uValueObj, cValue);
   }
   
   private static enum ComparisonOp {
@@ -1,51 +1,114 @@
 package com.launchdarkly.client;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
 import com.google.common.base.Optional;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.launchdarkly.client.VersionedDataKind.FEATURES;
 
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.Transaction;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
 
 /**
  * An implementation of {@link FeatureStore} backed by Redis. Also
  * supports an optional in-memory cache configuration that can be used to improve performance.
+ * <p>
+ * When caching is enabled, the store caches individual items for {@link #get}, and also a snapshot of
+ * all the items of each kind for {@link #all}, with the same cache time. Once a snapshot has been
+ * loaded, {@link #get} uses it too. Updates made through this store are applied to the snapshot
+ * rather than discarding it, so that it does not have to be read from Redis and decoded again.
+ * <p>
+ * With {@link RedisFeatureStoreBuilder#invalidationChannel(String)}, updates made by other stores are
+ * applied to the cache in the same way, as soon as they are published.
  */
-public class RedisFeatureStore implements FeatureStore {
+public class RedisFeatureStore implements MultiGetFeatureStore {
   private static final Logger logger = LoggerFactory.getLogger(RedisFeatureStore.class);
   private static final String INIT_KEY = "$initialized$";
   private static final String CACHE_REFRESH_THREAD_POOL_NAME_FORMAT = "RedisFeatureStore-cache-refresher-pool-%d";
+  private static final String INVALIDATION_THREAD_NAME = "RedisFeatureStore-invalidation";
+  private static final long MIN_RESUBSCRIBE_DELAY_MILLIS = 1000;
+  private static final long MAX_RESUBSCRIBE_DELAY_MILLIS = 30000;
+  // Writes an item unless the existing item has the same or a higher version, and publishes the change
+  // if a channel is given. It returns -1 if it wrote the item, or else the existing version.
+  // KEYS: the hash of items. ARGV: item key, new version, new JSON, and optionally channel and message.
+  private static final String UPDATE_SCRIPT =
+      "local old = redis.call('HGET', KEYS[1], ARGV[1])\n" +
+      "if old then\n" +
+      "  local oldVersion = cjson.decode(old).version or 0\n" +
+      "  if oldVersion >= tonumber(ARGV[2]) then\n" +
+      "    return oldVersion\n" +
+      "  end\n" +
+      "end\n" +
+      "redis.call('HSET', KEYS[1], ARGV[1], ARGV[3])\n" +
+      "if ARGV[4] then\n" +
+      "  redis.call('PUBLISH', ARGV[4], ARGV[5])\n" +
+      "end\n" +
+      "return -1\n";
+  private static final int MAX_LOAD_ATTEMPTS = 3;
+  private static final int INIT_CHUNK_SIZE = 500;
+  private static final int STAGING_KEY_EXPIRY_SECONDS = 60 * 60;
+  private static final String UPDATE_SCRIPT_SHA = Hashing.sha1().hashString(UPDATE_SCRIPT, Charsets.UTF_8).toString();
   private static final Gson gson = new Gson();
   
   private final JedisPool pool;
   private LoadingCache<CacheKey, Optional<VersionedData>> cache;
+  private LoadingCache<VersionedDataKind<?>, KindItems> allCache;
+  private boolean refreshSnapshots;
   private final LoadingCache<String, Boolean> initCache = createInitCache();
   private String prefix;
   private ListeningExecutorService executorService;
+  private String invalidationChannel;
+  private boolean scriptedUpdates;
+  private boolean stagedInit;
+  private final String instanceId = UUID.randomUUID().toString();
+  private InvalidationSubscriber invalidationSubscriber;
+  private final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+  private final ConcurrentMap<CacheKey, AtomicLong> loadingItems = new ConcurrentHashMap<>();
+  private final Set<CacheKey> staleItems = Collections.newSetFromMap(new ConcurrentHashMap<CacheKey, Boolean>());
+  private final Set<VersionedDataKind<?>> staleSnapshots =
+      Collections.newSetFromMap(new ConcurrentHashMap<VersionedDataKind<?>, Boolean>());
   private UpdateListener updateListener;
+  private LoadListener loadListener;
   
   private static class CacheKey {
     final VersionedDataKind<?> kind;
@@ -89,6 +152,14 @@ public class RedisFeatureStore implements FeatureStore {
         RedisFeatureStoreBuilder.DEFAULT_PREFIX :
         builder.prefix;
     createCache(builder.cacheTimeSecs, builder.refreshStaleValues, builder.asyncRefresh);
+    // Changes are published even if this store has no cache of its own to keep up to date
+    this.invalidationChannel = builder.invalidationChannel;
+    this.scriptedUpdates = builder.scriptedUpdates;
+    this.stagedInit = builder.stagedInit;
+    if (invalidationChannel != null && cache != null) {
+      invalidationSubscriber = new InvalidationSubscriber(builder.uri, builder.connectTimeout);
+      invalidationSubscriber.start();
+    }
   }
 
   /**
@@ -110,13 +181,100 @@ public class RedisFeatureStore implements FeatureStore {
     }
   }
 
+  private CacheLoader<VersionedDataKind<?>, KindItems> createAllCacheLoader() {
+    return new CacheLoader<VersionedDataKind<?>, KindItems>() {
+      @Override
+      public KindItems load(VersionedDataKind<?> kind) throws Exception {
+        AtomicLong generation = generation(kind);
+        try (Jedis jedis = pool.getResource()) {
+          for (int attempt = 1; ; attempt++) {
+            long before = generation.get();
+            KindItems items = getAllRedisAndCompile(kind, jedis);
+            loadedFromRedis(kind);
+            if (generation.get() == before) {
+              return items;
+            }
+            if (attempt == MAX_LOAD_ATTEMPTS) {
+              staleSnapshots.add(kind);
+              return items;
+            }
+          }
+        }
+      }
+    };
+  }
+
   private CacheLoader<CacheKey, Optional<VersionedData>> createDefaultCacheLoader() {
     return new CacheLoader<CacheKey, Optional<VersionedData>>() {
       @Override
       public Optional<VersionedData> load(CacheKey key) throws Exception {
         try (Jedis jedis = pool.getResource()) {
-          return Optional.<VersionedData>fromNullable(getRedisEvenIfDeleted(key.kind, key.key, jedis));
+          for (int attempt = 1; ; attempt++) {
+            ItemLoad load = new ItemLoad(key);
+            try {
+              VersionedData item = getRedisAndCompile(key.kind, key.key, jedis);
+              loadedFromRedis(key.kind);
+              if (!load.changed()) {
+                return Optional.fromNullable(item);
+              }
+              if (attempt == MAX_LOAD_ATTEMPTS) {
+                staleItems.add(key);
+                return Optional.fromNullable(item);
+              }
+            } finally {
+              load.finish();
+            }
+          }
+        }
+      }
+
+      // Used by getMany: all of the keys that are not already cached are requested at once
+      @Override
+      public Map<CacheKey, Optional<VersionedData>> loadAll(Iterable<? extends CacheKey> keys) throws Exception {
+        Map<VersionedDataKind<?>, List<String>> keysByKind = new HashMap<>();
+        for (CacheKey key: keys) {
+          List<String> kindKeys = keysByKind.get(key.kind);
+          if (kindKeys == null) {
+            kindKeys = new ArrayList<>();
+            keysByKind.put(key.kind, kindKeys);
+          }
+          kindKeys.add(key.key);
+        }
+        Map<CacheKey, Optional<VersionedData>> result = new HashMap<>();
+        try (Jedis jedis = pool.getResource()) {
+          for (Map.Entry<VersionedDataKind<?>, List<String>> entry: keysByKind.entrySet()) {
+            VersionedDataKind<?> kind = entry.getKey();
+            // only the items that changed while they were being read are read again
+            List<String> keysToRead = entry.getValue();
+            for (int attempt = 1; !keysToRead.isEmpty(); attempt++) {
+              List<ItemLoad> loads = new ArrayList<>(keysToRead.size());
+              for (String key: keysToRead) {
+                loads.add(new ItemLoad(new CacheKey(kind, key)));
+              }
+              List<String> changedKeys = new ArrayList<>();
+              try {
+                Map<String, VersionedData> items = getManyRedisAndCompile(kind, keysToRead, jedis);
+                loadedFromRedis(kind);
+                for (ItemLoad load: loads) {
+                  result.put(load.key, Optional.fromNullable(items.get(load.key.key)));
+                  if (load.changed()) {
+                    if (attempt == MAX_LOAD_ATTEMPTS) {
+                      staleItems.add(load.key);
+                    } else {
+                      changedKeys.add(load.key.key);
+                    }
+                  }
+                }
+              } finally {
+                for (ItemLoad load: loads) {
+                  load.finish();
+                }
+              }
+              keysToRead = changedKeys;
+            }
+          }
         }
+        return result;
       }
     };
   }
@@ -133,10 +291,14 @@ public class RedisFeatureStore implements FeatureStore {
     ExecutorService parentExecutor = Executors.newSingleThreadExecutor(threadFactory);
     executorService = MoreExecutors.listeningDecorator(parentExecutor);
     CacheLoader<CacheKey, Optional<VersionedData>> cacheLoader = createDefaultCacheLoader();
+    CacheLoader<VersionedDataKind<?>, KindItems> allCacheLoader = createAllCacheLoader();
     if (asyncRefresh) {
       cacheLoader = CacheLoader.asyncReloading(cacheLoader, executorService);
+      allCacheLoader = CacheLoader.asyncReloading(allCacheLoader, executorService);
     }
     cache = CacheBuilder.newBuilder().refreshAfterWrite(cacheTimeSecs, TimeUnit.SECONDS).build(cacheLoader);
+    allCache = CacheBuilder.newBuilder().refreshAfterWrite(cacheTimeSecs, TimeUnit.SECONDS).build(allCacheLoader);
+    refreshSnapshots = true;
   }
 
   /**
@@ -146,6 +308,93 @@ public class RedisFeatureStore implements FeatureStore {
    */
   private void createExpiringCache(long cacheTimeSecs) {
     cache = CacheBuilder.newBuilder().expireAfterWrite(cacheTimeSecs, TimeUnit.SECONDS).build(createDefaultCacheLoader());
+    allCache = CacheBuilder.newBuilder().expireAfterWrite(cacheTimeSecs, TimeUnit.SECONDS).build(createAllCacheLoader());
+  }
+
+  // Guava ignores the invalidation of an entry that is still loading, so a loader reads from Redis again
+  // if what it read was changed or discarded while it was reading; otherwise the old data would stay in
+  // the cache until the cache time expires, however long that is. It only tries a few times, though, in
+  // case changes keep arriving: after that it returns what it read last, and the entry is discarded as
+  // soon as the load has finished (see discardIfStale).
+  //
+  // The generation of a kind is incremented whenever any of its items are changed or discarded, and
+  // is what a snapshot loader checks. An item loader only checks for changes to its own item.
+  @VisibleForTesting
+  AtomicLong generation(VersionedDataKind<?> kind) {
+    AtomicLong generation = generations.get(kind.getNamespace());
+    if (generation == null) {
+      AtomicLong newGeneration = new AtomicLong();
+      generation = generations.putIfAbsent(kind.getNamespace(), newGeneration);
+      if (generation == null) {
+        generation = newGeneration;
+      }
+    }
+    return generation;
+  }
+
+  private void loadedFromRedis(VersionedDataKind<?> kind) {
+    if (loadListener != null) {
+      loadListener.loadedFromRedis(kind);
+    }
+  }
+
+  // Called when an item has been changed or discarded
+  private void itemChanged(VersionedDataKind<?> kind, String key) {
+    generation(kind).incrementAndGet();
+    AtomicLong itemGeneration = loadingItems.get(new CacheKey(kind, key));
+    if (itemGeneration != null) {
+      itemGeneration.incrementAndGet();
+    }
+  }
+
+  // Called when all of the items of a kind have been changed or discarded
+  private void kindChanged(VersionedDataKind<?> kind) {
+    generation(kind).incrementAndGet();
+    for (Map.Entry<CacheKey, AtomicLong> entry: loadingItems.entrySet()) {
+      if (entry.getKey().kind.getNamespace().equals(kind.getNamespace())) {
+        entry.getValue().incrementAndGet();
+      }
+    }
+  }
+
+  // Discards an entry whose loader gave up waiting for changes to stop. This is called by readers once
+  // their cache call has returned, by which time the load has finished.
+  private void discardIfStale(CacheKey key) {
+    if (staleItems.remove(key)) {
+      cache.invalidate(key);
+    }
+  }
+
+  private void discardIfStale(VersionedDataKind<?> kind) {
+    if (staleSnapshots.remove(kind)) {
+      allCache.invalidate(kind);
+    }
+  }
+
+  // An item that is being read from Redis has a generation, which is incremented if the item is changed
+  // or discarded, for as long as any loader is reading it
+  private final class ItemLoad {
+    final CacheKey key;
+    private final AtomicLong generation;
+    private final long before;
+
+    ItemLoad(CacheKey key) {
+      this.key = key;
+      AtomicLong newGeneration = new AtomicLong();
+      AtomicLong existing = loadingItems.putIfAbsent(key, newGeneration);
+      this.generation = existing == null ? newGeneration : existing;
+      this.before = generation.get();
+    }
+
+    // A loader that shared the generation with another loader that has since finished can't tell
+    // whether the item changed after that, so it assumes that it did
+    boolean changed() {
+      return generation.get() != before || loadingItems.get(key) != generation;
+    }
+
+    void finish() {
+      loadingItems.remove(key, generation);
+    }
   }
 
   private LoadingCache<String, Boolean> createInitCache() {
@@ -158,15 +407,32 @@ public class RedisFeatureStore implements FeatureStore {
     });
   }
 
+  // The snapshot is only used once something has loaded it, so that a store that is only ever read one
+  // key at a time doesn't have to read everything. getIfPresent never refreshes an entry, so with
+  // refreshStaleValues it is fetched again through the loader, which does.
+  private KindItems loadedSnapshot(VersionedDataKind<?> kind) {
+    KindItems snapshot = allCache == null ? null : allCache.getIfPresent(kind);
+    if (snapshot != null && refreshSnapshots) {
+      snapshot = allCache.getUnchecked(kind);
+      discardIfStale(kind);
+    }
+    return snapshot;
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public <T extends VersionedData> T get(VersionedDataKind<T> kind, String key) {
     T item;
-    if (cache != null) {
-      item = (T) cache.getUnchecked(new CacheKey(kind, key)).orNull();
+    KindItems snapshot = loadedSnapshot(kind);
+    if (snapshot != null) {
+      item = (T) snapshot.allItems.get(key);
+    } else if (cache != null) {
+      CacheKey cacheKey = new CacheKey(kind, key);
+      item = (T) cache.getUnchecked(cacheKey).orNull();
+      discardIfStale(cacheKey);
     } else {
       try (Jedis jedis = pool.getResource()) {
-        item = getRedisEvenIfDeleted(kind, key, jedis);
+        item = getRedisAndCompile(kind, key, jedis);
       }
     }
     if (item != null && item.isDeleted()) {
@@ -179,39 +445,209 @@ public class RedisFeatureStore implements FeatureStore {
     return item;
   }
 
+  /**
+   * Returns the objects to which the specified keys are mapped. Keys that are not in the cache, if
+   * caching is enabled, are all requested from Redis with a single {@code HMGET}.
+   * @since 4.4.0
+   */
+  @SuppressWarnings("unchecked")
   @Override
-  public <T extends VersionedData> Map<String, T> all(VersionedDataKind<T> kind) {
-    try (Jedis jedis = pool.getResource()) {
-      Map<String, String> allJson = jedis.hgetAll(itemsKey(kind));
-      Map<String, T> result = new HashMap<>();
-
-      for (Map.Entry<String, String> entry : allJson.entrySet()) {
-        T item = gson.fromJson(entry.getValue(), kind.getItemClass());
-        if (!item.isDeleted()) {
-          result.put(entry.getKey(), item);
+  public <T extends VersionedData> Map<String, T> getMany(VersionedDataKind<T> kind, Collection<String> keys) {
+    Map<String, VersionedData> items;
+    KindItems snapshot = loadedSnapshot(kind);
+    if (snapshot != null) {
+      items = snapshot.allItems;
+    } else if (cache != null) {
+      List<CacheKey> cacheKeys = new ArrayList<>(keys.size());
+      for (String key: keys) {
+        cacheKeys.add(new CacheKey(kind, key));
+      }
+      items = new HashMap<>();
+      try {
+        for (Map.Entry<CacheKey, Optional<VersionedData>> entry: cache.getAll(cacheKeys).entrySet()) {
+          if (entry.getValue().isPresent()) {
+            items.put(entry.getKey().key, entry.getValue().get());
+          }
         }
+      } catch (ExecutionException e) {
+        throw new UncheckedExecutionException(e.getCause());
+      }
+      for (CacheKey cacheKey: cacheKeys) {
+        discardIfStale(cacheKey);
+      }
+    } else {
+      try (Jedis jedis = pool.getResource()) {
+        items = getManyRedisAndCompile(kind, keys, jedis);
+      }
+    }
+    Map<String, T> result = new HashMap<>();
+    for (String key: keys) {
+      VersionedData item = items.get(key);
+      if (item != null && !item.isDeleted()) {
+        result.put(key, (T)item);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if all of the objects of the kind are cached, as they are once {@link #all} or
+   * {@link #init} has been called, until the cache time expires.
+   * @since 4.4.0
+   */
+  @Override
+  public boolean isInMemory(VersionedDataKind<?> kind) {
+    return allCache != null && allCache.asMap().containsKey(kind);
+  }
+
+  /**
+   * Returns an immutable map of all non-deleted objects of a given kind. If caching is enabled, the same
+   * map instance is returned by every call until the cache time expires or an object of that kind is
+   * updated.
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T extends VersionedData> Map<String, T> all(VersionedDataKind<T> kind) {
+    KindItems items;
+    if (allCache != null) {
+      items = allCache.getUnchecked(kind);
+      discardIfStale(kind);
+    } else {
+      try (Jedis jedis = pool.getResource()) {
+        items = getAllRedisAndCompile(kind, jedis);
       }
-      return result;
     }
+    return (Map<String, T>)items.liveItems;
   }
 
   @Override
   public void init(Map<VersionedDataKind<?>, Map<String, ? extends VersionedData>> allData) {
+    if (stagedInit) {
+      initStaged(allData);
+    } else {
+      try (Jedis jedis = pool.getResource()) {
+        Transaction t = jedis.multi();
+
+        for (Map.Entry<VersionedDataKind<?>, Map<String, ? extends VersionedData>> entry: allData.entrySet()) {
+          String baseKey = itemsKey(entry.getKey()); 
+          t.del(baseKey);
+          for (VersionedData item: entry.getValue().values()) {
+            t.hset(baseKey, item.getKey(), gson.toJson(item));
+          }
+          publishChange(t, entry.getKey(), null);
+        }
+
+        t.exec();
+      }
+    }
+    warmCaches(allData);
+    initCache.put(INIT_KEY, true);
+  }
+
+  // Writes each kind into a staging key in chunks, which other clients' commands can run in between,
+  // and then swaps all of the staging keys in at once. The staging keys expire, in case this process
+  // stops before it gets that far; RENAME would carry the expiry over, so it is removed afterwards.
+  private void initStaged(Map<VersionedDataKind<?>, Map<String, ? extends VersionedData>> allData) {
     try (Jedis jedis = pool.getResource()) {
-      Transaction t = jedis.multi();
+      Map<VersionedDataKind<?>, String> stagingKeys = new HashMap<>();
+      boolean swapped = false;
+      try {
+        for (Map.Entry<VersionedDataKind<?>, Map<String, ? extends VersionedData>> entry: allData.entrySet()) {
+          if (entry.getValue().isEmpty()) {
+            continue;
+          }
+          String stagingKey = itemsKey(entry.getKey()) + ":staging:" + instanceId;
+          stagingKeys.put(entry.getKey(), stagingKey);
+          Pipeline p = jedis.pipelined();
+          p.del(stagingKey);
+          Map<String, String> chunk = new HashMap<>();
+          for (VersionedData item: entry.getValue().values()) {
+            chunk.put(item.getKey(), gson.toJson(item));
+            if (chunk.size() == INIT_CHUNK_SIZE) {
+              p.hmset(stagingKey, chunk);
+              chunk = new HashMap<>();
+            }
+          }
+          if (!chunk.isEmpty()) {
+            p.hmset(stagingKey, chunk);
+          }
+          p.expire(stagingKey, STAGING_KEY_EXPIRY_SECONDS);
+          p.sync();
+        }
 
-      for (Map.Entry<VersionedDataKind<?>, Map<String, ? extends VersionedData>> entry: allData.entrySet()) {
-        String baseKey = itemsKey(entry.getKey()); 
-        t.del(baseKey);
-        for (VersionedData item: entry.getValue().values()) {
-          t.hset(baseKey, item.getKey(), gson.toJson(item));
+        if (updateListener != null) {
+          for (VersionedDataKind<?> kind: allData.keySet()) {
+            updateListener.aboutToUpdate(itemsKey(kind), null); // a null key means all of the items
+          }
+        }
+        Transaction t = jedis.multi();
+        for (VersionedDataKind<?> kind: allData.keySet()) {
+          String baseKey = itemsKey(kind);
+          String stagingKey = stagingKeys.get(kind);
+          if (stagingKey == null) {
+            t.del(baseKey); // RENAME fails if there is nothing to rename
+          } else {
+            t.rename(stagingKey, baseKey);
+            t.persist(baseKey);
+          }
+          publishChange(t, kind, null);
+        }
+        List<Object> results = t.exec();
+        swapped = true;
+        // A RENAME fails if its staging key has gone, for instance because it expired, but the commands
+        // after it still run. Whatever was swapped in can't be swapped back, so rather than warming the
+        // cache with the new data, we discard it, and let the caller know that init failed.
+        for (Object result: results) {
+          if (result instanceof JedisException) {
+            for (VersionedDataKind<?> kind: allData.keySet()) {
+              invalidateKind(kind);
+            }
+            throw (JedisException)result;
+          }
+        }
+      } finally {
+        if (!swapped && !stagingKeys.isEmpty()) {
+          deleteStagingKeys(jedis, stagingKeys.values());
         }
       }
+    }
+  }
 
-      t.exec();
+  // Called if init fails before the swap, so that the staging keys don't take up memory until they
+  // expire. The connection may be the reason for the failure, so this doesn't throw.
+  private void deleteStagingKeys(Jedis jedis, Collection<String> stagingKeys) {
+    try {
+      jedis.del(stagingKeys.toArray(new String[stagingKeys.size()]));
+    } catch (JedisException e) {
+      logger.debug("Unable to delete staging keys; they will expire: {}", e.toString());
+    }
+  }
+
+  // Replaces the cached items of each kind with the new data, rather than discarding them, so that the
+  // next readers don't all have to go to Redis at once
+  private void warmCaches(Map<VersionedDataKind<?>, Map<String, ? extends VersionedData>> allData) {
+    if (cache == null) {
+      return; // allCache only exists if cache does
+    }
+    Map<CacheKey, Optional<VersionedData>> entries = new HashMap<>();
+    for (Map.Entry<VersionedDataKind<?>, Map<String, ? extends VersionedData>> entry: allData.entrySet()) {
+      kindChanged(entry.getKey());
+      for (VersionedData item: entry.getValue().values()) {
+        entry.getKey().compile(item);
+        entries.put(new CacheKey(entry.getKey(), item.getKey()), Optional.of(item));
+      }
+    }
+    cache.putAll(entries);
+    // anything else that is cached for these kinds no longer exists
+    for (Iterator<CacheKey> it = cache.asMap().keySet().iterator(); it.hasNext(); ) {
+      CacheKey key = it.next();
+      if (allData.containsKey(key.kind) && !entries.containsKey(key)) {
+        it.remove();
+      }
+    }
+    for (Map.Entry<VersionedDataKind<?>, Map<String, ? extends VersionedData>> entry: allData.entrySet()) {
+      allCache.put(entry.getKey(), new KindItems(new HashMap<String, VersionedData>(entry.getValue())));
     }
-    cache.invalidateAll();
-    initCache.put(INIT_KEY, true);
   }
 
   @Override
@@ -226,6 +662,10 @@ public class RedisFeatureStore implements FeatureStore {
   }
 
   private <T extends VersionedData> void updateItemWithVersioning(VersionedDataKind<T> kind, T newItem) {
+    if (scriptedUpdates) {
+      updateItemWithScript(kind, newItem);
+      return;
+    }
     while (true) {
       Jedis jedis = null;
       try {
@@ -244,11 +684,15 @@ public class RedisFeatureStore implements FeatureStore {
               " with a version that is the same or older: {} in \"{}\"",
               newItem.isDeleted() ? "delete" : "update",
               newItem.getKey(), oldItem.getVersion(), newItem.getVersion(), kind.getNamespace());
+          if (allCache != null) {
+            patchSnapshot(kind, oldItem); // another writer got there first, so the snapshot may be out of date
+          }
           return;
         }
   
         Transaction tx = jedis.multi();
         tx.hset(baseKey, newItem.getKey(), gson.toJson(newItem));
+        publishChange(tx, kind, newItem.getKey());
         List<Object> result = tx.exec();
         if (result.isEmpty()) {
           // if exec failed, it means the watch was triggered and we should retry
@@ -257,8 +701,12 @@ public class RedisFeatureStore implements FeatureStore {
         }
   
         if (cache != null) {
+          itemChanged(kind, newItem.getKey());
           cache.invalidate(new CacheKey(kind, newItem.getKey()));
         }
+        if (allCache != null) {
+          patchSnapshot(kind, newItem);
+        }
         return;
       } finally {
         if (jedis != null) {
@@ -269,6 +717,108 @@ public class RedisFeatureStore implements FeatureStore {
     }
   }
 
+  private <T extends VersionedData> void updateItemWithScript(VersionedDataKind<T> kind, T newItem) {
+    String baseKey = itemsKey(kind);
+    List<String> keys = Collections.singletonList(baseKey);
+    List<String> args = new ArrayList<>(5);
+    args.add(newItem.getKey());
+    args.add(String.valueOf(newItem.getVersion()));
+    args.add(gson.toJson(newItem));
+    if (invalidationChannel != null) {
+      args.add(invalidationChannel);
+      args.add(gson.toJson(new InvalidationMessage(instanceId, kind.getNamespace(), newItem.getKey())));
+    }
+    long existingVersion;
+    try (Jedis jedis = pool.getResource()) {
+      if (updateListener != null) {
+        updateListener.aboutToUpdate(baseKey, newItem.getKey());
+      }
+      Object result;
+      try {
+        result = jedis.evalsha(UPDATE_SCRIPT_SHA, keys, args);
+      } catch (JedisNoScriptException e) {
+        // The server hasn't seen the script since it started; EVAL runs it and caches it for next time
+        result = jedis.eval(UPDATE_SCRIPT, keys, args);
+      }
+      existingVersion = (Long)result;
+    }
+
+    if (cache != null) {
+      itemChanged(kind, newItem.getKey());
+      cache.invalidate(new CacheKey(kind, newItem.getKey()));
+    }
+    if (existingVersion < 0) {
+      if (allCache != null) {
+        patchSnapshot(kind, newItem);
+      }
+      return;
+    }
+    logger.debug("Attempted to {} key: {} version: {}" +
+        " with a version that is the same or older: {} in \"{}\"",
+        newItem.isDeleted() ? "delete" : "update",
+        newItem.getKey(), existingVersion, newItem.getVersion(), kind.getNamespace());
+    if (allCache == null) {
+      return;
+    }
+    // The existing item wasn't returned, to save decoding it. If it has the same version as ours, it is
+    // presumably the same item, written by another client; if it is newer, and the snapshot doesn't
+    // have it, the snapshot is out of date and has to be discarded.
+    if (existingVersion == newItem.getVersion()) {
+      patchSnapshot(kind, newItem);
+    } else {
+      KindItems snapshot = allCache.getIfPresent(kind);
+      VersionedData snapshotItem = snapshot == null ? null : snapshot.allItems.get(newItem.getKey());
+      if (snapshot != null && (snapshotItem == null || snapshotItem.getVersion() < existingVersion)) {
+        allCache.invalidate(kind);
+      }
+    }
+  }
+
+  // Discards all of the cached items of a kind
+  private void invalidateKind(VersionedDataKind<?> kind) {
+    if (cache == null) {
+      return; // allCache only exists if cache does
+    }
+    kindChanged(kind);
+    allCache.invalidate(kind);
+    for (Iterator<CacheKey> it = cache.asMap().keySet().iterator(); it.hasNext(); ) {
+      if (it.next().kind.getNamespace().equals(kind.getNamespace())) {
+        it.remove();
+      }
+    }
+  }
+
+  // Adds a message to the transaction, if there is an invalidation channel, so that other stores find out
+  // about the change as soon as it is made. A null key means all of the items of the kind.
+  private void publishChange(Transaction tx, VersionedDataKind<?> kind, String key) {
+    if (invalidationChannel != null) {
+      tx.publish(invalidationChannel, gson.toJson(new InvalidationMessage(instanceId, kind.getNamespace(), key)));
+    }
+  }
+
+  // Replaces the item in the cached snapshot of its kind, if there is one and it doesn't already have a
+  // newer version of the item. The snapshot is replaced rather than modified, because readers may be
+  // iterating over it.
+  private void patchSnapshot(VersionedDataKind<?> kind, VersionedData item) {
+    kind.compile(item);
+    ConcurrentMap<VersionedDataKind<?>, KindItems> snapshots = allCache.asMap();
+    while (true) {
+      KindItems oldItems = snapshots.get(kind);
+      if (oldItems == null) {
+        return;
+      }
+      VersionedData oldItem = oldItems.allItems.get(item.getKey());
+      if (oldItem != null && oldItem.getVersion() >= item.getVersion()) {
+        return;
+      }
+      Map<String, VersionedData> newItems = new HashMap<>(oldItems.allItems);
+      newItems.put(item.getKey(), item);
+      if (snapshots.replace(kind, oldItems, new KindItems(newItems))) {
+        return;
+      }
+    }
+  }
+
   @Override
   public boolean initialized() {
     // The LoadingCache takes care of both coalescing multiple simultaneous requests and memoizing
@@ -285,6 +835,9 @@ public class RedisFeatureStore implements FeatureStore {
   public void close() throws IOException {
     logger.info("Closing LaunchDarkly RedisFeatureStore");
     try {
+      if (invalidationSubscriber != null) {
+        invalidationSubscriber.close();
+      }
       if (executorService != null) {
         executorService.shutdownNow();
       }
@@ -326,10 +879,206 @@ public class RedisFeatureStore implements FeatureStore {
     return gson.fromJson(json, kind.getItemClass());
   }
 
+  private KindItems getAllRedisAndCompile(VersionedDataKind<?> kind, Jedis jedis) {
+    Map<String, String> allJson = jedis.hgetAll(itemsKey(kind));
+    Map<String, VersionedData> items = new HashMap<>();
+    for (Map.Entry<String, String> entry : allJson.entrySet()) {
+      VersionedData item = gson.fromJson(entry.getValue(), kind.getItemClass());
+      kind.compile(item);
+      items.put(entry.getKey(), item);
+    }
+    return new KindItems(items);
+  }
+
+  private Map<String, VersionedData> getManyRedisAndCompile(VersionedDataKind<?> kind, Collection<String> keys,
+      Jedis jedis) {
+    Map<String, VersionedData> items = new HashMap<>();
+    if (keys.isEmpty()) {
+      return items; // HMGET needs at least one field
+    }
+    String[] fields = keys.toArray(new String[keys.size()]);
+    List<String> values = jedis.hmget(itemsKey(kind), fields);
+    for (int i = 0; i < fields.length; i++) {
+      String json = values.get(i);
+      if (json != null) {
+        VersionedData item = gson.fromJson(json, kind.getItemClass());
+        kind.compile(item);
+        items.put(fields[i], item);
+      }
+    }
+    return items;
+  }
+
+  // Used for reads that will be evaluated, as opposed to the version check in updateItemWithVersioning
+  private <T extends VersionedData> T getRedisAndCompile(VersionedDataKind<T> kind, String key, Jedis jedis) {
+    T item = getRedisEvenIfDeleted(kind, key, jedis);
+    if (item != null) {
+      kind.compile(item);
+    }
+    return item;
+  }
+
   private static JedisPoolConfig getPoolConfig() {
     return new JedisPoolConfig();
   }
 
+  /**
+   * The items of one kind. Instances are never modified after construction.
+   */
+  private static final class KindItems {
+    final Map<String, VersionedData> allItems; // including placeholders for deleted items
+    final Map<String, VersionedData> liveItems;
+
+    KindItems(Map<String, VersionedData> items) {
+      Map<String, VersionedData> live = new HashMap<>();
+      for (Map.Entry<String, VersionedData> entry: items.entrySet()) {
+        if (!entry.getValue().isDeleted()) {
+          live.put(entry.getKey(), entry.getValue());
+        }
+      }
+      this.allItems = Collections.unmodifiableMap(items);
+      this.liveItems = Collections.unmodifiableMap(live);
+    }
+  }
+
+  /**
+   * The message that a store publishes on the invalidation channel when it changes an item, or all of
+   * the items of a kind if {@code key} is null.
+   */
+  private static final class InvalidationMessage {
+    final String sender;
+    final String kind;
+    final String key;
+
+    InvalidationMessage(String sender, String kind, String key) {
+      this.sender = sender;
+      this.kind = kind;
+      this.key = key;
+    }
+  }
+
+  /**
+   * Listens on the invalidation channel, on its own thread and its own connection, since a subscribed
+   * connection can't be used for anything else. It keeps resubscribing until the store is closed.
+   */
+  private final class InvalidationSubscriber extends JedisPubSub implements Runnable {
+    private final URI uri;
+    private final int connectTimeout;
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile long resubscribeDelayMillis = MIN_RESUBSCRIBE_DELAY_MILLIS;
+
+    InvalidationSubscriber(URI uri, int connectTimeout) {
+      this.uri = uri;
+      this.connectTimeout = connectTimeout;
+      this.thread = new Thread(this, INVALIDATION_THREAD_NAME);
+      thread.setDaemon(true);
+    }
+
+    void start() {
+      thread.start();
+    }
+
+    void close() {
+      closed = true;
+      if (isSubscribed()) {
+        unsubscribe();
+      }
+      thread.interrupt();
+    }
+
+    @Override
+    public void run() {
+      while (!closed) {
+        // the socket timeout is zero, because there may be no messages for a long time
+        try (Jedis jedis = new Jedis(uri, connectTimeout, 0)) {
+          jedis.subscribe(this, invalidationChannel);
+        } catch (RuntimeException e) {
+          // any failure, not only a lost connection: giving up would leave the cache stale until it expires
+          if (closed) {
+            return;
+          }
+          long delay = resubscribeDelayMillis;
+          logger.warn("Lost subscription to Redis channel \"{}\"; retrying in {} ms: {}", invalidationChannel,
+              delay, e.toString());
+          resubscribeDelayMillis = Math.min(delay * 2, MAX_RESUBSCRIBE_DELAY_MILLIS);
+          try {
+            Thread.sleep(delay);
+          } catch (InterruptedException ie) {
+            return;
+          }
+        }
+      }
+    }
+
+    @Override
+    public void onSubscribe(String channel, int subscribedChannels) {
+      if (closed) {
+        unsubscribe();
+        return;
+      }
+      resubscribeDelayMillis = MIN_RESUBSCRIBE_DELAY_MILLIS;
+      // Anything could have changed while we weren't subscribed
+      for (VersionedDataKind<?> kind: VersionedDataKind.ALL) {
+        kindChanged(kind);
+      }
+      cache.invalidateAll();
+      allCache.invalidateAll();
+    }
+
+    @Override
+    public void onMessage(String channel, String message) {
+      InvalidationMessage m;
+      try {
+        m = gson.fromJson(message, InvalidationMessage.class);
+      } catch (JsonParseException e) {
+        logger.warn("Ignoring malformed message on Redis channel \"{}\": {}", channel, e.toString());
+        return;
+      }
+      if (m == null || m.kind == null || instanceId.equals(m.sender)) {
+        return;
+      }
+      for (VersionedDataKind<?> kind: VersionedDataKind.ALL) {
+        if (kind.getNamespace().equals(m.kind)) {
+          try {
+            if (m.key == null) {
+              invalidateKind(kind);
+            } else {
+              invalidateItem(kind, m.key);
+            }
+          } catch (RuntimeException e) {
+            logger.warn("Unable to apply change to {} in \"{}\"; discarding cached items: {}", m.key,
+                kind.getNamespace(), e.toString());
+            logger.debug(e.toString(), e);
+            invalidateKind(kind);
+          }
+        }
+      }
+    }
+
+    // The individual item is just discarded, but rather than discarding the whole snapshot, the new
+    // version of the item is read and patched into it. If the snapshot is still being loaded, it isn't
+    // there to patch, but the loader sees the new generation and reads everything again.
+    private void invalidateItem(VersionedDataKind<?> kind, String key) {
+      itemChanged(kind, key);
+      cache.invalidate(new CacheKey(kind, key));
+      if (allCache.getIfPresent(kind) == null) {
+        return;
+      }
+      VersionedData item = null;
+      try (Jedis jedis = pool.getResource()) {
+        item = getRedisAndCompile(kind, key, jedis);
+      } catch (JedisException e) {
+        logger.warn("Unable to read updated item {} in \"{}\": {}", key, kind.getNamespace(), e.toString());
+      }
+      if (item == null) {
+        allCache.invalidate(kind);
+      } else {
+        patchSnapshot(kind, item);
+      }
+    }
+  }
+
   static interface UpdateListener {
     void aboutToUpdate(String baseKey, String itemKey);
   }
@@ -338,4 +1087,13 @@ public class RedisFeatureStore implements FeatureStore {
   void setUpdateListener(UpdateListener updateListener) {
     this.updateListener = updateListener;
   }
+
+  static interface LoadListener {
+    void loadedFromRedis(VersionedDataKind<?> kind);
+  }
+
+  @VisibleForTesting
+  void setLoadListener(LoadListener loadListener) {
+    this.loadListener = loadListener;
+  }
 }
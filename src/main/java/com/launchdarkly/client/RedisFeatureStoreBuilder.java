@@ -52,6 +52,9 @@ public final class RedisFeatureStoreBuilder implements FeatureStoreFactory {
   int socketTimeout = Protocol.DEFAULT_TIMEOUT;
   long cacheTimeSecs = DEFAULT_CACHE_TIME_SECONDS;
   JedisPoolConfig poolConfig = null;
+  String invalidationChannel = null;
+  boolean scriptedUpdates = false;
+  boolean stagedInit = false;
 
   // These constructors are called only from Implementations
   RedisFeatureStoreBuilder() {
@@ -165,6 +168,66 @@ public final class RedisFeatureStoreBuilder implements FeatureStoreFactory {
     return this;
   }
 
+  /**
+   * Optionally keeps the local cache up to date by means of a Redis pub/sub channel, so that a long
+   * {@link #cacheTime(long, TimeUnit)} does not mean serving out-of-date flags.
+   *
+   * Every store that has the same channel publishes a message on it whenever it changes the data in Redis,
+   * and subscribes to it so that when another store publishes a change, it discards or reloads only the
+   * cached items that changed. This only works if all of the processes that write to the same Redis
+   * data use a {@link RedisFeatureStore} with the same channel; changes made by anything else are only
+   * seen when the cache time expires. If the subscription is interrupted, the whole cache is discarded
+   * once it has been restored, since changes may have been missed in the meantime.
+   *
+   * If the cache time is set to 0, the store still publishes its own changes on the channel, so that other
+   * stores can see them, but it does not subscribe, since it has no cache to keep up to date.
+   *
+   * @param channel the name of the channel, or null for no channel (the default)
+   * @return the builder
+   * @since 4.4.0
+   */
+  public RedisFeatureStoreBuilder invalidationChannel(String channel) {
+    this.invalidationChannel = channel;
+    return this;
+  }
+
+  /**
+   * Optionally makes updates compare versions on the Redis server, by means of a Lua script, rather than
+   * in the client.
+   *
+   * By default, an update reads the existing item, checks its version, and writes the new item in a
+   * transaction that fails if another client changed the data in the meantime, retrying until it
+   * succeeds. When many clients are updating the same data, that takes several round trips. With this
+   * enabled, an update is a single {@code EVALSHA} call that does the version check and the write
+   * atomically. This requires Redis 2.6 or later.
+   *
+   * @param enabled true to update items with a script
+   * @return the builder
+   * @since 4.4.0
+   */
+  public RedisFeatureStoreBuilder scriptedUpdates(boolean enabled) {
+    this.scriptedUpdates = enabled;
+    return this;
+  }
+
+  /**
+   * Optionally makes {@link RedisFeatureStore#init(java.util.Map)} write the new data without holding up
+   * other Redis clients.
+   *
+   * By default, the whole data set is replaced by a single transaction, which Redis executes without
+   * running any other commands, however long it takes. With this enabled, the data is first written to a
+   * separate key in pipelined batches, which other commands can run in between, and then swapped in with
+   * a {@code RENAME}. Readers see either the old data or the new data, as before.
+   *
+   * @param enabled true to write the data in batches before swapping it in
+   * @return the builder
+   * @since 4.4.0
+   */
+  public RedisFeatureStoreBuilder stagedInit(boolean enabled) {
+    this.stagedInit = enabled;
+    return this;
+  }
+
   /**
    * Optional override if you wish to specify your own configuration to the underlying Jedis pool.
    *
@@ -0,0 +1,149 @@
+package com.launchdarkly.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, lock-free queue for any number of producer threads and a single consumer thread. The
+ * slots are allocated up front and reused, so adding an item allocates nothing.
+ * <p>
+ * Each slot has a sequence number that says whether it is free for the producer that claims position
+ * {@code n}, or holds the item for the consumer reading position {@code n}. Producers claim positions
+ * with a compare-and-set on the tail counter. Only the consumer advances the head, so it needs no
+ * atomic operations. A consumer that finds the queue empty parks until a producer wakes it.
+ *
+ * @param <T> the item type
+ */
+final class RingBuffer<T> {
+  private static final int SPINS_BEFORE_PARKING = 100;
+
+  private final Object[] items;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  private long head; // accessed only by the consumer
+  private final AtomicReference<Thread> waitingConsumer = new AtomicReference<>();
+
+  /**
+   * Creates a ring buffer.
+   * @param minCapacity the minimum number of items it can hold; it is rounded up to a power of two
+   */
+  RingBuffer(int minCapacity) {
+    int capacity = Integer.highestOneBit(Math.max(minCapacity, 2) - 1) << 1;
+    items = new Object[capacity];
+    sequences = new AtomicLongArray(capacity);
+    mask = capacity - 1;
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  int capacity() {
+    return items.length;
+  }
+
+  /**
+   * Adds an item if there is room. This may be called from any thread.
+   * @param item the item; must not be null
+   * @return true if the item was added, false if the buffer was full
+   */
+  boolean offer(T item) {
+    long pos = tail.get();
+    while (true) {
+      int index = (int)pos & mask;
+      long diff = sequences.get(index) - pos;
+      if (diff == 0) {
+        if (tail.compareAndSet(pos, pos + 1)) {
+          items[index] = item;
+          // This volatile write publishes the item, and must come before the read of waitingConsumer
+          // so that a consumer that is about to park either sees the item or is unparked.
+          sequences.set(index, pos + 1);
+          Thread consumer = waitingConsumer.get();
+          // only the producer that clears the field wakes the consumer, so a burst of items does not
+          // cost a system call per item
+          if (consumer != null && waitingConsumer.compareAndSet(consumer, null)) {
+            LockSupport.unpark(consumer);
+          }
+          return true;
+        }
+        pos = tail.get();
+      } else if (diff < 0) {
+        return false; // the consumer has not yet taken the item that was in this slot one lap ago
+      } else {
+        pos = tail.get(); // another producer claimed this position first
+      }
+    }
+  }
+
+  /**
+   * Removes the oldest item, if any. This must only be called from the consumer thread.
+   * @return the item, or null if the buffer is empty
+   */
+  @SuppressWarnings("unchecked")
+  T poll() {
+    int index = (int)head & mask;
+    if (sequences.get(index) != head + 1) {
+      return null;
+    }
+    T item = (T)items[index];
+    items[index] = null;
+    sequences.lazySet(index, head + items.length); // free for the producer one lap from now
+    head++;
+    return item;
+  }
+
+  /**
+   * Removes the oldest item, waiting until there is one. This must only be called from the consumer
+   * thread.
+   * @return the item
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  T take() throws InterruptedException {
+    return take(Long.MAX_VALUE);
+  }
+
+  /**
+   * Removes the oldest item, waiting until there is one or until the timeout expires. This must only
+   * be called from the consumer thread.
+   * @param timeoutNanos the maximum time to wait
+   * @return the item, or null if the timeout expired
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  T take(long timeoutNanos) throws InterruptedException {
+    for (int i = 0; i < SPINS_BEFORE_PARKING; i++) {
+      T item = poll();
+      if (item != null) {
+        return item;
+      }
+    }
+    long deadline = timeoutNanos == Long.MAX_VALUE ? 0 : System.nanoTime() + timeoutNanos;
+    Thread current = Thread.currentThread();
+    try {
+      while (true) {
+        waitingConsumer.set(current);
+        T item = poll();
+        if (item != null) {
+          return item;
+        }
+        // A producer that adds an item after the poll above sees waitingConsumer and unparks us, so
+        // with no deadline there is nothing to wake up for until then
+        if (deadline == 0) {
+          LockSupport.park(this);
+        } else {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            return null;
+          }
+          LockSupport.parkNanos(this, remaining);
+        }
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+      }
+    } finally {
+      waitingConsumer.set(null);
+    }
+  }
+}
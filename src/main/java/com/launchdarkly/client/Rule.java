@@ -26,12 +26,7 @@ class Rule extends VariationOrRollout {
     return id;
   }
   
-  boolean matchesUser(FeatureStore store, LDUser user) {
-    for (Clause clause : clauses) {
-      if (!clause.matchesUser(store, user)) {
-        return false;
-      }
-    }
-    return true;
+  List<Clause> getClauses() {
+    return clauses;
   }
 }
\ No newline at end of file
@@ -19,6 +19,7 @@ class Segment implements VersionedData {
   private List<SegmentRule> rules;
   private int version;
   private boolean deleted;
+  private transient volatile CompiledSegment compiled;
 
   static Segment fromJson(LDConfig config, String json) {
     return config.gson.fromJson(json, Segment.class);
@@ -70,22 +71,22 @@ class Segment implements VersionedData {
   }
   
   public boolean matchesUser(LDUser user) {
-    String key = user.getKeyAsString();
-    if (key == null) {
-      return false;
-    }
-    if (included.contains(key)) {
-      return true;
-    }
-    if (excluded.contains(key)) {
-      return false;
-    }
-    for (SegmentRule rule: rules) {
-      if (rule.matchUser(user, key, salt)) {
-        return true;
-      }
+    return getCompiled().matchesUser(user);
+  }
+  
+  /**
+   * Returns the evaluation form of this segment, building it on first use. Feature stores call this
+   * when they receive a segment, so that it is normally already built by the time it is evaluated.
+   * @return the compiled segment
+   */
+  CompiledSegment getCompiled() {
+    CompiledSegment c = compiled;
+    if (c == null) {
+      // If two threads race to do this, they will build equivalent objects, so it doesn't matter which one wins
+      c = new CompiledSegment(this);
+      compiled = c;
     }
-    return false;
+    return c;
   }
   
   public static class Builder {
@@ -0,0 +1,108 @@
+package com.launchdarkly.client;
+
+import com.launchdarkly.client.EventSummarizer.EventSummary;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Accumulates summary counters on the threads that generate feature events, so that an event that
+ * contributes only to the summary does not have to be passed to the event processor's own thread.
+ * The counters are split into several independently locked stripes, chosen by thread, so that
+ * threads rarely contend with each other; the event processor merges and resets them at flush time.
+ */
+final class StripedEventSummarizer {
+  private final Stripe[] stripes;
+  private final int mask;
+  // set when counters are added to empty stripes, so the event processor can tell that there is
+  // something to flush without looking at every stripe
+  private final AtomicBoolean pending = new AtomicBoolean(false);
+
+  StripedEventSummarizer() {
+    this(Runtime.getRuntime().availableProcessors() * 2);
+  }
+
+  StripedEventSummarizer(int minStripes) {
+    int count = Integer.highestOneBit(Math.max(minStripes, 2) - 1) << 1;
+    stripes = new Stripe[count];
+    for (int i = 0; i < count; i++) {
+      stripes[i] = new Stripe();
+    }
+    mask = count - 1;
+  }
+
+  /**
+   * Adds a feature event to the counters of the current thread's stripe.
+   * @param fe the event
+   * @return true if these are the first counters since the last {@link #drain()}
+   */
+  boolean summarizeEvent(Event.FeatureRequest fe) {
+    Stripe stripe = stripeForCurrentThread();
+    synchronized (stripe) {
+      stripe.summary.incrementCounter(fe.key, fe.variation, fe.version, fe.value, fe.defaultVal);
+      stripe.summary.noteTimestamp(fe.creationDate);
+    }
+    return markPending();
+  }
+
+  /**
+   * Adds counters that were accumulated elsewhere to the current thread's stripe.
+   * @param summary the summary to add; it is not modified
+   * @return true if these are the first counters since the last {@link #drain()}
+   */
+  boolean summarizeAll(EventSummary summary) {
+    Stripe stripe = stripeForCurrentThread();
+    synchronized (stripe) {
+      stripe.summary.add(summary);
+    }
+    return markPending();
+  }
+
+  /**
+   * Returns true if any counters have been added since the last {@link #drain()}.
+   * @return true if there are counters
+   */
+  boolean isPending() {
+    return pending.get();
+  }
+
+  /**
+   * Returns the combined counters of all stripes, and resets them.
+   * @return the summary state
+   */
+  EventSummary drain() {
+    // this is cleared first, so that counters added while draining are never overlooked
+    pending.set(false);
+    EventSummary result = null;
+    for (Stripe stripe: stripes) {
+      EventSummary taken;
+      // the stripe's summary is swapped for an empty one, so it can be merged without holding the lock
+      synchronized (stripe) {
+        if (stripe.summary.isEmpty()) {
+          continue;
+        }
+        taken = stripe.summary;
+        stripe.summary = new EventSummary();
+      }
+      if (result == null) {
+        result = taken;
+      } else {
+        result.add(taken);
+      }
+    }
+    return result == null ? new EventSummary() : result;
+  }
+
+  // The flag is read before trying to set it, so that once it is set this costs no more than a volatile read
+  private boolean markPending() {
+    return !pending.get() && pending.compareAndSet(false, true);
+  }
+
+  private Stripe stripeForCurrentThread() {
+    long id = Thread.currentThread().getId();
+    return stripes[(int)(id ^ (id >>> 16)) & mask];
+  }
+
+  private static final class Stripe {
+    EventSummary summary = new EventSummary();
+  }
+}
@@ -61,4 +61,20 @@ enum UserAttribute {
    * @return
    */
   abstract JsonElement get(LDUser user);
+  
+  /**
+   * Finds the built-in attribute with the given name.
+   *
+   * @param name an attribute name
+   * @return the attribute, or null if the name refers to a custom attribute
+   */
+  static UserAttribute forName(String name) {
+    // Don't use Enum.valueOf because we don't want to trigger unnecessary exceptions
+    for (UserAttribute builtIn: values()) {
+      if (builtIn.name().equals(name)) {
+        return builtIn;
+      }
+    }
+    return null;
+  }
 }
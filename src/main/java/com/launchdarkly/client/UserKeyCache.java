@@ -0,0 +1,177 @@
+package com.launchdarkly.client;
+
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Remembers which user keys the event processor has recently sent user details for, so that it does
+ * not send them again. Any thread can check for a key, without locking; keys are added, and expired,
+ * by the event processor's own thread.
+ * <p>
+ * The keys themselves are not stored. Each entry is a single {@code long}: the upper half is a
+ * fingerprint of a 64-bit hash of the key, and the lower half is the time at which the entry expires,
+ * in seconds since the cache was created. The entries are in buckets of eight adjacent slots, and
+ * each key has two possible buckets, chosen by the hash. A key that is in neither of them goes into an
+ * empty slot, or else replaces the entry that will expire soonest, which is also the one that was
+ * added longest ago. Having two choices means that hardly any keys are evicted before the cache is
+ * full; memory use is fixed at no more than 32 bytes per key of capacity, and eviction approximates
+ * least-recently-added order.
+ * <p>
+ * Reading the clock costs more than the rest of a lookup, so lookups don't check expiry times.
+ * Instead, {@link #removeExpired()} clears expired entries; the event processor calls it whenever it
+ * flushes, and it only looks at the entries every so often, so a key may be remembered for up to a
+ * sixteenth of its time to live, or one flush interval, longer than it should be.
+ * <p>
+ * The hash is computed from the key's characters, rather than from {@link String#hashCode()}, which
+ * only has 32 bits and is easy to collide: "Aa" and "BB", for instance, have the same hash code. A new
+ * key is mistaken for a known one only if its 32-bit fingerprint matches one of the 16 entries in its
+ * two buckets, so that happens for fewer than one in 250 million new keys; the user's details are then
+ * not sent until the other key expires.
+ */
+final class UserKeyCache {
+  private static final int BUCKET_SIZE = 8;
+  private static final long FINGERPRINT_MASK = ~0xffffffffL;
+
+  private final AtomicLongArray entries;
+  private final int bucketMask;
+  private final long ttlSeconds;
+  private final long sweepIntervalSeconds;
+  private final Ticker ticker;
+  private final long startNanos;
+  // These are only used on the event processor's thread
+  private long now;
+  private long nextSweep;
+
+  /**
+   * Creates an empty cache.
+   * @param capacity the number of keys to remember; the table has room for at least twice this many,
+   * rounded up to a power of two, unless it is zero, in which case no keys are remembered
+   * @param ttlSeconds how long a key is remembered after it is added
+   */
+  UserKeyCache(int capacity, int ttlSeconds) {
+    this(capacity, ttlSeconds, Ticker.systemTicker());
+  }
+
+  UserKeyCache(int capacity, int ttlSeconds, Ticker ticker) {
+    int buckets = capacity <= 0 ? 0 : 1;
+    // twice as many slots as keys, so that few buckets overflow before the cache is full
+    while (buckets > 0 && buckets * BUCKET_SIZE < capacity * 2L) {
+      buckets *= 2;
+    }
+    this.entries = new AtomicLongArray(buckets * BUCKET_SIZE);
+    this.bucketMask = buckets - 1;
+    this.ttlSeconds = Math.max(ttlSeconds, 1);
+    this.sweepIntervalSeconds = Math.max(this.ttlSeconds / 16, 1);
+    this.ticker = ticker;
+    this.startNanos = ticker.read();
+    this.nextSweep = sweepIntervalSeconds;
+  }
+
+  /**
+   * Returns true if the key has been added, and has not been expired or evicted since then.
+   * @param key a user key
+   * @return true if the key is known
+   */
+  boolean contains(String key) {
+    if (bucketMask < 0) {
+      return false;
+    }
+    long hash = hash(key);
+    long fingerprint = fingerprint(hash);
+    return indexOf(firstBucket(hash), fingerprint) >= 0 || indexOf(secondBucket(hash), fingerprint) >= 0;
+  }
+
+  /**
+   * Adds a key, unless it is already known. An existing entry keeps its original expiry time, so that a
+   * key that is in constant use is still forgotten, and its user details sent again, once in a while.
+   * @param key a user key
+   * @return true if the key was added, false if it was already known
+   */
+  boolean add(String key) {
+    if (bucketMask < 0) {
+      return true;
+    }
+    long hash = hash(key);
+    long fingerprint = fingerprint(hash);
+    int first = firstBucket(hash), second = secondBucket(hash);
+    if (indexOf(first, fingerprint) >= 0 || indexOf(second, fingerprint) >= 0) {
+      return false;
+    }
+    // an empty slot counts as having expired at time zero, so it is always preferred
+    int victim = oldestIn(second, oldestIn(first, first));
+    entries.set(victim, fingerprint | (now + ttlSeconds));
+    return true;
+  }
+
+  /**
+   * Clears the entries that have expired, if it has been long enough since this was last done.
+   */
+  void removeExpired() {
+    now = TimeUnit.NANOSECONDS.toSeconds(ticker.read() - startNanos);
+    if (now < nextSweep) {
+      return;
+    }
+    nextSweep = now + sweepIntervalSeconds;
+    for (int i = 0; i < entries.length(); i++) {
+      long entry = entries.get(i);
+      if (entry != 0 && expiry(entry) <= now) {
+        entries.set(i, 0);
+      }
+    }
+  }
+
+  private int indexOf(int start, long fingerprint) {
+    for (int i = start; i < start + BUCKET_SIZE; i++) {
+      if ((entries.get(i) & FINGERPRINT_MASK) == fingerprint) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int oldestIn(int start, int oldest) {
+    for (int i = start; i < start + BUCKET_SIZE; i++) {
+      if (expiry(entries.get(i)) < expiry(entries.get(oldest))) {
+        oldest = i;
+      }
+    }
+    return oldest;
+  }
+
+  private int firstBucket(long hash) {
+    return ((int)hash & bucketMask) * BUCKET_SIZE;
+  }
+
+  private int secondBucket(long hash) {
+    return ((int)(hash >>> 16) & bucketMask) * BUCKET_SIZE;
+  }
+
+  // The fingerprint comes from the other half of the hash from the bucket indexes, and is never zero,
+  // so that an empty slot never matches
+  private static long fingerprint(long hash) {
+    long fingerprint = hash & FINGERPRINT_MASK;
+    return fingerprint == 0 ? 1L << 32 : fingerprint;
+  }
+
+  private static long expiry(long entry) {
+    return entry & ~FINGERPRINT_MASK;
+  }
+
+  // A 64-bit FNV-1a hash of the characters, followed by the MurmurHash3 finalizer, so that both the
+  // bucket indexes and the fingerprint depend on every character
+  static long hash(String key) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < key.length(); i++) {
+      h ^= key.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
@@ -0,0 +1,22 @@
+package com.launchdarkly.client;
+
+import com.google.gson.JsonElement;
+
+/**
+ * Receives the results of
+ * {@link LDClientInterface#jsonVariationForUsers(String, Iterable, JsonElement, java.util.concurrent.Executor, UserVariationHandler, BatchEvaluationOption...)}
+ * as each user is evaluated.
+ * <p>
+ * Users are evaluated in parallel, so implementations must be thread-safe, and results are not
+ * delivered in any particular order.
+ * @since 4.4.0
+ */
+public interface UserVariationHandler {
+  /**
+   * Called once for each user with the result of evaluating the flag for that user.
+   *
+   * @param user the user that was evaluated
+   * @param result the evaluation result; its value is the default value if the flag could not be evaluated
+   */
+  void handleVariation(LDUser user, EvaluationDetail<JsonElement> result);
+}
@@ -4,6 +4,10 @@ import com.google.gson.JsonPrimitive;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 import okhttp3.Request;
 
 class Util {
@@ -27,6 +31,29 @@ class Util {
     }
   }
   
+  /**
+   * Retrieves several objects from a feature store, using {@link MultiGetFeatureStore#getMany} if the
+   * store supports it, or otherwise one {@link FeatureStore#get} per key.
+   * @param store the feature store
+   * @param kind the kind of objects to get
+   * @param keys the keys to look up
+   * @return a map of keys to objects, omitting any that were not found
+   */
+  static <T extends VersionedData> Map<String, T> getMany(FeatureStore store, VersionedDataKind<T> kind,
+      Collection<String> keys) {
+    if (store instanceof MultiGetFeatureStore) {
+      return ((MultiGetFeatureStore)store).getMany(kind, keys);
+    }
+    Map<String, T> items = new HashMap<>();
+    for (String key: keys) {
+      T item = store.get(kind, key);
+      if (item != null) {
+        items.put(key, item);
+      }
+    }
+    return items;
+  }
+  
   static Request.Builder getRequestBuilder(String sdkKey) {
     return new Request.Builder()
         .addHeader("Authorization", sdkKey)
@@ -1,9 +1,13 @@
 package com.launchdarkly.client;
 
 
+import com.google.common.base.Charsets;
 import com.google.gson.JsonElement;
-import org.apache.commons.codec.digest.DigestUtils;
 
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -13,6 +17,13 @@ import java.util.List;
 class VariationOrRollout {
   private static final float long_scale = (float) 0xFFFFFFFFFFFFFFFL;
 
+  private static final ThreadLocal<BucketHasher> bucketHashers = new ThreadLocal<BucketHasher>() {
+    @Override
+    protected BucketHasher initialValue() {
+      return new BucketHasher();
+    }
+  };
+
   private Integer variation;
   private Rollout rollout;
 
@@ -27,11 +38,17 @@ class VariationOrRollout {
   // Attempt to determine the variation index for a given user. Returns null if no index can be computed
   // due to internal inconsistency of the data (i.e. a malformed flag). 
   Integer variationIndexForUser(LDUser user, String key, String salt) {
+    return variationIndexForUser(user, bucketPrefix(key, salt));
+  }
+
+  // Same as variationIndexForUser(LDUser, String, String), with the flag key and salt already encoded
+  // by bucketPrefix
+  Integer variationIndexForUser(LDUser user, byte[] bucketPrefix) {
     if (variation != null) {
       return variation;
     } else if (rollout != null) {
       String bucketBy = rollout.bucketBy == null ? "key" : rollout.bucketBy;
-      float bucket = bucketUser(user, key, bucketBy, salt);
+      float bucket = bucketUser(user, bucketPrefix, bucketBy);
       float sum = 0F;
       for (WeightedVariation wv : rollout.variations) {
         sum += (float) wv.weight / 100000F;
@@ -43,15 +60,25 @@ class VariationOrRollout {
     return null;
   }
 
+  /**
+   * Returns the UTF-8 encoding of the part of the bucketing hash input that depends only on the flag
+   * or segment, so that it can be computed once rather than for every user.
+   */
+  static byte[] bucketPrefix(String key, String salt) {
+    return (key + "." + salt + ".").getBytes(Charsets.UTF_8);
+  }
+
   static float bucketUser(LDUser user, String key, String attr, String salt) {
+    return bucketUser(user, bucketPrefix(key, salt), attr);
+  }
+
+  // The bucket is the first 60 bits of SHA-1("key.salt.idHash"), as a fraction of the largest 60-bit value.
+  static float bucketUser(LDUser user, byte[] bucketPrefix, String attr) {
     JsonElement userValue = user.getValueForEvaluation(attr);
     String idHash = getBucketableStringValue(userValue);
     if (idHash != null) {
-      if (user.getSecondary() != null) {
-        idHash = idHash + "." + user.getSecondary().getAsString();
-      }
-      String hash = DigestUtils.sha1Hex(key + "." + salt + "." + idHash).substring(0, 15);
-      long longVal = Long.parseLong(hash, 16);
+      String secondary = user.getSecondary() == null ? null : user.getSecondary().getAsString();
+      long longVal = bucketHashers.get().hash(bucketPrefix, idHash, secondary);
       return (float) longVal / long_scale;
     }
     return 0F;
@@ -72,6 +99,77 @@ class VariationOrRollout {
     return null;
   }
   
+  /**
+   * Computes bucketing hashes without allocating: the digest, the buffer for the encoded user value,
+   * and the digest output are all reused. Each thread has its own instance.
+   */
+  private static final class BucketHasher {
+    private final MessageDigest digest;
+    private final byte[] hash = new byte[20];
+    private byte[] buffer = new byte[64];
+
+    BucketHasher() {
+      try {
+        digest = MessageDigest.getInstance("SHA-1");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(e); // every Java platform is required to support SHA-1
+      }
+    }
+
+    long hash(byte[] prefix, String idHash, String secondary) {
+      int length = encode(idHash, 0);
+      if (secondary != null) {
+        length = encode(".", length);
+        length = encode(secondary, length);
+      }
+      digest.update(prefix);
+      digest.update(buffer, 0, length);
+      try {
+        digest.digest(hash, 0, hash.length);
+      } catch (DigestException e) {
+        throw new IllegalStateException(e); // can't happen, the output buffer is big enough
+      }
+      // Equivalent to parsing the first 15 hex digits of the digest
+      long value = 0;
+      for (int i = 0; i < 7; i++) {
+        value = (value << 8) | (hash[i] & 0xFF);
+      }
+      return (value << 4) | ((hash[7] & 0xFF) >>> 4);
+    }
+
+    // Appends the UTF-8 encoding of s to the buffer, producing the same bytes as String.getBytes would
+    // (including its '?' substitution for unpaired surrogates), and returns the new length.
+    private int encode(String s, int pos) {
+      int maxLength = pos + s.length() * 3;
+      if (maxLength > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(maxLength, buffer.length * 2));
+      }
+      byte[] b = buffer;
+      for (int i = 0; i < s.length(); i++) {
+        char c = s.charAt(i);
+        if (c < 0x80) {
+          b[pos++] = (byte)c;
+        } else if (c < 0x800) {
+          b[pos++] = (byte)(0xC0 | (c >> 6));
+          b[pos++] = (byte)(0x80 | (c & 0x3F));
+        } else if (!Character.isSurrogate(c)) {
+          b[pos++] = (byte)(0xE0 | (c >> 12));
+          b[pos++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+          b[pos++] = (byte)(0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+          int cp = Character.toCodePoint(c, s.charAt(++i));
+          b[pos++] = (byte)(0xF0 | (cp >> 18));
+          b[pos++] = (byte)(0x80 | ((cp >> 12) & 0x3F));
+          b[pos++] = (byte)(0x80 | ((cp >> 6) & 0x3F));
+          b[pos++] = (byte)(0x80 | (cp & 0x3F));
+        } else {
+          b[pos++] = (byte)'?';
+        }
+      }
+      return pos;
+    }
+  }
+
   static class Rollout {
     private List<WeightedVariation> variations;
     private String bucketBy;
@@ -48,6 +48,14 @@ public abstract class VersionedDataKind<T extends VersionedData> {
     return path.startsWith(getStreamApiPath()) ? path.substring(getStreamApiPath().length()) : null;
   }
   
+  /**
+   * Used internally to build the evaluation form of an item when a feature store receives it, so
+   * that this is not done during evaluation. Does nothing for kinds that are not evaluated.
+   * @param item an item of this kind
+   */
+  void compile(VersionedData item) {
+  }
+  
   /**
    * The {@link VersionedDataKind} instance that describes feature flag data.
    */
@@ -68,6 +76,13 @@ public abstract class VersionedDataKind<T extends VersionedData> {
     public FeatureFlag makeDeletedItem(String key, int version) {
       return new FeatureFlagBuilder(key).deleted(true).version(version).build();
     }
+    
+    @Override
+    void compile(VersionedData item) {
+      if (item instanceof FeatureFlag && !item.isDeleted()) {
+        ((FeatureFlag)item).getCompiled();
+      }
+    }
   };
   
   /**
@@ -90,6 +105,13 @@ public abstract class VersionedDataKind<T extends VersionedData> {
     public Segment makeDeletedItem(String key, int version) {
       return new Segment.Builder(key).deleted(true).version(version).build();
     }
+    
+    @Override
+    void compile(VersionedData item) {
+      if (item instanceof Segment && !item.isDeleted()) {
+        ((Segment)item).getCompiled();
+      }
+    }
   };
   
   /**
@@ -1,5 +1,6 @@
 package com.launchdarkly.client;
 
+import com.google.common.io.CharStreams;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -10,10 +11,20 @@ import com.launchdarkly.client.DefaultEventProcessor.EventDispatcher;
 import org.hamcrest.Matcher;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 import static com.launchdarkly.client.TestUtil.hasJsonProperty;
 import static com.launchdarkly.client.TestUtil.isJsonArray;
@@ -43,6 +54,7 @@ public class DefaultEventProcessorTest {
 
   private final LDConfig.Builder configBuilder = new LDConfig.Builder();
   private final MockWebServer server = new MockWebServer();
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
   private DefaultEventProcessor ep;
   
   @Before
@@ -332,6 +344,98 @@ public class DefaultEventProcessorTest {
     ));
   }
   
+  @SuppressWarnings("unchecked")
+  @Test
+  public void eventsSentTogetherAreProcessedIndividually() throws Exception {
+    ep = new DefaultEventProcessor(SDK_KEY, configBuilder.build());
+    FeatureFlag flag1 = new FeatureFlagBuilder("flagkey1").version(11).trackEvents(true).build();
+    FeatureFlag flag2 = new FeatureFlagBuilder("flagkey2").version(22).build();
+    JsonElement value = new JsonPrimitive("value");
+    JsonElement default2 = new JsonPrimitive("default2");
+    Event.FeatureRequest fe1 = EventFactory.DEFAULT.newFeatureRequestEvent(flag1, user,
+        simpleEvaluation(1, value), null);
+    Event.FeatureRequest fe2 = EventFactory.DEFAULT.newFeatureRequestEvent(flag2, user,
+        simpleEvaluation(2, value), default2);
+    ep.sendEvents(Arrays.asList(fe1, fe2));
+    
+    JsonArray output = flushAndGetEvents(new MockResponse());
+    assertEquals(3, output.size());
+    assertThat(output, hasItems(
+        isIndexEvent(fe1, userJson),
+        isFeatureEvent(fe1, flag1, false, null),
+        allOf(
+            isSummaryEvent(fe1.creationDate, fe2.creationDate),
+            hasSummaryFlag(flag2.getKey(), default2,
+                hasItem(isSummaryEventCounter(flag2, 2, value, 1)))
+        )
+    ));
+  }
+  
+  @SuppressWarnings("unchecked")
+  @Test
+  public void untrackedEventsForKnownUserFromSeveralThreadsAreSummarized() throws Exception {
+    ep = new DefaultEventProcessor(SDK_KEY, configBuilder.build());
+    final FeatureFlag flag = new FeatureFlagBuilder("flagkey").version(11).build();
+    final JsonElement value = new JsonPrimitive("value");
+    final JsonElement defaultVal = new JsonPrimitive("default");
+    Event fe1 = EventFactory.DEFAULT.newFeatureRequestEvent(flag, user, simpleEvaluation(1, value), defaultVal);
+    ep.sendEvent(fe1);
+    JsonArray output1 = flushAndGetEvents(new MockResponse());
+    assertThat(output1, hasItem(isIndexEvent(fe1, userJson)));
+
+    final int threadCount = 4, eventsPerThread = 100;
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      Thread t = new Thread(new Runnable() {
+        public void run() {
+          for (int j = 0; j < eventsPerThread; j++) {
+            ep.sendEvent(EventFactory.DEFAULT.newFeatureRequestEvent(flag, user, simpleEvaluation(1, value), defaultVal));
+          }
+        }
+      });
+      threads.add(t);
+      t.start();
+    }
+    for (Thread t: threads) {
+      t.join();
+    }
+    
+    JsonArray output2 = flushAndGetEvents(new MockResponse());
+    assertEquals(1, output2.size());
+    assertThat(output2, hasItem(
+        allOf(
+            isSummaryEvent(),
+            hasSummaryFlag(flag.getKey(), defaultVal,
+                hasItem(isSummaryEventCounter(flag, 1, value, threadCount * eventsPerThread)))
+        )
+    ));
+  }
+  
+  @SuppressWarnings("unchecked")
+  @Test
+  public void summaryCountsAreAddedWithoutIndexEvents() throws Exception {
+    ep = new DefaultEventProcessor(SDK_KEY, configBuilder.build());
+    FeatureFlag flag = new FeatureFlagBuilder("flagkey").version(11).trackEvents(true).build();
+    JsonElement value = new JsonPrimitive("value");
+    JsonElement defaultVal = new JsonPrimitive("default");
+    Event fe1 = EventFactory.DEFAULT.newFeatureRequestEvent(flag, user, simpleEvaluation(1, value), defaultVal);
+    Event fe2 = EventFactory.DEFAULT.newFeatureRequestEvent(flag, user, simpleEvaluation(1, value), defaultVal);
+    EventSummarizer summarizer = new EventSummarizer();
+    summarizer.summarizeEvent(fe1);
+    summarizer.summarizeEvent(fe2);
+    ep.sendSummary(summarizer.snapshot());
+    
+    JsonArray output = flushAndGetEvents(new MockResponse());
+    assertEquals(1, output.size());
+    assertThat(output, hasItem(
+        allOf(
+            isSummaryEvent(fe1.creationDate, fe2.creationDate),
+            hasSummaryFlag(flag.getKey(), defaultVal,
+                hasItem(isSummaryEventCounter(flag, 1, value, 2)))
+        )
+    ));
+  }
+  
   @SuppressWarnings("unchecked")
   @Test
   public void customEventIsQueuedWithUser() throws Exception {
@@ -397,6 +501,186 @@ public class DefaultEventProcessorTest {
     assertEquals(0, server.getRequestCount());
   }
   
+  @Test
+  public void newestEventsAreDroppedWhenBufferIsFullByDefault() throws Exception {
+    ep = new DefaultEventProcessor(SDK_KEY, configBuilder.capacity(2).build());
+    JsonArray output = sendIdentifyEventsAndFlush(3);
+    assertEquals(2, output.size());
+    assertThat(output.get(0), hasJsonProperty("key", "user0"));
+    assertThat(output.get(1), hasJsonProperty("key", "user1"));
+    assertEquals(1, ep.getStatistics().getBufferFullDrops());
+  }
+  
+  @Test
+  public void oldestEventsAreDroppedWithDropOldestPolicy() throws Exception {
+    ep = new DefaultEventProcessor(SDK_KEY, configBuilder.capacity(2)
+        .eventOverflowPolicy(EventOverflowPolicy.dropOldest()).build());
+    JsonArray output = sendIdentifyEventsAndFlush(3);
+    assertEquals(2, output.size());
+    assertThat(output.get(0), hasJsonProperty("key", "user1"));
+    assertThat(output.get(1), hasJsonProperty("key", "user2"));
+    assertEquals(1, ep.getStatistics().getOldestEventDrops());
+    assertEquals(0, ep.getStatistics().getBufferFullDrops());
+  }
+  
+  @Test
+  public void eventsAreSampledWhenBufferIsHalfFullWithSamplingPolicy() throws Exception {
+    // with such a large interval, it is practically certain that no event will be sampled in
+    ep = new DefaultEventProcessor(SDK_KEY, configBuilder.capacity(10)
+        .eventOverflowPolicy(EventOverflowPolicy.sampleUnderPressure(Integer.MAX_VALUE)).build());
+    JsonArray output = sendIdentifyEventsAndFlush(10);
+    assertEquals(5, output.size());
+    assertEquals(5, ep.getStatistics().getSampledOutEvents());
+  }
+  
+  @Test
+  public void indexEventsAreNotDroppedWithDropOldestPolicy() throws Exception {
+    ep = new DefaultEventProcessor(SDK_KEY, configBuilder.capacity(2)
+        .eventOverflowPolicy(EventOverflowPolicy.dropOldest()).build());
+    JsonArray output = sendCustomEventsAndFlush(2);
+    assertEquals(2, output.size());
+    assertThat(output.get(0), hasJsonProperty("kind", "index"));
+    assertThat(output.get(1), hasJsonProperty("kind", "index"));
+  }
+  
+  @Test
+  public void indexEventsAreNotSampledOutWithSamplingPolicy() throws Exception {
+    ep = new DefaultEventProcessor(SDK_KEY, configBuilder.capacity(4)
+        .eventOverflowPolicy(EventOverflowPolicy.sampleUnderPressure(Integer.MAX_VALUE)).build());
+    JsonArray output = sendCustomEventsAndFlush(3);
+    int indexEvents = 0;
+    for (JsonElement event: output) {
+      if (event.getAsJsonObject().get("kind").getAsString().equals("index")) {
+        indexEvents++;
+      }
+    }
+    assertEquals(3, indexEvents);
+  }
+  
+  @Test
+  public void eventsAreSpilledToDiskAndDeliveredLater() throws Exception {
+    File dir = tempFolder.newFolder();
+    ep = new DefaultEventProcessor(SDK_KEY, configBuilder.capacity(2)
+        .eventOverflowPolicy(EventOverflowPolicy.spillToDisk(dir, 100000)).build());
+    for (int i = 0; i < 5; i++) {
+      ep.sendEvent(EventFactory.DEFAULT.newIdentifyEvent(new LDUser("user" + i)));
+      ep.waitUntilInactive();
+    }
+    assertEquals(4, ep.getStatistics().getSpilledEvents());
+    assertEquals(2, dir.list().length);
+    
+    // a flush sends the buffered events and the spilled payloads at the same time
+    List<String> keys = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      server.enqueue(new MockResponse());
+    }
+    ep.flush();
+    ep.waitUntilInactive();
+    RecordedRequest req;
+    while ((req = server.takeRequest(0, TimeUnit.MILLISECONDS)) != null) {
+      for (JsonElement e: gson.fromJson(req.getBody().readUtf8(), JsonElement.class).getAsJsonArray()) {
+        keys.add(e.getAsJsonObject().get("key").getAsString());
+      }
+    }
+    Collections.sort(keys);
+    assertEquals(Arrays.asList("user0", "user1", "user2", "user3", "user4"), keys);
+    assertEquals(0, dir.list().length);
+  }
+  
+  @Test
+  public void eventsAreDroppedWhenSpillDirectoryIsFull() throws Exception {
+    File dir = tempFolder.newFolder();
+    ep = new DefaultEventProcessor(SDK_KEY, configBuilder.capacity(2)
+        .eventOverflowPolicy(EventOverflowPolicy.spillToDisk(dir, 10)).build());
+    JsonArray output = sendIdentifyEventsAndFlush(3);
+    assertEquals(2, output.size());
+    assertEquals(0, ep.getStatistics().getSpilledEvents());
+    assertEquals(1, ep.getStatistics().getSpillFullDrops());
+  }
+  
+  @Test
+  public void undeliveredEventsAreStoredAndDeliveredByNextProcessor() throws Exception {
+    File dir = tempFolder.newFolder();
+    configBuilder.eventSpoolDirectory(dir);
+    ep = new DefaultEventProcessor(SDK_KEY, configBuilder.build());
+    Event e = EventFactory.DEFAULT.newIdentifyEvent(user);
+    ep.sendEvent(e);
+    server.enqueue(new MockResponse().setResponseCode(503));
+    server.enqueue(new MockResponse().setResponseCode(503));
+    ep.close();
+    assertEquals(1, ep.getStatistics().getSpooledPayloads());
+    server.takeRequest();
+    server.takeRequest();
+    
+    ep = new DefaultEventProcessor(SDK_KEY, configBuilder.build());
+    JsonArray output = flushAndGetEvents(new MockResponse());
+    assertThat(output, hasItems(isIdentifyEvent(e, userJson)));
+    ep.close();
+    assertEquals(0, dir.list().length);
+  }
+  
+  @Test
+  public void adaptiveFlushSendsEventsWhenHighWaterMarkIsReached() throws Exception {
+    ep = new DefaultEventProcessor(SDK_KEY, configBuilder.flushInterval(60).adaptiveFlush(true)
+        .flushHighWaterMark(2).build());
+    for (int n = 0; n < 2; n++) {
+      server.enqueue(new MockResponse());
+      ep.sendEvent(EventFactory.DEFAULT.newIdentifyEvent(new LDUser("user" + n + "a")));
+      ep.sendEvent(EventFactory.DEFAULT.newIdentifyEvent(new LDUser("user" + n + "b")));
+      RecordedRequest req = server.takeRequest(5, TimeUnit.SECONDS);
+      assertNotNull(req);
+      assertEquals(2, gson.fromJson(req.getBody().readUtf8(), JsonElement.class).getAsJsonArray().size());
+    }
+    ep.waitUntilInactive();
+    assertEquals(2, ep.getStatistics().getFlushCount());
+    assertThat(ep.getStatistics().getFlushesPerMinute() > 0, equalTo(true));
+  }
+  
+  @Test
+  public void adaptiveFlushSendsEventsWhenTheyHaveWaitedForFlushInterval() throws Exception {
+    ep = new DefaultEventProcessor(SDK_KEY, configBuilder.flushInterval(1).adaptiveFlush(true).build());
+    server.enqueue(new MockResponse());
+    Event e = EventFactory.DEFAULT.newIdentifyEvent(user);
+    ep.sendEvent(e);
+    RecordedRequest req = server.takeRequest(5, TimeUnit.SECONDS);
+    assertNotNull(req);
+    JsonArray output = gson.fromJson(req.getBody().readUtf8(), JsonElement.class).getAsJsonArray();
+    assertThat(output, hasItems(isIdentifyEvent(e, userJson)));
+  }
+  
+  @Test
+  public void adaptiveFlushSendsSummaryWhenItHasWaitedForFlushInterval() throws Exception {
+    ep = new DefaultEventProcessor(SDK_KEY, configBuilder.flushInterval(1).adaptiveFlush(true).build());
+    ep.sendEvent(EventFactory.DEFAULT.newIdentifyEvent(user));
+    flushAndGetEvents(new MockResponse());
+    
+    // the user is known now, so this event only goes into the summary counters
+    FeatureFlag flag = new FeatureFlagBuilder("flagkey").version(11).build();
+    JsonElement value = new JsonPrimitive("value");
+    ep.sendEvent(EventFactory.DEFAULT.newFeatureRequestEvent(flag, user,
+        simpleEvaluation(1, value), null));
+    server.enqueue(new MockResponse());
+    RecordedRequest req = server.takeRequest(5, TimeUnit.SECONDS);
+    assertNotNull(req);
+    JsonArray output = gson.fromJson(req.getBody().readUtf8(), JsonElement.class).getAsJsonArray();
+    assertThat(output, hasItems(isSummaryEvent()));
+  }
+  
+  @Test
+  public void deliveriesOverlapWhenServiceIsSlow() throws Exception {
+    ep = new DefaultEventProcessor(SDK_KEY, configBuilder.build());
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < 3; i++) {
+      server.enqueue(new MockResponse().setHeadersDelay(1, TimeUnit.SECONDS));
+      ep.sendEvent(EventFactory.DEFAULT.newIdentifyEvent(new LDUser("user" + i)));
+      ep.flush();
+    }
+    ep.waitUntilInactive();
+    assertEquals(3, server.getRequestCount());
+    // one at a time, this would take at least three seconds
+    assertThat(System.currentTimeMillis() - start < 2500, equalTo(true));
+  }
+  
   @Test
   public void sdkKeyIsSent() throws Exception {
     ep = new DefaultEventProcessor(SDK_KEY, configBuilder.build());
@@ -410,6 +694,40 @@ public class DefaultEventProcessorTest {
     assertThat(req.getHeader("Authorization"), equalTo(SDK_KEY));
   }
 
+  @SuppressWarnings("unchecked")
+  @Test
+  public void eventsAreCompressedIfConfigured() throws Exception {
+    configBuilder.compressEvents(true);
+    ep = new DefaultEventProcessor(SDK_KEY, configBuilder.build());
+    Event e = EventFactory.DEFAULT.newIdentifyEvent(user);
+    ep.sendEvent(e);
+
+    server.enqueue(new MockResponse());
+    ep.flush();
+    ep.waitUntilInactive();
+    RecordedRequest req = server.takeRequest(0, TimeUnit.MILLISECONDS);
+    assertNotNull(req);
+    assertThat(req.getHeader("Content-Encoding"), equalTo("gzip"));
+    String json;
+    try (Reader reader = new InputStreamReader(new GZIPInputStream(req.getBody().inputStream()), "UTF-8")) {
+      json = CharStreams.toString(reader);
+    }
+    JsonArray output = gson.fromJson(json, JsonElement.class).getAsJsonArray();
+    assertThat(output, hasItems(isIdentifyEvent(e, userJson)));
+  }
+
+  @Test
+  public void eventsAreNotCompressedByDefault() throws Exception {
+    ep = new DefaultEventProcessor(SDK_KEY, configBuilder.build());
+    ep.sendEvent(EventFactory.DEFAULT.newIdentifyEvent(user));
+
+    server.enqueue(new MockResponse());
+    ep.close();
+    RecordedRequest req = server.takeRequest();
+
+    assertThat(req.getHeader("Content-Encoding"), nullValue());
+  }
+
   @Test
   public void http400ErrorIsRecoverable() throws Exception {
     testRecoverableHttpError(400);
@@ -483,6 +801,22 @@ public class DefaultEventProcessorTest {
     return response.addHeader("Date", EventDispatcher.HTTP_DATE_FORMAT.format(new Date(timestamp)));
   }
   
+  private JsonArray sendIdentifyEventsAndFlush(int count) throws Exception {
+    for (int i = 0; i < count; i++) {
+      ep.sendEvent(EventFactory.DEFAULT.newIdentifyEvent(new LDUser("user" + i)));
+      ep.waitUntilInactive(); // so the events can't overflow the input queue, which has the same capacity
+    }
+    return flushAndGetEvents(new MockResponse());
+  }
+  
+  private JsonArray sendCustomEventsAndFlush(int count) throws Exception {
+    for (int i = 0; i < count; i++) {
+      ep.sendEvent(EventFactory.DEFAULT.newCustomEvent("eventkey", new LDUser("user" + i), null));
+      ep.waitUntilInactive();
+    }
+    return flushAndGetEvents(new MockResponse());
+  }
+  
   private JsonArray flushAndGetEvents(MockResponse response) throws Exception {
     server.enqueue(response);
     ep.flush();
@@ -0,0 +1,83 @@
+package com.launchdarkly.client;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import static com.launchdarkly.client.TestUtil.js;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventOutputFormatterTest {
+  private static final Gson gson = new Gson();
+  private static final LDUser user = new LDUser.Builder("userkey").name("Red").build();
+
+  private final EventOutputFormatter formatter = new EventOutputFormatter(LDConfig.DEFAULT);
+
+  @Test
+  public void reasonsAreWrittenInSameFormatAsGson() throws Exception {
+    for (EvaluationReason reason: Arrays.asList(EvaluationReason.off(), EvaluationReason.fallthrough(),
+        EvaluationReason.targetMatch(), EvaluationReason.ruleMatch(2, "rule-id"),
+        EvaluationReason.prerequisiteFailed("prereq"), EvaluationReason.error(EvaluationReason.ErrorKind.WRONG_TYPE))) {
+      Event.FeatureRequest fe = new Event.FeatureRequest(1000, "flag", user, 1, 0, js("a"), js("b"), null, false, null,
+          reason, false);
+      JsonObject output = writeEvents(new EventSummarizer.EventSummary(), fe).get(0).getAsJsonObject();
+      assertEquals(gson.toJsonTree(reason), output.get("reason"));
+    }
+  }
+
+  @Test
+  public void nullPropertiesAreOmitted() throws Exception {
+    Event.FeatureRequest fe = new Event.FeatureRequest(1000, "flag", user, null, null, JsonNull.INSTANCE, null, null,
+        false, null, null, false);
+    JsonObject output = writeEvents(new EventSummarizer.EventSummary(), fe).get(0).getAsJsonObject();
+    for (String name: new String[] { "version", "variation", "value", "default", "prereqOf", "reason", "user" }) {
+      assertFalse(name, output.has(name));
+    }
+    assertEquals("userkey", output.get("userKey").getAsString());
+  }
+
+  @Test
+  public void summaryCountersAreGroupedByFlag() throws Exception {
+    EventSummarizer summarizer = new EventSummarizer();
+    summarizer.summarizeEvent(new Event.FeatureRequest(1000, "flag1", user, 11, 1, js("value1"), js("default1"),
+        null, false, null, null, false));
+    summarizer.summarizeEvent(new Event.FeatureRequest(2000, "flag1", user, 11, 2, js("value2"), js("default1"),
+        null, false, null, null, false));
+    summarizer.summarizeEvent(new Event.FeatureRequest(1500, "unknown", user, null, null, js("default2"),
+        js("default2"), null, false, null, null, false));
+
+    JsonArray output = writeEvents(summarizer.snapshot());
+    assertEquals(1, output.size());
+    JsonObject summary = output.get(0).getAsJsonObject();
+    assertEquals("summary", summary.get("kind").getAsString());
+    assertEquals(1000, summary.get("startDate").getAsLong());
+    assertEquals(2000, summary.get("endDate").getAsLong());
+
+    JsonObject flag1 = summary.getAsJsonObject("features").getAsJsonObject("flag1");
+    assertEquals(js("default1"), flag1.get("default"));
+    assertEquals(2, flag1.getAsJsonArray("counters").size());
+
+    JsonObject unknown = summary.getAsJsonObject("features").getAsJsonObject("unknown");
+    JsonObject counter = unknown.getAsJsonArray("counters").get(0).getAsJsonObject();
+    assertTrue(counter.get("unknown").getAsBoolean());
+    assertFalse(counter.has("version"));
+    assertEquals(1, counter.get("count").getAsInt());
+  }
+
+  private JsonArray writeEvents(EventSummarizer.EventSummary summary, Event... events) throws Exception {
+    StringWriter writer = new StringWriter();
+    int count = formatter.writeOutputEvents(events, summary, writer);
+    JsonArray output = gson.fromJson(writer.toString(), JsonElement.class).getAsJsonArray();
+    assertEquals(count, output.size());
+    return output;
+  }
+}
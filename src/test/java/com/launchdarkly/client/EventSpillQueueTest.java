@@ -0,0 +1,67 @@
+package com.launchdarkly.client;
+
+import com.google.common.base.Charsets;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventSpillQueueTest {
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void filesAreReturnedInOrder() throws Exception {
+    EventSpillQueue queue = new EventSpillQueue(tempFolder.getRoot(), 1000);
+    assertTrue(queue.isEmpty());
+    add(queue, "[1]");
+    add(queue, "[2]");
+    assertEquals("[1]", read(queue.poll()));
+    assertEquals("[2]", read(queue.poll()));
+    assertNull(queue.poll());
+  }
+
+  @Test
+  public void filesArePickedUpByNewQueue() throws Exception {
+    EventSpillQueue queue1 = new EventSpillQueue(tempFolder.getRoot(), 1000);
+    for (int i = 0; i < 11; i++) {
+      add(queue1, "[" + i + "]");
+    }
+    assertEquals("[0]", read(queue1.poll()));
+    
+    EventSpillQueue queue2 = new EventSpillQueue(tempFolder.getRoot(), 1000);
+    assertEquals("[0]", read(queue2.poll())); // it was never deleted
+    for (int i = 1; i < 11; i++) {
+      assertEquals("[" + i + "]", read(queue2.poll()));
+    }
+    add(queue2, "[11]");
+    assertEquals("[11]", read(queue2.poll()));
+  }
+
+  @Test
+  public void payloadIsRefusedIfCapacityWouldBeExceeded() throws Exception {
+    EventSpillQueue queue = new EventSpillQueue(tempFolder.getRoot(), 10);
+    add(queue, "[12345]");
+    assertFalse(queue.add("[1234]".getBytes(Charsets.UTF_8), 6));
+    assertEquals(1, tempFolder.getRoot().list().length);
+    
+    queue.poll();
+    add(queue, "[1234]");
+  }
+
+  private static void add(EventSpillQueue queue, String s) {
+    byte[] data = s.getBytes(Charsets.UTF_8);
+    assertTrue(queue.add(data, data.length));
+  }
+
+  private static String read(File f) throws Exception {
+    return new String(Files.readAllBytes(f.toPath()), Charsets.UTF_8);
+  }
+}
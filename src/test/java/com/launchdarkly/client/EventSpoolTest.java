@@ -0,0 +1,108 @@
+package com.launchdarkly.client;
+
+import com.google.common.base.Charsets;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventSpoolTest {
+  private static final long CAPACITY = 1024 * 1024;
+  private static final long MAX_AGE = 60000;
+
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void payloadsAreReturnedInOrder() throws Exception {
+    EventSpool spool = new EventSpool(tempFolder.getRoot(), CAPACITY, MAX_AGE);
+    assertTrue(spool.isEmpty());
+    add(spool, "[1]");
+    add(spool, "[2]");
+    assertEquals("[1]", read(spool, spool.poll()));
+    assertEquals("[2]", read(spool, spool.poll()));
+    assertNull(spool.poll());
+    assertEquals(2, spool.getStoredPayloads());
+  }
+
+  @Test
+  public void undeliveredPayloadsArePickedUpByNewSpool() throws Exception {
+    EventSpool spool1 = new EventSpool(tempFolder.getRoot(), CAPACITY, MAX_AGE);
+    add(spool1, "[1]");
+    add(spool1, "[2]");
+    add(spool1, "[3]");
+    spool1.markDone(spool1.poll());
+    spool1.poll(); // taken, but not delivered
+    spool1.close();
+
+    EventSpool spool2 = new EventSpool(tempFolder.getRoot(), CAPACITY, MAX_AGE);
+    assertEquals("[2]", read(spool2, spool2.poll()));
+    assertEquals("[3]", read(spool2, spool2.poll()));
+    assertNull(spool2.poll());
+    add(spool2, "[4]");
+    assertEquals("[4]", read(spool2, spool2.poll()));
+  }
+
+  @Test
+  public void filesAreDeletedWhenAllPayloadsAreDelivered() throws Exception {
+    EventSpool spool = new EventSpool(tempFolder.getRoot(), CAPACITY, MAX_AGE);
+    add(spool, "[1]");
+    spool.markDone(spool.poll());
+    spool.close();
+    assertEquals(0, tempFolder.getRoot().list().length);
+  }
+
+  @Test
+  public void payloadThatFailsAgainIsRetriedAfterOthers() throws Exception {
+    EventSpool spool = new EventSpool(tempFolder.getRoot(), CAPACITY, MAX_AGE);
+    add(spool, "[1]");
+    add(spool, "[2]");
+    EventSpool.Record r = spool.poll();
+    assertTrue(spool.retryLater(r, spool.read(r)));
+    assertEquals("[2]", read(spool, spool.poll()));
+    assertEquals("[1]", read(spool, spool.poll()));
+  }
+
+  @Test
+  public void oldPayloadsAreDiscarded() throws Exception {
+    EventSpool spool = new EventSpool(tempFolder.getRoot(), CAPACITY, 1);
+    add(spool, "[1]");
+    Thread.sleep(10);
+    assertNull(spool.poll());
+    assertEquals(1, spool.getDroppedPayloads());
+  }
+
+  @Test
+  public void oldestPayloadsAreDiscardedWhenFull() throws Exception {
+    // segments are 64KB, so each of these payloads needs a segment of its own
+    EventSpool spool = new EventSpool(tempFolder.getRoot(), 128 * 1024, MAX_AGE);
+    for (int i = 1; i <= 3; i++) {
+      add(spool, payloadOfSize(i, 40 * 1024));
+    }
+    assertEquals(1, spool.getDroppedPayloads());
+    assertEquals(payloadOfSize(2, 40 * 1024), read(spool, spool.poll()));
+    assertEquals(payloadOfSize(3, 40 * 1024), read(spool, spool.poll()));
+    assertNull(spool.poll());
+  }
+
+  private static String payloadOfSize(int n, int size) {
+    char[] chars = new char[size];
+    Arrays.fill(chars, (char)('0' + n));
+    return new String(chars);
+  }
+
+  private static void add(EventSpool spool, String s) {
+    byte[] data = s.getBytes(Charsets.UTF_8);
+    assertTrue(spool.add(data, data.length));
+  }
+
+  private static String read(EventSpool spool, EventSpool.Record r) {
+    return new String(spool.read(r), Charsets.UTF_8);
+  }
+}
@@ -95,6 +95,67 @@ public class EventSummarizerTest {
         new EventSummarizer.CounterValue(1, js("value99"), js("default2")));
     expected.put(new EventSummarizer.CounterKey(unknownFlagKey, null, null),
         new EventSummarizer.CounterValue(1, js("default3"), js("default3")));
-    assertThat(data.counters, equalTo(expected));
+    assertThat(data.counters(), equalTo(expected));
+  }
+
+  @Test
+  public void summarizeAllAddsCountersAndDates() {
+    FeatureFlag flag1 = new FeatureFlagBuilder("key1").version(11).build();
+    FeatureFlag flag2 = new FeatureFlagBuilder("key2").version(22).build();
+    EventSummarizer es = new EventSummarizer();
+    eventTimestamp = 1000;
+    es.summarizeEvent(eventFactory.newFeatureRequestEvent(flag1, user, simpleEvaluation(1, js("value1")), js("default1")));
+    EventSummarizer other = new EventSummarizer();
+    eventTimestamp = 2000;
+    other.summarizeEvent(eventFactory.newFeatureRequestEvent(flag1, user, simpleEvaluation(1, js("value1")), js("default1")));
+    other.summarizeEvent(eventFactory.newFeatureRequestEvent(flag2, user, simpleEvaluation(1, js("value99")), js("default2")));
+    es.summarizeAll(other.snapshot());
+    EventSummarizer.EventSummary data = es.snapshot();
+    
+    Map<EventSummarizer.CounterKey, EventSummarizer.CounterValue> expected = new HashMap<>();
+    expected.put(new EventSummarizer.CounterKey(flag1.getKey(), 1, flag1.getVersion()),
+        new EventSummarizer.CounterValue(2, js("value1"), js("default1")));
+    expected.put(new EventSummarizer.CounterKey(flag2.getKey(), 1, flag2.getVersion()),
+        new EventSummarizer.CounterValue(1, js("value99"), js("default2")));
+    assertThat(data.counters(), equalTo(expected));
+    assertEquals(1000, data.startDate);
+    assertEquals(2000, data.endDate);
+    assertEquals(1, other.snapshot().counters().get(new EventSummarizer.CounterKey(flag1.getKey(), 1, flag1.getVersion())).count);
+  }
+
+  @Test
+  public void countersAreKeptForManyFlagsAndVariations() {
+    EventSummarizer es = new EventSummarizer();
+    int flagCount = 100, variationCount = 5;
+    for (int i = 0; i < flagCount; i++) {
+      FeatureFlag flag = new FeatureFlagBuilder("key" + i).version(i).build();
+      for (int v = 0; v < variationCount; v++) {
+        for (int n = 0; n <= v; n++) {
+          es.summarizeEvent(eventFactory.newFeatureRequestEvent(flag, user, simpleEvaluation(v, js("value" + v)), null));
+        }
+      }
+    }
+    Map<EventSummarizer.CounterKey, EventSummarizer.CounterValue> counters = es.getSummary().counters();
+    
+    assertEquals(flagCount * variationCount, counters.size());
+    for (int i = 0; i < flagCount; i++) {
+      for (int v = 0; v < variationCount; v++) {
+        assertEquals(new EventSummarizer.CounterValue(v + 1, js("value" + v), null),
+            counters.get(new EventSummarizer.CounterKey("key" + i, v, i)));
+      }
+    }
+  }
+  
+  @Test
+  public void clearDoesNotChangePreviousSummary() {
+    EventSummarizer es = new EventSummarizer();
+    FeatureFlag flag = new FeatureFlagBuilder("key").version(11).build();
+    es.summarizeEvent(eventFactory.newFeatureRequestEvent(flag, user, simpleEvaluation(1, js("value")), null));
+    EventSummarizer.EventSummary summary = es.getSummary();
+    es.clear();
+    es.summarizeEvent(eventFactory.newFeatureRequestEvent(flag, user, simpleEvaluation(1, js("value")), null));
+    
+    assertEquals(1, summary.counters().get(new EventSummarizer.CounterKey("key", 1, 11)).count);
+    assertEquals(1, es.getSummary().counters().get(new EventSummarizer.CounterKey("key", 1, 11)).count);
   }
 }
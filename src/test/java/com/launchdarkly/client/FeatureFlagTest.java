@@ -18,6 +18,7 @@ import static com.launchdarkly.client.VersionedDataKind.FEATURES;
 import static com.launchdarkly.client.VersionedDataKind.SEGMENTS;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 public class FeatureFlagTest {
 
@@ -290,6 +291,23 @@ public class FeatureFlagTest {
     assertEquals(0, result.getPrerequisiteEvents().size());
   }
   
+  @Test
+  public void firstTargetWinsIfUserIsInMultipleTargets() throws Exception {
+    FeatureFlag f = new FeatureFlagBuilder("feature")
+        .on(true)
+        .targets(Arrays.asList(new Target(Arrays.asList("whoever"), 0),
+            new Target(Arrays.asList("userkey"), 2),
+            new Target(Arrays.asList("userkey"), 1)))
+        .fallthrough(fallthroughVariation(0))
+        .offVariation(1)
+        .variations(js("fall"), js("off"), js("on"))
+        .build();
+    LDUser user = new LDUser.Builder("userkey").build();
+    FeatureFlag.EvalResult result = f.evaluate(user, featureStore, EventFactory.DEFAULT);
+    
+    assertEquals(new EvaluationDetail<>(EvaluationReason.targetMatch(), 2, js("on")), result.getDetails());
+  }
+  
   @Test
   public void flagMatchesUserFromRules() {
     Clause clause0 = new Clause("key", Operator.in, Arrays.asList(js("wrongkey")), false);
@@ -432,6 +450,33 @@ public class FeatureFlagTest {
     assertEquals(new EvaluationDetail<>(EvaluationReason.ruleMatch(1, "rule2"), 1, jbool(true)), details);
   }
   
+  @Test
+  public void clauseValuesOfWrongTypeAreIgnoredWhenCompiled() throws Exception {
+    Clause clause = new Clause("name", Operator.startsWith, Arrays.asList(jint(3), js("Bo")), false);
+    FeatureFlag f = booleanFlagWithClauses("flag", clause);
+    LDUser user = new LDUser.Builder("key").name("Bob").build();
+    
+    assertEquals(jbool(true), f.evaluate(user, featureStore, EventFactory.DEFAULT).getDetails().getValue());
+  }
+  
+  @Test
+  public void invalidRegexInClauseDoesNotPreventOtherValuesFromMatching() throws Exception {
+    Clause clause = new Clause("name", Operator.matches, Arrays.asList(js("***not a regex"), js("^B.b$")), false);
+    FeatureFlag f = booleanFlagWithClauses("flag", clause);
+    LDUser user = new LDUser.Builder("key").name("Bob").build();
+    
+    assertEquals(jbool(true), f.evaluate(user, featureStore, EventFactory.DEFAULT).getDetails().getValue());
+  }
+  
+  @Test
+  public void flagIsCompiledOnlyOnce() throws Exception {
+    FeatureFlag f = booleanFlagWithClauses("flag", new Clause("name", Operator.in, Arrays.asList(js("Bob")), false));
+    CompiledFlag compiled = f.getCompiled();
+    f.evaluate(BASE_USER, featureStore, EventFactory.DEFAULT);
+    
+    assertSame(compiled, f.getCompiled());
+  }
+  
   @Test
   public void testSegmentMatchClauseRetrievesSegmentFromStore() throws Exception {
     Segment segment = new Segment.Builder("segkey")
@@ -0,0 +1,93 @@
+package com.launchdarkly.client;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.launchdarkly.client.TestUtil.booleanFlagWithClauses;
+import static com.launchdarkly.client.TestUtil.js;
+import static com.launchdarkly.client.VersionedDataKind.FEATURES;
+import static com.launchdarkly.client.VersionedDataKind.SEGMENTS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class FlagDependencySnapshotTest {
+  private final FeatureStore store = TestUtil.initedFeatureStore();
+
+  @Test
+  public void snapshotContainsFlagAndAllDependencies() {
+    Segment segment = new Segment.Builder("segment1").version(1).build();
+    Clause clause = new Clause("", Operator.segmentMatch, Arrays.asList(js("segment1"), js("missing")), false);
+    FeatureFlag f2 = booleanFlagWithClauses("feature2", clause);
+    FeatureFlag f1 = new FeatureFlagBuilder("feature1")
+        .prerequisites(Arrays.asList(new Prerequisite("feature2", 0)))
+        .build();
+    FeatureFlag f0 = new FeatureFlagBuilder("feature0")
+        .prerequisites(Arrays.asList(new Prerequisite("feature1", 0), new Prerequisite("feature2", 0)))
+        .build();
+    FeatureFlag unrelated = new FeatureFlagBuilder("unrelated").build();
+    store.upsert(SEGMENTS, segment);
+    store.upsert(FEATURES, f0);
+    store.upsert(FEATURES, f1);
+    store.upsert(FEATURES, f2);
+    store.upsert(FEATURES, unrelated);
+
+    FlagDependencySnapshot snapshot = FlagDependencySnapshot.forFlag(store, f0);
+    assertSame(f0, snapshot.get(FEATURES, "feature0"));
+    assertSame(f1, snapshot.get(FEATURES, "feature1"));
+    assertSame(f2, snapshot.get(FEATURES, "feature2"));
+    assertNull(snapshot.get(FEATURES, "unrelated"));
+    assertSame(segment, snapshot.get(SEGMENTS, "segment1"));
+    assertNull(snapshot.get(SEGMENTS, "missing"));
+    assertEquals(3, snapshot.all(FEATURES).size());
+  }
+
+  @Test
+  public void eachLevelOfPrerequisitesAndAllSegmentsAreRequestedInBatches() {
+    final AtomicInteger batches = new AtomicInteger();
+    FeatureStore countingStore = new InMemoryFeatureStore() {
+      @Override
+      public <T extends VersionedData> Map<String, T> getMany(VersionedDataKind<T> kind, Collection<String> keys) {
+        batches.incrementAndGet();
+        return super.getMany(kind, keys);
+      }
+    };
+    Clause clause1 = new Clause("", Operator.segmentMatch, Arrays.asList(js("segment1")), false);
+    Clause clause2 = new Clause("", Operator.segmentMatch, Arrays.asList(js("segment2")), false);
+    FeatureFlag f2 = booleanFlagWithClauses("feature2", clause2);
+    FeatureFlag f1 = new FeatureFlagBuilder(booleanFlagWithClauses("feature1", clause1))
+        .prerequisites(Arrays.asList(new Prerequisite("feature2", 0)))
+        .build();
+    FeatureFlag f0 = new FeatureFlagBuilder("feature0")
+        .prerequisites(Arrays.asList(new Prerequisite("feature1", 0)))
+        .build();
+    countingStore.upsert(FEATURES, f1);
+    countingStore.upsert(FEATURES, f2);
+    countingStore.upsert(SEGMENTS, new Segment.Builder("segment1").version(1).build());
+    countingStore.upsert(SEGMENTS, new Segment.Builder("segment2").version(1).build());
+
+    FlagDependencySnapshot snapshot = FlagDependencySnapshot.forFlag(countingStore, f0);
+    assertEquals(3, batches.get());
+    assertSame(f2, snapshot.get(FEATURES, "feature2"));
+    assertEquals(2, snapshot.all(SEGMENTS).size());
+  }
+
+  @Test
+  public void prerequisiteCycleDoesNotPreventSnapshot() {
+    FeatureFlag f0 = new FeatureFlagBuilder("feature0")
+        .prerequisites(Arrays.asList(new Prerequisite("feature1", 0)))
+        .build();
+    FeatureFlag f1 = new FeatureFlagBuilder("feature1")
+        .prerequisites(Arrays.asList(new Prerequisite("feature0", 0)))
+        .build();
+    store.upsert(FEATURES, f0);
+    store.upsert(FEATURES, f1);
+
+    FlagDependencySnapshot snapshot = FlagDependencySnapshot.forFlag(store, f0);
+    assertEquals(2, snapshot.all(FEATURES).size());
+  }
+}
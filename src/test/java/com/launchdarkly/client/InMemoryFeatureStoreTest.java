@@ -1,6 +1,17 @@
 package com.launchdarkly.client;
 
 import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.launchdarkly.client.VersionedDataKind.FEATURES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 public class InMemoryFeatureStoreTest extends FeatureStoreTestBase<InMemoryFeatureStore> {
 
@@ -8,4 +19,42 @@ public class InMemoryFeatureStoreTest extends FeatureStoreTestBase<InMemoryFeatu
   public void setup() {
     store = new InMemoryFeatureStore();
   }
+
+  @Test
+  public void getManyReturnsOnlyExistingFeatures() {
+    initStore();
+    store.delete(FEATURES, feature2.getKey(), feature2.getVersion() + 1);
+    Map<String, FeatureFlag> result = store.getMany(FEATURES, Arrays.asList(feature1.getKey(), feature2.getKey(), "biz"));
+    assertEquals(1, result.size());
+    assertEquals(feature1.getVersion(), result.get(feature1.getKey()).getVersion());
+  }
+
+  @Test
+  public void allReturnsSameMapUntilKindIsModified() {
+    initStore();
+    Map<String, FeatureFlag> first = store.all(FEATURES);
+    assertSame(first, store.all(FEATURES));
+
+    store.upsert(FEATURES, new FeatureFlagBuilder(feature1).version(feature1.getVersion() + 1).build());
+    Map<String, FeatureFlag> second = store.all(FEATURES);
+    assertNotSame(first, second);
+    assertEquals(feature1.getVersion(), first.get(feature1.getKey()).getVersion());
+    assertEquals(feature1.getVersion() + 1, second.get(feature1.getKey()).getVersion());
+
+    store.delete(FEATURES, feature2.getKey(), feature2.getVersion() + 1);
+    assertEquals(1, store.all(FEATURES).size());
+  }
+
+  @Test
+  public void laterChangesToInitDataDoNotAffectStore() {
+    Map<String, FeatureFlag> flags = new HashMap<>();
+    flags.put(feature1.getKey(), feature1);
+    Map<VersionedDataKind<?>, Map<String, ? extends VersionedData>> allData = new HashMap<>();
+    allData.put(FEATURES, flags);
+    store.init(allData);
+    flags.put(feature2.getKey(), feature2);
+
+    assertNull(store.get(FEATURES, feature2.getKey()));
+    assertEquals(1, store.all(FEATURES).size());
+  }
 }
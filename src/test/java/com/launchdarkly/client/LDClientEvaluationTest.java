@@ -1,14 +1,19 @@
 package com.launchdarkly.client;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 import static com.launchdarkly.client.TestUtil.booleanFlagWithClauses;
 import static com.launchdarkly.client.TestUtil.failedUpdateProcessor;
@@ -26,7 +31,9 @@ import static com.launchdarkly.client.VersionedDataKind.SEGMENTS;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class LDClientEvaluationTest {
   private static final LDUser user = new LDUser("userkey");
@@ -105,6 +112,57 @@ public class LDClientEvaluationTest {
     assertEquals(defaultVal, client.jsonVariation("key", user, defaultVal));
   }
   
+  @Test
+  public void jsonVariationsReturnsValueForEachFlag() throws Exception {
+    featureStore.upsert(FEATURES, flagWithValue("key1", js("value1")));
+    featureStore.upsert(FEATURES, flagWithValue("key2", jint(2)));
+
+    Map<String, JsonElement> result = client.jsonVariations(user,
+        ImmutableMap.<String, JsonElement>of("key1", js("a"), "key2", jint(1), "key3", jbool(true)));
+    assertEquals(ImmutableMap.<String, JsonElement>of("key1", js("value1"), "key2", jint(2), "key3", jbool(true)),
+        result);
+  }
+
+  @Test
+  public void jsonVariationsReturnsDefaultValuesForNullUser() throws Exception {
+    featureStore.upsert(FEATURES, flagWithValue("key1", js("value1")));
+
+    Map<String, JsonElement> result = client.jsonVariations(null,
+        ImmutableMap.<String, JsonElement>of("key1", js("a")));
+    assertEquals(ImmutableMap.<String, JsonElement>of("key1", js("a")), result);
+  }
+
+  @Test
+  public void jsonVariationsReturnsDefaultValuesIfClientNotInitialized() throws Exception {
+    FeatureStore badFeatureStore = new InMemoryFeatureStore();
+    LDConfig badConfig = new LDConfig.Builder()
+        .featureStoreFactory(specificFeatureStore(badFeatureStore))
+        .eventProcessorFactory(Components.nullEventProcessor())
+        .updateProcessorFactory(specificUpdateProcessor(failedUpdateProcessor()))
+        .startWaitMillis(0)
+        .build();
+    try (LDClientInterface badClient = new LDClient("SDK_KEY", badConfig)) {
+      Map<String, JsonElement> result = badClient.jsonVariations(user,
+          ImmutableMap.<String, JsonElement>of("key1", js("a"), "key2", js("b")));
+      assertEquals(ImmutableMap.<String, JsonElement>of("key1", js("a"), "key2", js("b")), result);
+    }
+  }
+
+  @Test
+  public void jsonVariationsReturnsDefaultValuesForUnexpectedException() throws Exception {
+    FeatureStore badFeatureStore = featureStoreThatThrowsException(new RuntimeException("sorry"));
+    LDConfig badConfig = new LDConfig.Builder()
+        .featureStoreFactory(specificFeatureStore(badFeatureStore))
+        .eventProcessorFactory(Components.nullEventProcessor())
+        .updateProcessorFactory(Components.nullUpdateProcessor())
+        .build();
+    try (LDClientInterface badClient = new LDClient("SDK_KEY", badConfig)) {
+      Map<String, JsonElement> result = badClient.jsonVariations(user,
+          ImmutableMap.<String, JsonElement>of("key1", js("a")));
+      assertEquals(ImmutableMap.<String, JsonElement>of("key1", js("a")), result);
+    }
+  }
+
   @Test
   public void canMatchUserBySegment() throws Exception {
     // This is similar to one of the tests in FeatureFlagTest, but more end-to-end
@@ -121,6 +179,85 @@ public class LDClientEvaluationTest {
     assertTrue(client.boolVariation("feature", user, false));
   }
   
+  @Test
+  public void jsonVariationForUsersReturnsValueForEachUser() throws Exception {
+    Segment segment = new Segment.Builder("segment1")
+        .version(1)
+        .included(Arrays.asList("user1", "user3"))
+        .build();
+    featureStore.upsert(SEGMENTS, segment);
+    Clause clause = new Clause("", Operator.segmentMatch, Arrays.asList(js("segment1")), false);
+    featureStore.upsert(FEATURES, booleanFlagWithClauses("feature", clause));
+    List<LDUser> users = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      users.add(new LDUser("user" + i));
+    }
+
+    final Map<String, JsonElement> results = new ConcurrentHashMap<>();
+    client.jsonVariationForUsers("feature", users, jbool(false), null, new UserVariationHandler() {
+      public void handleVariation(LDUser user, EvaluationDetail<JsonElement> result) {
+        results.put(user.getKeyAsString(), result.getValue());
+      }
+    });
+    assertEquals(users.size(), results.size());
+    assertEquals(jbool(true), results.get("user1"));
+    assertEquals(jbool(false), results.get("user2"));
+    assertEquals(jbool(true), results.get("user3"));
+  }
+
+  @Test
+  public void jsonVariationForUsersReturnsErrorForUnknownFlag() throws Exception {
+    final List<EvaluationDetail<JsonElement>> results = new ArrayList<>();
+    client.jsonVariationForUsers("key", Arrays.asList(user), js("default"), MoreExecutors.directExecutor(),
+        new UserVariationHandler() {
+          public void handleVariation(LDUser user, EvaluationDetail<JsonElement> result) {
+            results.add(result);
+          }
+        });
+    assertEquals(Arrays.asList(EvaluationDetail.error(EvaluationReason.ErrorKind.FLAG_NOT_FOUND, js("default"))),
+        results);
+  }
+
+  @Test
+  public void jsonVariationForUsersReturnsErrorForUnknownFlagForEveryUser() throws Exception {
+    List<LDUser> users = new ArrayList<>();
+    for (int i = 0; i < 1200; i++) {
+      users.add(new LDUser("user" + i));
+    }
+    final List<EvaluationDetail<JsonElement>> results = new ArrayList<>();
+    client.jsonVariationForUsers("key", users, js("default"), MoreExecutors.directExecutor(),
+        new UserVariationHandler() {
+          public void handleVariation(LDUser user, EvaluationDetail<JsonElement> result) {
+            results.add(result);
+          }
+        });
+    assertEquals(users.size(), results.size());
+    for (EvaluationDetail<JsonElement> result: results) {
+      assertEquals(EvaluationDetail.error(EvaluationReason.ErrorKind.FLAG_NOT_FOUND, js("default")), result);
+    }
+  }
+
+  @Test
+  public void jsonVariationForUsersPassesOnExceptionFromExecutor() throws Exception {
+    featureStore.upsert(FEATURES, flagWithValue("key", jbool(true)));
+    final IllegalStateException failure = new IllegalStateException("no threads");
+    Executor executor = new Executor() {
+      public void execute(Runnable command) {
+        throw failure;
+      }
+    };
+    try {
+      client.jsonVariationForUsers("key", Arrays.asList(user), js("default"), executor,
+          new UserVariationHandler() {
+            public void handleVariation(LDUser user, EvaluationDetail<JsonElement> result) {
+            }
+          });
+      fail("expected exception");
+    } catch (IllegalStateException e) {
+      assertSame(failure, e);
+    }
+  }
+
   @Test
   public void canGetDetailsForSuccessfulEvaluation() throws Exception {
     featureStore.upsert(FEATURES, flagWithValue("key", jbool(true)));
@@ -319,6 +456,19 @@ public class LDClientEvaluationTest {
     assertEquals(expected, gson.toJsonTree(state));
   }
   
+  @Test
+  public void allFlagsStateCanEvaluateInParallel() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      featureStore.upsert(FEATURES, flagWithValue("key" + i, jint(i)));
+    }
+    
+    FeatureFlagsState sequentialState = client.allFlagsState(user);
+    FeatureFlagsState parallelState = client.allFlagsState(user, FlagsStateOption.EVALUATE_IN_PARALLEL);
+    assertEquals(sequentialState, parallelState);
+    assertEquals(1000, parallelState.toValuesMap().size());
+    assertEquals(jint(999), parallelState.getFlagValue("key999"));
+  }
+  
   @Test
   public void allFlagsStateReturnsEmptyStateForNullUser() throws Exception {
     featureStore.upsert(FEATURES, flagWithValue("key", js("value")));
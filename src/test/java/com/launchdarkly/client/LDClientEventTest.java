@@ -1,5 +1,7 @@
 package com.launchdarkly.client;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
@@ -8,6 +10,8 @@ import com.launchdarkly.client.EvaluationReason.ErrorKind;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static com.launchdarkly.client.TestUtil.fallthroughVariation;
 import static com.launchdarkly.client.TestUtil.flagWithValue;
@@ -32,6 +36,9 @@ public class LDClientEventTest {
       .updateProcessorFactory(Components.nullUpdateProcessor())
       .build();
   private LDClientInterface client = new LDClient("SDK_KEY", config);
+  private UserVariationHandler nullHandler = new UserVariationHandler() {
+    public void handleVariation(LDUser user, EvaluationDetail<JsonElement> result) {}
+  };
   
   @Test
   public void identifySendsEvent() throws Exception {
@@ -257,6 +264,66 @@ public class LDClientEventTest {
         EvaluationReason.error(ErrorKind.FLAG_NOT_FOUND));
   }
 
+  @Test
+  public void jsonVariationsSendsEventForEachFlag() throws Exception {
+    FeatureFlag flag = flagWithValue("key1", js("value1"));
+    featureStore.upsert(FEATURES, flag);
+    Map<String, JsonElement> defaultValues = new LinkedHashMap<>();
+    defaultValues.put("key1", js("a"));
+    defaultValues.put("key2", js("b"));
+
+    client.jsonVariations(user, defaultValues);
+    assertEquals(2, eventSink.events.size());
+    checkFeatureEvent(eventSink.events.get(0), flag, js("value1"), js("a"), null, null);
+    checkUnknownFeatureEvent(eventSink.events.get(1), "key2", js("b"), null, null);
+  }
+
+  @Test
+  public void jsonVariationsSendsPrerequisiteEventsBeforeFlagEvent() throws Exception {
+    FeatureFlag f0 = new FeatureFlagBuilder("feature0")
+        .on(true)
+        .prerequisites(Arrays.asList(new Prerequisite("feature1", 1)))
+        .fallthrough(fallthroughVariation(0))
+        .offVariation(1)
+        .variations(js("fall"), js("off"), js("on"))
+        .version(1)
+        .build();
+    FeatureFlag f1 = new FeatureFlagBuilder("feature1")
+        .on(true)
+        .fallthrough(fallthroughVariation(1))
+        .variations(js("nogo"), js("go"))
+        .version(2)
+        .build();
+    featureStore.upsert(FEATURES, f0);
+    featureStore.upsert(FEATURES, f1);
+
+    client.jsonVariations(user, ImmutableMap.<String, JsonElement>of("feature0", js("default")));
+    assertEquals(2, eventSink.events.size());
+    checkFeatureEvent(eventSink.events.get(0), f1, js("go"), null, "feature0", null);
+    checkFeatureEvent(eventSink.events.get(1), f0, js("fall"), js("default"), null, null);
+  }
+
+  @Test
+  public void jsonVariationForUsersSendsEventForEachUser() throws Exception {
+    FeatureFlag flag = flagWithValue("key", js("value"));
+    featureStore.upsert(FEATURES, flag);
+
+    client.jsonVariationForUsers("key", Arrays.asList(user, user), js("default"), MoreExecutors.directExecutor(),
+        nullHandler);
+    assertEquals(2, eventSink.events.size());
+    checkFeatureEvent(eventSink.events.get(0), flag, js("value"), js("default"), null, null);
+    checkFeatureEvent(eventSink.events.get(1), flag, js("value"), js("default"), null, null);
+  }
+
+  @Test
+  public void jsonVariationForUsersSendsNoEventsIfRequested() throws Exception {
+    featureStore.upsert(FEATURES, flagWithValue("key", js("value")));
+
+    client.jsonVariationForUsers("key", Arrays.asList(user, user), js("default"), MoreExecutors.directExecutor(),
+        nullHandler, BatchEvaluationOption.NO_EVENTS);
+    assertEquals(0, eventSink.events.size());
+  }
+
   @Test
   public void eventIsSentForExistingPrererequisiteFlag() throws Exception {
     FeatureFlag f0 = new FeatureFlagBuilder("feature0")
@@ -3,7 +3,11 @@ package com.launchdarkly.client;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
 
+import static com.launchdarkly.client.TestUtil.booleanFlagWithClauses;
 import static com.launchdarkly.client.TestUtil.flagWithValue;
 import static com.launchdarkly.client.TestUtil.initedFeatureStore;
 import static com.launchdarkly.client.TestUtil.specificFeatureStore;
@@ -55,4 +59,120 @@ public class LDClientLddModeTest {
       assertTrue(client.boolVariation("key", new LDUser("user"), false));
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void lddModeClientFetchesPrerequisitesAsBatch() throws IOException {
+    CountingFeatureStore testFeatureStore = new CountingFeatureStore();
+    LDConfig config = new LDConfig.Builder()
+        .useLdd(true)
+        .featureStoreFactory(specificFeatureStore(testFeatureStore))
+        .build();
+    // a rule with no clauses matches every user, so each of these flags returns variation 1, true
+    testFeatureStore.upsert(FEATURES, booleanFlagWithClauses("prereq1"));
+    testFeatureStore.upsert(FEATURES, booleanFlagWithClauses("prereq2"));
+    FeatureFlag flag = new FeatureFlagBuilder(booleanFlagWithClauses("key"))
+        .prerequisites(Arrays.asList(new Prerequisite("prereq1", 1), new Prerequisite("prereq2", 1)))
+        .build();
+    testFeatureStore.upsert(FEATURES, flag);
+    try (LDClient client = new LDClient("SDK_KEY", config)) {
+      assertTrue(client.boolVariation("key", new LDUser("user"), false));
+      assertEquals(1, testFeatureStore.gets);
+      assertEquals(1, testFeatureStore.batches);
+    }
+  }
+  
+  @Test
+  public void lddModeClientDoesNotFetchPrerequisitesOfFlagThatIsOff() throws IOException {
+    CountingFeatureStore testFeatureStore = new CountingFeatureStore();
+    LDConfig config = new LDConfig.Builder()
+        .useLdd(true)
+        .featureStoreFactory(specificFeatureStore(testFeatureStore))
+        .build();
+    FeatureFlag flag = new FeatureFlagBuilder("key")
+        .on(false)
+        .offVariation(1)
+        .variations(TestUtil.jbool(false), TestUtil.jbool(true))
+        .prerequisites(Arrays.asList(new Prerequisite("prereq1", 1)))
+        .build();
+    testFeatureStore.upsert(FEATURES, flag);
+    try (LDClient client = new LDClient("SDK_KEY", config)) {
+      assertTrue(client.boolVariation("key", new LDUser("user"), false));
+      assertEquals(1, testFeatureStore.gets);
+      assertEquals(0, testFeatureStore.batches);
+    }
+  }
+
+  @Test
+  public void lddModeClientDoesNotBatchPrerequisitesThatStoreHasInMemory() throws IOException {
+    CountingFeatureStore testFeatureStore = new CountingFeatureStore();
+    testFeatureStore.inMemory = true;
+    LDConfig config = new LDConfig.Builder()
+        .useLdd(true)
+        .featureStoreFactory(specificFeatureStore(testFeatureStore))
+        .build();
+    testFeatureStore.upsert(FEATURES, booleanFlagWithClauses("prereq1"));
+    FeatureFlag flag = new FeatureFlagBuilder(booleanFlagWithClauses("key"))
+        .prerequisites(Arrays.asList(new Prerequisite("prereq1", 1)))
+        .build();
+    testFeatureStore.upsert(FEATURES, flag);
+    try (LDClient client = new LDClient("SDK_KEY", config)) {
+      assertTrue(client.boolVariation("key", new LDUser("user"), false));
+      assertEquals(2, testFeatureStore.gets);
+      assertEquals(0, testFeatureStore.batches);
+    }
+  }
+
+  private static final class CountingFeatureStore implements MultiGetFeatureStore {
+    private final InMemoryFeatureStore store = new InMemoryFeatureStore();
+    int gets;
+    int batches;
+    boolean inMemory;
+    
+    @Override
+    public <T extends VersionedData> T get(VersionedDataKind<T> kind, String key) {
+      gets++;
+      return store.get(kind, key);
+    }
+
+    @Override
+    public <T extends VersionedData> Map<String, T> getMany(VersionedDataKind<T> kind, Collection<String> keys) {
+      batches++;
+      return store.getMany(kind, keys);
+    }
+
+    @Override
+    public boolean isInMemory(VersionedDataKind<?> kind) {
+      return inMemory;
+    }
+
+    @Override
+    public <T extends VersionedData> Map<String, T> all(VersionedDataKind<T> kind) {
+      return store.all(kind);
+    }
+
+    @Override
+    public void init(Map<VersionedDataKind<?>, Map<String, ? extends VersionedData>> allData) {
+      store.init(allData);
+    }
+
+    @Override
+    public <T extends VersionedData> void delete(VersionedDataKind<T> kind, String key, int version) {
+      store.delete(kind, key, version);
+    }
+
+    @Override
+    public <T extends VersionedData> void upsert(VersionedDataKind<T> kind, T item) {
+      store.upsert(kind, item);
+    }
+
+    @Override
+    public boolean initialized() {
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      store.close();
+    }
+  }
+}
@@ -1,8 +1,8 @@
 package com.launchdarkly.client;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
-
-import java.util.regex.PatternSyntaxException;
+import static org.junit.Assert.assertNull;
 
 import org.junit.Test;
 
@@ -10,9 +10,28 @@ import com.google.gson.JsonPrimitive;
 
 // Any special-case tests that can't be handled by OperatorParameterizedTest.
 public class OperatorTest {
-  // This is probably not desired behavior, but it is the current behavior
-  @Test(expected = PatternSyntaxException.class)
-  public void testInvalidRegexThrowsException() {
+  @Test
+  public void testInvalidRegexDoesNotMatch() {
     assertFalse(Operator.matches.apply(new JsonPrimitive("hello world"), new JsonPrimitive("***not a regex")));    
   }
+  
+  @Test
+  public void dateClauseValueIsCompiledToEpochMillis() {
+    assertEquals(1000L, Operator.before.compileClauseValue(new JsonPrimitive(1000)));
+    assertEquals(1000L, Operator.after.compileClauseValue(new JsonPrimitive("1970-01-01T00:00:01Z")));
+    assertNull(Operator.before.compileClauseValue(new JsonPrimitive("not a date")));
+  }
+  
+  @Test
+  public void semVerClauseValueIsCompiledToVersion() throws Exception {
+    SemanticVersion v = (SemanticVersion)Operator.semVerEqual.compileClauseValue(new JsonPrimitive("2.0"));
+    assertEquals(0, v.compareTo(new SemanticVersion(2, 0, 0, null, null)));
+    assertNull(Operator.semVerLessThan.compileClauseValue(new JsonPrimitive("x.y")));
+  }
+  
+  @Test
+  public void numericClauseValueIsCompiledToDouble() {
+    assertEquals(99.0, Operator.lessThan.compileClauseValue(new JsonPrimitive(99)));
+    assertNull(Operator.greaterThan.compileClauseValue(new JsonPrimitive("99")));
+  }
 }
@@ -24,6 +24,9 @@ public class RedisFeatureStoreBuilderTest {
     assertEquals(false, conf.asyncRefresh);
     assertEquals(RedisFeatureStoreBuilder.DEFAULT_PREFIX, conf.prefix);
     assertNull(conf.poolConfig);
+    assertNull(conf.invalidationChannel);
+    assertEquals(false, conf.scriptedUpdates);
+    assertEquals(false, conf.stagedInit);
   }
 
   @Test
@@ -96,4 +99,22 @@ public class RedisFeatureStoreBuilderTest {
     RedisFeatureStoreBuilder conf = new RedisFeatureStoreBuilder().poolConfig(poolConfig);
     assertEquals(poolConfig, conf.poolConfig);
   }
+
+  @Test
+  public void testInvalidationChannelConfigured() throws URISyntaxException {
+    RedisFeatureStoreBuilder conf = new RedisFeatureStoreBuilder().invalidationChannel("changes");
+    assertEquals("changes", conf.invalidationChannel);
+  }
+
+  @Test
+  public void testScriptedUpdatesConfigured() throws URISyntaxException {
+    RedisFeatureStoreBuilder conf = new RedisFeatureStoreBuilder().scriptedUpdates(true);
+    assertEquals(true, conf.scriptedUpdates);
+  }
+
+  @Test
+  public void testStagedInitConfigured() throws URISyntaxException {
+    RedisFeatureStoreBuilder conf = new RedisFeatureStoreBuilder().stagedInit(true);
+    assertEquals(true, conf.stagedInit);
+  }
 }
@@ -0,0 +1,89 @@
+package com.launchdarkly.client;
+
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.launchdarkly.client.VersionedDataKind.FEATURES;
+import static java.util.Collections.singletonMap;
+
+import redis.clients.jedis.Jedis;
+
+/**
+ * Tests of {@link RedisFeatureStoreBuilder#scriptedUpdates(boolean)}.
+ */
+public class RedisFeatureStoreScriptedUpdatesTest {
+  private static final Gson gson = new Gson();
+
+  private final FeatureFlag flag = new FeatureFlagBuilder("foo").version(10).salt("abc").build();
+  private RedisFeatureStore store;
+  private Jedis otherClient;
+
+  @Before
+  public void setup() {
+    store = new RedisFeatureStoreBuilder(URI.create("redis://localhost:6379")).scriptedUpdates(true).build();
+    otherClient = new Jedis("localhost");
+    Map<VersionedDataKind<?>, Map<String, ? extends VersionedData>> allData = new HashMap<>();
+    allData.put(FEATURES, singletonMap(flag.getKey(), flag));
+    store.init(allData);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    otherClient.close();
+    store.close();
+  }
+
+  @Test
+  public void updateIsWrittenIfRedisHasForgottenScript() {
+    otherClient.scriptFlush();
+    FeatureFlag newVer = new FeatureFlagBuilder(flag).version(flag.getVersion() + 1).build();
+    store.upsert(FEATURES, newVer);
+    Assert.assertEquals(newVer.getVersion(), versionInRedis());
+    Assert.assertEquals(newVer.getVersion(), store.get(FEATURES, flag.getKey()).getVersion());
+
+    // the fallback loaded the script again, so the next update can use it
+    FeatureFlag newVer2 = new FeatureFlagBuilder(flag).version(flag.getVersion() + 2).build();
+    store.upsert(FEATURES, newVer2);
+    Assert.assertEquals(newVer2.getVersion(), versionInRedis());
+  }
+
+  @Test
+  public void updateWithSameVersionIsNotWrittenButIsAppliedToSnapshot() {
+    store.all(FEATURES);
+    FeatureFlag externalVer = new FeatureFlagBuilder(flag).version(flag.getVersion() + 1).salt("external").build();
+    otherClient.hset("launchdarkly:features", flag.getKey(), gson.toJson(externalVer));
+
+    FeatureFlag newVer = new FeatureFlagBuilder(flag).version(flag.getVersion() + 1).build();
+    store.upsert(FEATURES, newVer);
+    Assert.assertEquals("external", itemInRedis().getSalt());
+    Assert.assertEquals(newVer.getVersion(), store.all(FEATURES).get(flag.getKey()).getVersion());
+  }
+
+  @Test
+  public void updateWithOlderVersionThanRedisDiscardsOutdatedSnapshot() {
+    store.all(FEATURES);
+    FeatureFlag externalVer = new FeatureFlagBuilder(flag).version(flag.getVersion() + 2).build();
+    otherClient.hset("launchdarkly:features", flag.getKey(), gson.toJson(externalVer));
+
+    FeatureFlag newVer = new FeatureFlagBuilder(flag).version(flag.getVersion() + 1).build();
+    store.upsert(FEATURES, newVer);
+    Assert.assertEquals(externalVer.getVersion(), versionInRedis());
+    Assert.assertEquals(externalVer.getVersion(), store.all(FEATURES).get(flag.getKey()).getVersion());
+  }
+
+  private FeatureFlag itemInRedis() {
+    return gson.fromJson(otherClient.hget("launchdarkly:features", flag.getKey()), FeatureFlag.class);
+  }
+
+  private int versionInRedis() {
+    return itemInRedis().getVersion();
+  }
+}
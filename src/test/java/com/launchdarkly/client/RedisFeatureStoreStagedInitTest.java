@@ -0,0 +1,112 @@
+package com.launchdarkly.client;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.launchdarkly.client.VersionedDataKind.FEATURES;
+import static com.launchdarkly.client.VersionedDataKind.SEGMENTS;
+import static java.util.Collections.singletonMap;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+/**
+ * Tests of {@link RedisFeatureStoreBuilder#stagedInit(boolean)}.
+ */
+public class RedisFeatureStoreStagedInitTest {
+  private final FeatureFlag flag = new FeatureFlagBuilder("foo").version(10).build();
+  private final Segment segment = new Segment.Builder("seg").version(10).build();
+  private RedisFeatureStore store;
+  private Jedis otherClient;
+
+  @Before
+  public void setup() {
+    store = new RedisFeatureStoreBuilder(URI.create("redis://localhost:6379")).stagedInit(true).build();
+    otherClient = new Jedis("localhost");
+    store.init(makeData(singletonMap(flag.getKey(), flag), singletonMap(segment.getKey(), segment)));
+  }
+
+  @After
+  public void teardown() throws Exception {
+    otherClient.close();
+    store.close();
+  }
+
+  @Test
+  public void itemsAreWrittenInChunksAndSwappedIn() {
+    Map<String, FeatureFlag> flags = new HashMap<>();
+    for (int i = 0; i < 1234; i++) {
+      FeatureFlag f = new FeatureFlagBuilder("flag" + i).version(i).build();
+      flags.put(f.getKey(), f);
+    }
+    store.init(makeData(flags, singletonMap(segment.getKey(), segment)));
+    Assert.assertEquals(1234L, (long)otherClient.hlen("launchdarkly:features"));
+    Assert.assertEquals(-1L, (long)otherClient.ttl("launchdarkly:features"));
+    Assert.assertEquals(0, otherClient.keys("launchdarkly:*staging*").size());
+    Assert.assertEquals(1234, store.all(FEATURES).size());
+  }
+
+  @Test
+  public void emptyKindIsDeleted() {
+    store.init(makeData(new HashMap<String, FeatureFlag>(), singletonMap(segment.getKey(), segment)));
+    Assert.assertFalse(otherClient.exists("launchdarkly:features"));
+    Assert.assertTrue(otherClient.exists("launchdarkly:segments"));
+    Assert.assertEquals(0, store.all(FEATURES).size());
+    Assert.assertNull(store.get(FEATURES, flag.getKey()));
+    Assert.assertEquals(segment.getVersion(), store.get(SEGMENTS, segment.getKey()).getVersion());
+  }
+
+  @Test
+  public void failedSwapIsReportedAndCacheIsNotWarmed() {
+    store.get(FEATURES, flag.getKey());
+    store.setUpdateListener(new RedisFeatureStore.UpdateListener() {
+      public void aboutToUpdate(String baseKey, String itemKey) {
+        // as if the staging key had expired
+        for (String key: otherClient.keys(baseKey + ":staging:*")) {
+          otherClient.del(key);
+        }
+      }
+    });
+
+    FeatureFlag newVer = new FeatureFlagBuilder(flag).version(flag.getVersion() + 1).build();
+    try {
+      store.init(makeData(singletonMap(flag.getKey(), newVer), singletonMap(segment.getKey(), segment)));
+      Assert.fail("expected exception");
+    } catch (JedisDataException e) {
+    }
+    Assert.assertEquals(0, otherClient.keys("launchdarkly:*staging*").size());
+    Assert.assertEquals(flag.getVersion(), store.get(FEATURES, flag.getKey()).getVersion());
+  }
+
+  @Test
+  public void stagingKeysAreNotLeftBehindIfInitFailsBeforeSwap() {
+    store.setUpdateListener(new RedisFeatureStore.UpdateListener() {
+      public void aboutToUpdate(String baseKey, String itemKey) {
+        throw new IllegalStateException("sorry");
+      }
+    });
+
+    FeatureFlag newVer = new FeatureFlagBuilder(flag).version(flag.getVersion() + 1).build();
+    try {
+      store.init(makeData(singletonMap(flag.getKey(), newVer), singletonMap(segment.getKey(), segment)));
+      Assert.fail("expected exception");
+    } catch (IllegalStateException e) {
+    }
+    Assert.assertEquals(0, otherClient.keys("launchdarkly:*staging*").size());
+    Assert.assertEquals(flag.getVersion(), store.get(FEATURES, flag.getKey()).getVersion());
+  }
+
+  private static Map<VersionedDataKind<?>, Map<String, ? extends VersionedData>> makeData(
+      Map<String, FeatureFlag> flags, Map<String, Segment> segments) {
+    Map<VersionedDataKind<?>, Map<String, ? extends VersionedData>> allData = new HashMap<>();
+    allData.put(FEATURES, flags);
+    allData.put(SEGMENTS, segments);
+    return allData;
+  }
+}
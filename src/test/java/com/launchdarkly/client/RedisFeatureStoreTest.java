@@ -7,8 +7,12 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.net.URI;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.launchdarkly.client.VersionedDataKind.FEATURES;
 import static java.util.Collections.singletonMap;
@@ -19,7 +23,11 @@ public class RedisFeatureStoreTest extends FeatureStoreTestBase<RedisFeatureStor
 
   @Before
   public void setup() {
-    store = new RedisFeatureStoreBuilder(URI.create("redis://localhost:6379")).build();
+    store = makeBuilder().build();
+  }
+  
+  protected RedisFeatureStoreBuilder makeBuilder() {
+    return new RedisFeatureStoreBuilder(URI.create("redis://localhost:6379"));
   }
   
   @Test
@@ -58,6 +66,290 @@ public class RedisFeatureStoreTest extends FeatureStoreTestBase<RedisFeatureStor
     }
   }
   
+  @Test
+  public void allAndGetAreServedFromSnapshotUntilUpdatedThroughStore() {
+    Jedis otherClient = new Jedis("localhost");
+    try {
+      initStore();
+      Map<String, FeatureFlag> before = store.all(FEATURES);
+      FeatureFlag externalVer = new FeatureFlagBuilder(feature1).version(feature1.getVersion() + 1).build();
+      otherClient.hset("launchdarkly:features", feature1.getKey(), new Gson().toJson(externalVer));
+      
+      Assert.assertSame(before, store.all(FEATURES));
+      Assert.assertEquals(feature1.getVersion(), store.get(FEATURES, feature1.getKey()).getVersion());
+      
+      FeatureFlag newVer2 = new FeatureFlagBuilder(feature2).version(feature2.getVersion() + 1).build();
+      store.upsert(FEATURES, newVer2);
+      Map<String, FeatureFlag> after = store.all(FEATURES);
+      Assert.assertEquals(newVer2.getVersion(), after.get(feature2.getKey()).getVersion());
+      Assert.assertEquals(feature1.getVersion(), after.get(feature1.getKey()).getVersion());
+      Assert.assertEquals(newVer2.getVersion(), store.get(FEATURES, feature2.getKey()).getVersion());
+    } finally {
+      otherClient.close();
+    }
+  }
+  
+  @Test
+  public void allReadsRedisEveryTimeIfCacheIsDisabled() throws Exception {
+    Jedis otherClient = new Jedis("localhost");
+    try (RedisFeatureStore uncached = makeBuilder()
+        .cacheTime(0, TimeUnit.SECONDS).build()) {
+      initStore();
+      uncached.all(FEATURES);
+      FeatureFlag externalVer = new FeatureFlagBuilder(feature1).version(feature1.getVersion() + 1).build();
+      otherClient.hset("launchdarkly:features", feature1.getKey(), new Gson().toJson(externalVer));
+      
+      Assert.assertEquals(externalVer.getVersion(), uncached.all(FEATURES).get(feature1.getKey()).getVersion());
+    } finally {
+      otherClient.close();
+    }
+  }
+  
+  @Test
+  public void getManyReturnsOnlyExistingFeatures() {
+    initStore();
+    store.delete(FEATURES, feature2.getKey(), feature2.getVersion() + 1);
+    Map<String, FeatureFlag> result = store.getMany(FEATURES, Arrays.asList(feature1.getKey(), feature2.getKey(), "biz"));
+    Assert.assertEquals(1, result.size());
+    Assert.assertEquals(feature1.getVersion(), result.get(feature1.getKey()).getVersion());
+  }
+  
+  @Test
+  public void getManyReadsRedisIfCacheIsDisabled() throws Exception {
+    try (RedisFeatureStore uncached = makeBuilder()
+        .cacheTime(0, TimeUnit.SECONDS).build()) {
+      initStore();
+      Map<String, FeatureFlag> result = uncached.getMany(FEATURES, Arrays.asList(feature1.getKey(), "biz"));
+      Assert.assertEquals(1, result.size());
+      Assert.assertEquals(feature1.getVersion(), result.get(feature1.getKey()).getVersion());
+    }
+  }
+  
+  @Test
+  public void initReplacesAllItemsOfEachKind() {
+    Jedis otherClient = new Jedis("localhost");
+    try {
+      initStore();
+      initStoreWithSingleFeature(store, feature2);
+      Assert.assertEquals(singletonMap(feature2.getKey(), feature2.getVersion()), versionsInRedis(otherClient));
+      Assert.assertEquals(-1L, (long)otherClient.ttl("launchdarkly:features"));
+      Assert.assertEquals(0, otherClient.keys("launchdarkly:*staging*").size());
+    } finally {
+      otherClient.close();
+    }
+  }
+  
+  @Test
+  public void initWritesManyItems() {
+    Jedis otherClient = new Jedis("localhost");
+    try {
+      Map<String, FeatureFlag> flags = new HashMap<>();
+      for (int i = 0; i < 1234; i++) {
+        FeatureFlag flag = new FeatureFlagBuilder("flag" + i).version(i).build();
+        flags.put(flag.getKey(), flag);
+      }
+      Map<VersionedDataKind<?>, Map<String, ? extends VersionedData>> allData = new HashMap<>();
+      allData.put(FEATURES, flags);
+      store.init(allData);
+      Assert.assertEquals(1234, versionsInRedis(otherClient).size());
+      Assert.assertEquals(1234, store.all(FEATURES).size());
+    } finally {
+      otherClient.close();
+    }
+  }
+  
+  @Test
+  public void initReplacesCachedItemsInsteadOfDiscardingThem() {
+    Jedis otherClient = new Jedis("localhost");
+    try {
+      initStore();
+      store.get(FEATURES, feature1.getKey());
+      store.get(FEATURES, feature2.getKey());
+      FeatureFlag newVer = new FeatureFlagBuilder(feature1).version(feature1.getVersion() + 1).build();
+      initStoreWithSingleFeature(store, newVer);
+      // if the cache had been discarded, this would be read from Redis
+      FeatureFlag externalVer = new FeatureFlagBuilder(feature1).version(feature1.getVersion() + 2).build();
+      otherClient.hset("launchdarkly:features", feature1.getKey(), new Gson().toJson(externalVer));
+      
+      Assert.assertEquals(newVer.getVersion(), store.get(FEATURES, feature1.getKey()).getVersion());
+      Assert.assertNull(store.get(FEATURES, feature2.getKey()));
+    } finally {
+      otherClient.close();
+    }
+  }
+  
+  private static Map<String, Integer> versionsInRedis(Jedis client) {
+    Map<String, Integer> versions = new HashMap<>();
+    for (Map.Entry<String, String> entry: client.hgetAll("launchdarkly:features").entrySet()) {
+      versions.put(entry.getKey(), new Gson().fromJson(entry.getValue(), FeatureFlag.class).getVersion());
+    }
+    return versions;
+  }
+  
+  @Test
+  public void changesPublishedByOneStoreAreAppliedToCacheOfAnother() throws Exception {
+    RedisFeatureStoreBuilder builder = makeBuilder()
+        .cacheTime(1, TimeUnit.HOURS)
+        .invalidationChannel("launchdarkly-test-invalidation");
+    try (RedisFeatureStore writer = builder.build(); RedisFeatureStore reader = builder.build()) {
+      initStoreWithSingleFeature(writer, feature1);
+      awaitVersion(reader, feature1.getKey(), feature1.getVersion());
+      reader.all(FEATURES);
+      
+      FeatureFlag newVer = new FeatureFlagBuilder(feature1).version(feature1.getVersion() + 1).build();
+      writer.upsert(FEATURES, newVer);
+      awaitVersion(reader, feature1.getKey(), newVer.getVersion());
+      Assert.assertEquals(newVer.getVersion(), reader.all(FEATURES).get(feature1.getKey()).getVersion());
+      
+      initStoreWithSingleFeature(writer, feature2);
+      awaitVersion(reader, feature2.getKey(), feature2.getVersion());
+      Assert.assertNull(reader.get(FEATURES, feature1.getKey()));
+    }
+  }
+  
+  @Test
+  public void malformedItemInRedisDoesNotStopLaterChangesBeingApplied() throws Exception {
+    String channel = "launchdarkly-test-invalidation";
+    RedisFeatureStoreBuilder builder = makeBuilder().cacheTime(1, TimeUnit.HOURS).invalidationChannel(channel);
+    try (RedisFeatureStore writer = builder.build(); RedisFeatureStore reader = builder.build();
+        Jedis otherClient = new Jedis("localhost")) {
+      Map<String, FeatureFlag> flags = new HashMap<>();
+      flags.put(feature1.getKey(), feature1);
+      flags.put(feature2.getKey(), feature2);
+      Map<VersionedDataKind<?>, Map<String, ? extends VersionedData>> allData = new HashMap<>();
+      allData.put(FEATURES, flags);
+      writer.init(allData);
+      awaitVersion(reader, feature1.getKey(), feature1.getVersion());
+      reader.all(FEATURES);
+
+      otherClient.hset("launchdarkly:features", feature2.getKey(), "{not json");
+      otherClient.publish(channel, "{\"sender\":\"someone-else\",\"kind\":\"features\",\"key\":\"" +
+          feature2.getKey() + "\"}");
+
+      FeatureFlag newVer = new FeatureFlagBuilder(feature1).version(feature1.getVersion() + 1).build();
+      writer.upsert(FEATURES, newVer);
+      awaitVersion(reader, feature1.getKey(), newVer.getVersion());
+    }
+  }
+
+  @Test
+  public void changePublishedWhileSnapshotIsLoadingIsNotLost() throws Exception {
+    String channel = "launchdarkly-test-invalidation";
+    RedisFeatureStoreBuilder builder = makeBuilder().cacheTime(1, TimeUnit.HOURS).invalidationChannel(channel);
+    try (final RedisFeatureStore writer = builder.build(); final RedisFeatureStore reader = builder.build()) {
+      initStoreWithSingleFeature(writer, feature1);
+      final FeatureFlag newVer = new FeatureFlagBuilder(feature1).version(feature1.getVersion() + 1).build();
+      final AtomicBoolean changed = new AtomicBoolean();
+      reader.setLoadListener(new RedisFeatureStore.LoadListener() {
+        public void loadedFromRedis(VersionedDataKind<?> kind) {
+          if (changed.getAndSet(true)) {
+            return;
+          }
+          // the snapshot has just been read, so it has the old version; wait until the reader is told
+          // about the change, either by the change message or by subscribing for the first time
+          long generation = reader.generation(FEATURES).get();
+          writer.upsert(FEATURES, newVer);
+          long deadline = System.currentTimeMillis() + 5000;
+          while (reader.generation(FEATURES).get() == generation && System.currentTimeMillis() < deadline) {
+            try {
+              Thread.sleep(10);
+            } catch (InterruptedException e) {
+              throw new RuntimeException(e);
+            }
+          }
+        }
+      });
+
+      Assert.assertEquals(newVer.getVersion(), reader.all(FEATURES).get(feature1.getKey()).getVersion());
+      Assert.assertEquals(newVer.getVersion(), reader.get(FEATURES, feature1.getKey()).getVersion());
+    }
+  }
+
+  @Test
+  public void kindIsInMemoryOnlyOnceItsSnapshotIsCached() throws Exception {
+    initStore();
+    try (RedisFeatureStore uncachedStore = makeBuilder().cacheTime(0, TimeUnit.SECONDS).build();
+        RedisFeatureStore cachingStore = makeBuilder().cacheTime(1, TimeUnit.HOURS).build()) {
+      uncachedStore.all(FEATURES);
+      Assert.assertFalse(uncachedStore.isInMemory(FEATURES));
+      Assert.assertFalse(cachingStore.isInMemory(FEATURES));
+      cachingStore.get(FEATURES, feature1.getKey());
+      Assert.assertFalse(cachingStore.isInMemory(FEATURES));
+      cachingStore.all(FEATURES);
+      Assert.assertTrue(cachingStore.isInMemory(FEATURES));
+    }
+  }
+
+  @Test
+  public void loaderGivesUpIfChangesKeepArrivingAndStaleSnapshotIsDiscarded() throws Exception {
+    try (final RedisFeatureStore cachingStore = makeBuilder().cacheTime(1, TimeUnit.HOURS).build()) {
+      initStoreWithSingleFeature(store, feature1);
+      final AtomicInteger loads = new AtomicInteger();
+      cachingStore.setLoadListener(new RedisFeatureStore.LoadListener() {
+        public void loadedFromRedis(VersionedDataKind<?> kind) {
+          int n = loads.incrementAndGet();
+          cachingStore.upsert(FEATURES, new FeatureFlagBuilder(feature1).version(feature1.getVersion() + n).build());
+        }
+      });
+      cachingStore.all(FEATURES);
+      Assert.assertEquals(3, loads.get());
+
+      cachingStore.setLoadListener(null);
+      Assert.assertEquals(feature1.getVersion() + 3, cachingStore.all(FEATURES).get(feature1.getKey()).getVersion());
+    }
+  }
+
+  @Test
+  public void itemLoaderIgnoresChangesToOtherItems() throws Exception {
+    try (final RedisFeatureStore cachingStore = makeBuilder().cacheTime(1, TimeUnit.HOURS).build()) {
+      initStore();
+      final AtomicInteger loads = new AtomicInteger();
+      cachingStore.setLoadListener(new RedisFeatureStore.LoadListener() {
+        public void loadedFromRedis(VersionedDataKind<?> kind) {
+          int n = loads.incrementAndGet();
+          cachingStore.upsert(FEATURES, new FeatureFlagBuilder(feature2).version(feature2.getVersion() + n).build());
+        }
+      });
+      Assert.assertEquals(feature1.getVersion(), cachingStore.get(FEATURES, feature1.getKey()).getVersion());
+      Assert.assertEquals(1, loads.get());
+    }
+  }
+
+  @Test
+  public void itemLoaderGivesUpIfItemKeepsChangingAndStaleItemIsDiscarded() throws Exception {
+    try (final RedisFeatureStore cachingStore = makeBuilder().cacheTime(1, TimeUnit.HOURS).build()) {
+      initStore();
+      final AtomicInteger loads = new AtomicInteger();
+      cachingStore.setLoadListener(new RedisFeatureStore.LoadListener() {
+        public void loadedFromRedis(VersionedDataKind<?> kind) {
+          int n = loads.incrementAndGet();
+          cachingStore.upsert(FEATURES, new FeatureFlagBuilder(feature1).version(feature1.getVersion() + n).build());
+        }
+      });
+      cachingStore.getMany(FEATURES, Arrays.asList(feature1.getKey(), feature2.getKey()));
+      Assert.assertEquals(3, loads.get());
+
+      cachingStore.setLoadListener(null);
+      Assert.assertEquals(feature1.getVersion() + 3, cachingStore.get(FEATURES, feature1.getKey()).getVersion());
+    }
+  }
+
+  // The reader may not have subscribed yet when the change is published, but in that case it discards
+  // its whole cache as soon as it does subscribe
+  private static void awaitVersion(RedisFeatureStore store, String key, int version) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (true) {
+      FeatureFlag flag = store.get(FEATURES, key);
+      if (flag != null && flag.getVersion() == version) {
+        return;
+      }
+      if (System.currentTimeMillis() > deadline) {
+        Assert.fail("timed out waiting for version " + version + " of " + key);
+      }
+      Thread.sleep(10);
+    }
+  }
+  
   private void initStoreWithSingleFeature(RedisFeatureStore store, FeatureFlag flag) {
     Map<String, FeatureFlag> flags = singletonMap(flag.getKey(), flag);
     Map<VersionedDataKind<?>, Map<String, ? extends VersionedData>> allData = new HashMap<>();
@@ -0,0 +1,101 @@
+package com.launchdarkly.client;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RingBufferTest {
+  @Test
+  public void capacityIsRoundedUpToPowerOfTwo() {
+    assertEquals(2, new RingBuffer<String>(1).capacity());
+    assertEquals(8, new RingBuffer<String>(8).capacity());
+    assertEquals(16, new RingBuffer<String>(9).capacity());
+  }
+
+  @Test
+  public void itemsAreReturnedInOrder() {
+    RingBuffer<Integer> rb = new RingBuffer<>(4);
+    for (int lap = 0; lap < 3; lap++) {
+      for (int i = 0; i < 4; i++) {
+        assertTrue(rb.offer(i));
+      }
+      for (int i = 0; i < 4; i++) {
+        assertEquals(Integer.valueOf(i), rb.poll());
+      }
+      assertNull(rb.poll());
+    }
+  }
+
+  @Test
+  public void offerFailsWhenFull() {
+    RingBuffer<String> rb = new RingBuffer<>(2);
+    assertTrue(rb.offer("a"));
+    assertTrue(rb.offer("b"));
+    assertFalse(rb.offer("c"));
+    assertEquals("a", rb.poll());
+    assertTrue(rb.offer("c"));
+  }
+
+  @Test
+  public void takeWaitsForProducer() throws Exception {
+    final RingBuffer<String> rb = new RingBuffer<>(2);
+    final AtomicReference<String> taken = new AtomicReference<>();
+    final CountDownLatch done = new CountDownLatch(1);
+    new Thread(new Runnable() {
+      public void run() {
+        try {
+          taken.set(rb.take());
+        } catch (InterruptedException e) {
+        }
+        done.countDown();
+      }
+    }).start();
+    Thread.sleep(200); // long enough for the consumer to park
+    rb.offer("a");
+    assertTrue(done.await(1, TimeUnit.SECONDS));
+    assertEquals("a", taken.get());
+  }
+
+  @Test
+  public void concurrentProducersDoNotLoseOrReorderItems() throws Exception {
+    final int producers = 4;
+    final int itemsPerProducer = 100000;
+    final RingBuffer<int[]> rb = new RingBuffer<>(64);
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      final int producer = p;
+      Thread t = new Thread(new Runnable() {
+        public void run() {
+          for (int i = 0; i < itemsPerProducer; i++) {
+            int[] item = new int[] { producer, i };
+            while (!rb.offer(item)) {
+              Thread.yield();
+            }
+          }
+        }
+      });
+      threads.add(t);
+      t.start();
+    }
+
+    int[] next = new int[producers];
+    for (int n = 0; n < producers * itemsPerProducer; n++) {
+      int[] item = rb.take();
+      assertEquals(next[item[0]], item[1]);
+      next[item[0]]++;
+    }
+    for (Thread t: threads) {
+      t.join();
+    }
+    assertNull(rb.poll());
+  }
+}
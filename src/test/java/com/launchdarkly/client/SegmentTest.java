@@ -89,6 +89,29 @@ public class SegmentTest {
     assertFalse(s.matchesUser(u));
   }
   
+  @Test
+  public void matchingRuleWithPartialRolloutBucketsByUserKey() {
+    // user "foo" with salt "abcdef" hashes "foo.abcdef.foo" into bucket 0.9072542
+    Clause clause = new Clause(
+        "email",
+        Operator.in,
+        Arrays.asList(new JsonPrimitive("test@example.com")),
+        false);
+    LDUser u = new LDUser.Builder("foo").email("test@example.com").build();
+
+    Segment justAbove = new Segment.Builder("test")
+        .salt("abcdef")
+        .rules(Arrays.asList(new SegmentRule(Arrays.asList(clause), 90726, null)))
+        .build();
+    assertTrue(justAbove.matchesUser(u));
+
+    Segment justBelow = new Segment.Builder("test")
+        .salt("abcdef")
+        .rules(Arrays.asList(new SegmentRule(Arrays.asList(clause), 90725, null)))
+        .build();
+    assertFalse(justBelow.matchesUser(u));
+  }
+
   @Test
   public void matchingRuleWithMultipleClauses() {
     Clause clause1 = new Clause(
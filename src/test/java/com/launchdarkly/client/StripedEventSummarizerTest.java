@@ -0,0 +1,94 @@
+package com.launchdarkly.client;
+
+import com.google.gson.JsonElement;
+import com.launchdarkly.client.EventSummarizer.CounterKey;
+import com.launchdarkly.client.EventSummarizer.CounterValue;
+import com.launchdarkly.client.EventSummarizer.EventSummary;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.launchdarkly.client.TestUtil.js;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StripedEventSummarizerTest {
+  private static final LDUser user = new LDUser.Builder("key").build();
+  private static final FeatureFlag flag = new FeatureFlagBuilder("flag").version(11).build();
+  private static final JsonElement value = js("value");
+  private static final JsonElement defaultVal = js("default");
+
+  @Test
+  public void drainReturnsCountersFromAllThreads() throws Exception {
+    final StripedEventSummarizer summaries = new StripedEventSummarizer(4);
+    final int threadCount = 8, eventsPerThread = 1000;
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < threadCount; i++) {
+      Thread t = new Thread(new Runnable() {
+        public void run() {
+          for (int j = 0; j < eventsPerThread; j++) {
+            summaries.summarizeEvent(newEvent(1000 + j));
+          }
+        }
+      });
+      threads.add(t);
+      t.start();
+    }
+    for (Thread t: threads) {
+      t.join();
+    }
+
+    EventSummary result = summaries.drain();
+    Map<CounterKey, CounterValue> expected = new HashMap<>();
+    expected.put(new CounterKey(flag.getKey(), 1, flag.getVersion()),
+        new CounterValue(threadCount * eventsPerThread, value, defaultVal));
+    assertEquals(expected, result.counters());
+    assertEquals(1000, result.startDate);
+    assertEquals(1000 + eventsPerThread - 1, result.endDate);
+  }
+
+  @Test
+  public void drainResetsCounters() {
+    StripedEventSummarizer summaries = new StripedEventSummarizer();
+    summaries.summarizeEvent(newEvent(1000));
+    assertEquals(1, summaries.drain().counters().size());
+    assertTrue(summaries.drain().isEmpty());
+  }
+
+  @Test
+  public void onlyFirstCountersSinceDrainAreReportedAsNew() {
+    StripedEventSummarizer summaries = new StripedEventSummarizer();
+    assertFalse(summaries.isPending());
+    assertTrue(summaries.summarizeEvent(newEvent(1000)));
+    assertFalse(summaries.summarizeEvent(newEvent(1001)));
+    assertTrue(summaries.isPending());
+    summaries.drain();
+    assertFalse(summaries.isPending());
+    assertTrue(summaries.summarizeEvent(newEvent(1002)));
+  }
+
+  @Test
+  public void summaryIsAdded() {
+    StripedEventSummarizer summaries = new StripedEventSummarizer();
+    EventSummarizer summarizer = new EventSummarizer();
+    summarizer.summarizeEvent(newEvent(1000));
+    summarizer.summarizeEvent(newEvent(2000));
+    summaries.summarizeEvent(newEvent(3000));
+    summaries.summarizeAll(summarizer.snapshot());
+
+    EventSummary result = summaries.drain();
+    assertEquals(3, result.counters().values().iterator().next().count);
+    assertEquals(1000, result.startDate);
+    assertEquals(3000, result.endDate);
+  }
+
+  private static Event.FeatureRequest newEvent(long time) {
+    return new Event.FeatureRequest(time, flag.getKey(), user, flag.getVersion(), 1, value, defaultVal,
+        null, false, null, null, false);
+  }
+}
@@ -0,0 +1,152 @@
+package com.launchdarkly.client;
+
+import com.google.common.base.Ticker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UserKeyCacheTest {
+  private final AtomicLong nanos = new AtomicLong(1000);
+  private final Ticker ticker = new Ticker() {
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+  };
+
+  @Test
+  public void keyIsKnownOnlyAfterItIsAdded() {
+    UserKeyCache cache = new UserKeyCache(100, 300, ticker);
+    assertFalse(cache.contains("a"));
+    assertTrue(cache.add("a"));
+    assertTrue(cache.contains("a"));
+    assertFalse(cache.add("a"));
+    assertFalse(cache.contains("b"));
+  }
+
+  @Test
+  public void keysWithSameHashCodeAreDistinct() {
+    UserKeyCache cache = new UserKeyCache(100, 300, ticker);
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+    assertTrue(cache.add("Aa"));
+    assertFalse(cache.contains("BB"));
+    assertTrue(cache.add("BB"));
+    assertEquals("AaBB".hashCode(), "BBAa".hashCode());
+    assertTrue(cache.add("AaBB"));
+    assertFalse(cache.contains("BBAa"));
+  }
+
+  @Test
+  public void keyExpiresAfterTimeToLive() {
+    UserKeyCache cache = new UserKeyCache(100, 320, ticker);
+    cache.add("a");
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(319));
+    cache.removeExpired();
+    assertTrue(cache.contains("a"));
+    // adding the key again doesn't extend its life
+    assertFalse(cache.add("a"));
+    // the next sweep is a sixteenth of the time to live after the last one
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(20));
+    cache.removeExpired();
+    assertFalse(cache.contains("a"));
+    assertTrue(cache.add("a"));
+  }
+  
+  @Test
+  public void expiredKeysAreOnlyRemovedEverySixteenthOfTimeToLive() {
+    UserKeyCache cache = new UserKeyCache(100, 320, ticker);
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(20));
+    cache.removeExpired();
+    cache.add("a"); // expires at 340
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(320));
+    cache.removeExpired(); // at 340, which is a sweep time
+    assertFalse(cache.contains("a"));
+    
+    cache.add("b"); // expires at 660
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(310));
+    cache.removeExpired(); // at 650, so the next sweep is at 670
+    assertTrue(cache.contains("b"));
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(15));
+    cache.removeExpired(); // at 665, which is too soon
+    assertTrue(cache.contains("b"));
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(5));
+    cache.removeExpired();
+    assertFalse(cache.contains("b"));
+  }
+
+  @Test
+  public void oldestKeyIsEvictedWhenFull() {
+    // a capacity of 4 gets a single bucket of 8 slots, so every key competes for the same slots
+    UserKeyCache cache = new UserKeyCache(4, 300, ticker);
+    for (int i = 0; i < 8; i++) {
+      cache.add("key" + i);
+      nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+      cache.removeExpired();
+    }
+    cache.add("key8");
+    assertFalse(cache.contains("key0"));
+    for (int i = 1; i <= 8; i++) {
+      assertTrue(cache.contains("key" + i));
+    }
+  }
+
+  @Test
+  public void manyKeysFitWithinCapacity() {
+    UserKeyCache cache = new UserKeyCache(100000, 300, ticker);
+    int known = 0;
+    for (int i = 0; i < 50000; i++) {
+      cache.add("user" + i);
+    }
+    for (int i = 0; i < 50000; i++) {
+      if (cache.contains("user" + i)) {
+        known++;
+      }
+    }
+    // some buckets overflow even when the table is only partly full, but very few
+    assertTrue(known > 49000);
+  }
+
+  @Test
+  public void zeroCapacityRemembersNothing() {
+    UserKeyCache cache = new UserKeyCache(0, 300, ticker);
+    assertTrue(cache.add("a"));
+    assertFalse(cache.contains("a"));
+  }
+
+  @Test
+  public void keysAddedOnOneThreadAreSeenOnOthers() throws Exception {
+    final UserKeyCache cache = new UserKeyCache(10000, 300);
+    final AtomicBoolean wrong = new AtomicBoolean(false);
+    cache.add("ready");
+    List<Thread> readers = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      Thread reader = new Thread(new Runnable() {
+        public void run() {
+          for (int i = 0; i < 100000; i++) {
+            if (!cache.contains("ready") || cache.contains("never")) {
+              wrong.set(true);
+            }
+          }
+        }
+      });
+      readers.add(reader);
+      reader.start();
+    }
+    for (int i = 0; i < 500; i++) {
+      cache.add("user" + i);
+    }
+    for (Thread reader: readers) {
+      reader.join();
+    }
+    assertFalse(wrong.get());
+  }
+}
@@ -2,8 +2,11 @@ package com.launchdarkly.client;
 
 import static org.junit.Assert.assertEquals;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.Test;
 
+import java.util.Random;
+
 public class VariationOrRolloutTest {
   @Test
   public void canBucketByIntAttributeSameAsString() {
@@ -33,4 +36,52 @@ public class VariationOrRolloutTest {
     float result = VariationOrRollout.bucketUser(user, "key", "boolattr", "salt");
     assertEquals(0f, result, Float.MIN_VALUE);
   }
+
+  @Test
+  public void bucketIsSameAsHexDigestComputation() {
+    Random random = new Random(1234);
+    for (int i = 0; i < 10000; i++) {
+      String key = randomString(random), salt = randomString(random), userKey = randomString(random);
+      String secondary = random.nextBoolean() ? randomString(random) : null;
+      LDUser user = new LDUser.Builder(userKey).secondary(secondary).build();
+      String idHash = secondary == null ? userKey : userKey + "." + secondary;
+      
+      float expected = referenceBucket(key, salt, idHash);
+      float actual = VariationOrRollout.bucketUser(user, key, "key", salt);
+      assertEquals("key=" + key + ", salt=" + salt + ", idHash=" + idHash,
+          Float.floatToIntBits(expected), Float.floatToIntBits(actual));
+    }
+  }
+
+  // This is how the bucket was computed before it was optimized, and how the other SDKs compute it
+  private static float referenceBucket(String key, String salt, String idHash) {
+    String hash = DigestUtils.sha1Hex(key + "." + salt + "." + idHash).substring(0, 15);
+    return (float) Long.parseLong(hash, 16) / (float) 0xFFFFFFFFFFFFFFFL;
+  }
+
+  // Mostly ASCII, but with enough multi-byte characters, surrogate pairs and unpaired surrogates to
+  // exercise all of the UTF-8 encoding cases
+  private static String randomString(Random random) {
+    StringBuilder sb = new StringBuilder();
+    int length = random.nextInt(40);
+    for (int i = 0; i < length; i++) {
+      switch (random.nextInt(8)) {
+      case 0:
+        sb.append((char)(0x80 + random.nextInt(0x780)));
+        break;
+      case 1:
+        sb.append((char)(0x800 + random.nextInt(0xD000)));
+        break;
+      case 2:
+        sb.appendCodePoint(0x10000 + random.nextInt(0x100000));
+        break;
+      case 3:
+        sb.append((char)(0xD800 + random.nextInt(0x800)));
+        break;
+      default:
+        sb.append((char)(0x20 + random.nextInt(0x5F)));
+      }
+    }
+    return sb.toString();
+  }
 }